@@ -0,0 +1,96 @@
+package org.example.benchmarks;
+
+import org.example.config.AppConfig;
+import org.example.service.ContactService;
+import org.example.util.DbConnection;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+// Временная БД для одного прогона бенчмарка: своя директория, конфигурация и сервис
+final class BenchmarkDatabase implements AutoCloseable {
+    // Жесткая ссылка, иначе настройка уровня логгера потеряется после сборки мусора
+    private static final Logger APP_LOGGER = Logger.getLogger("org.example");
+
+    static {
+        APP_LOGGER.setLevel(Level.WARNING);
+    }
+
+    private final Path directory;
+    private final AppConfig config;
+    private final ContactService contactService;
+
+    private BenchmarkDatabase(Path directory, AppConfig config) {
+        this.directory = directory;
+        this.config = config;
+        DbConnection.initialize(config);
+        this.contactService = new ContactService(config);
+    }
+
+    static BenchmarkDatabase create(int records, String journalMode, boolean populate) throws IOException, SQLException {
+        return create(records, journalMode, populate, new Properties());
+    }
+
+    // overrides — настройки конкретного бенчмарка поверх общих
+    static BenchmarkDatabase create(int records, String journalMode, boolean populate, Properties overrides)
+            throws IOException, SQLException {
+        Path directory = Files.createTempDirectory("integrator-bench");
+        Properties props = new Properties();
+        props.setProperty("db.name", directory.resolve("contacts.db").toString());
+        props.setProperty("records.count", String.valueOf(records));
+        props.setProperty("db.pragma.journal_mode", journalMode);
+        props.setProperty("db.dump.sinks", "text");
+        props.setProperty("db.dump.output.dir", directory.resolve("dumps").toString());
+        // Генерация замеряется целиком, без восстановления и сохранения шаблона БД
+        props.setProperty("data.template.file", "");
+        props.putAll(overrides);
+
+        BenchmarkDatabase database = new BenchmarkDatabase(directory, new AppConfig(props));
+        if (populate) {
+            database.contactService.generateData();
+        }
+        database.contactService.getContactDao().createLoggingInfrastructure();
+        return database;
+    }
+
+    AppConfig getConfig() {
+        return config;
+    }
+
+    ContactService getContactService() {
+        return contactService;
+    }
+
+    Path getDumpDirectory() {
+        return directory.resolve("dumps");
+    }
+
+    void clearDumps() throws IOException {
+        deleteRecursively(directory.resolve("dumps"));
+    }
+
+    @Override
+    public void close() throws IOException {
+        contactService.getContactDao().closeWriteCoordinator();
+        DbConnection.shutdown();
+        deleteRecursively(directory);
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(path)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
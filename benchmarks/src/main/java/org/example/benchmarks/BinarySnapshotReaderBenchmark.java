@@ -0,0 +1,63 @@
+package org.example.benchmarks;
+
+import org.example.dump.BinarySnapshotReader;
+import org.example.scheduler.DatabaseDumper;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Полный проход по снимку, записанному DatabaseDumper: открытие, проверка CRC блоков, распаковка, все колонки
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BinarySnapshotReaderBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int recordCount;
+
+    @Param({"deflate", "none"})
+    public String compression;
+
+    private BenchmarkDatabase database;
+    private Path snapshot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Properties overrides = new Properties();
+        overrides.setProperty("db.dump.sinks", "binary");
+        overrides.setProperty("db.dump.binary.compression", compression);
+        database = BenchmarkDatabase.create(recordCount, "WAL", true, overrides);
+        for (int i = 0; i < 10; i++) {
+            database.getContactService().updateRandomContactsPhones();
+        }
+        new DatabaseDumper(database.getContactService().getContactDao(), database.getConfig(), (attempt, failed) -> { })
+                .run();
+        try (Stream<Path> files = Files.list(database.getDumpDirectory())) {
+            snapshot = files.filter(file -> file.toString().endsWith(".snap")).findFirst().orElseThrow();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Benchmark
+    public long scan() throws Exception {
+        long checksum = 0;
+        try (BinarySnapshotReader reader = BinarySnapshotReader.open(snapshot)) {
+            while (reader.next()) {
+                checksum += reader.getId() + reader.getNameIndex() + reader.getPhoneCode()
+                        + reader.getOldPhoneCode() + reader.getChangeMillis();
+            }
+        }
+        return checksum;
+    }
+}
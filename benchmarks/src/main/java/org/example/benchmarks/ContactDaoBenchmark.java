@@ -0,0 +1,68 @@
+package org.example.benchmarks;
+
+import org.example.dao.ContactDao;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContactDaoBenchmark {
+    private static final int SAMPLE_SIZE = 10;
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"10000", "100000", "1000000"})
+    public int recordCount;
+
+    @Param({"WAL", "DELETE"})
+    public String journalMode;
+
+    private BenchmarkDatabase database;
+    private ContactDao contactDao;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.create(recordCount, journalMode, true);
+        contactDao = database.getContactService().getContactDao();
+        contactDao.getRandomContactIds(1);   // индекс ID строится до замеров
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Benchmark
+    public List<Integer> getRandomContactIds() throws Exception {
+        return contactDao.getRandomContactIds(SAMPLE_SIZE);
+    }
+
+    @Benchmark
+    public void updateContactPhone() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        contactDao.updateContactPhone(1 + random.nextInt(recordCount), phone(random));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void updateContactPhonesBatched() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Map<Integer, String> phones = new LinkedHashMap<>();
+        while (phones.size() < BATCH_SIZE) {
+            phones.put(1 + random.nextInt(recordCount), phone(random));
+        }
+        contactDao.updateContactPhones(phones);
+    }
+
+    private static String phone(ThreadLocalRandom random) {
+        return (100 + random.nextInt(900)) + "-" + (10000 + random.nextInt(90000));
+    }
+}
@@ -0,0 +1,43 @@
+package org.example.benchmarks;
+
+import org.example.dao.ContactIdIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Выборка случайных ID из индекса в памяти без БД: стоимость тика не должна расти с размером таблицы
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContactIdIndexBenchmark {
+
+    @Param({"100000", "1000000", "10000000"})
+    public int recordCount;
+
+    // Размер выборки за тик (max.contacts.to.update)
+    @Param({"10", "1000"})
+    public int sampleSize;
+
+    private ContactIdIndex index;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int[] ids = new int[recordCount];
+        for (int i = 0; i < recordCount; i++) {
+            ids[i] = i + 1;
+        }
+        index = new ContactIdIndex();
+        index.load(ids, recordCount);
+        random = new Random(1);
+    }
+
+    @Benchmark
+    public int[] sample() {
+        return index.sample(sampleSize, random);
+    }
+}
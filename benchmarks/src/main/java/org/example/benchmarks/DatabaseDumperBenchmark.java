@@ -0,0 +1,65 @@
+package org.example.benchmarks;
+
+import org.example.dump.DumpKind;
+import org.example.dump.DumpSinks;
+import org.example.scheduler.DatabaseDumper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DatabaseDumperBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int recordCount;
+
+    @Param({"WAL", "DELETE"})
+    public String journalMode;
+
+    // 1 — один курсор, 3 — чтение диапазонами на трех соединениях (db.pool.readers = 4)
+    @Param({"1", "3"})
+    public String dumpParallelism;
+
+    // text — таблица фиксированной ширины, binary — колоночный снимок
+    @Param({"text", "binary"})
+    public String dumpSinks;
+
+    private BenchmarkDatabase database;
+    private DatabaseDumper dumper;
+    private long dumpNumber = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Properties overrides = new Properties();
+        overrides.setProperty("db.dump.parallelism", dumpParallelism);
+        overrides.setProperty("db.dump.sinks", dumpSinks);
+        database = BenchmarkDatabase.create(recordCount, journalMode, true, overrides);
+        // Немного истории, чтобы дамп проходил и ветку с журналом изменений
+        for (int i = 0; i < 10; i++) {
+            database.getContactService().updateRandomContactsPhones();
+        }
+        dumper = new DatabaseDumper(database.getContactService().getContactDao(), database.getConfig(), (attempt, failed) -> { });
+    }
+
+    @TearDown(Level.Invocation)
+    public void clearDumps() throws Exception {
+        database.clearDumps();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    // dumpOnDemand пробрасывает ошибки (run() их только логирует), поэтому сбой дампа проваливает бенчмарк
+    @Benchmark
+    public long dumpEndToEnd() throws Exception {
+        return dumper.dumpOnDemand(DumpSinks.create(database.getConfig(), DumpKind.FULL, ++dumpNumber));
+    }
+}
@@ -0,0 +1,42 @@
+package org.example.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class GenerateDataBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int recordCount;
+
+    @Param({"WAL", "DELETE"})
+    public String journalMode;
+
+    private BenchmarkDatabase database;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.create(recordCount, journalMode, false);
+    }
+
+    @Setup(Level.Invocation)
+    public void clearTable() throws Exception {
+        database.getContactService().getContactDao().clearDatabase();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Benchmark
+    public void generateData() throws Exception {
+        database.getContactService().generateData();
+    }
+}
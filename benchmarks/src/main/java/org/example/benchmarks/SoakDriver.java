@@ -0,0 +1,385 @@
+package org.example.benchmarks;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import org.example.config.AppConfig;
+import org.example.dao.WriteCoordinator;
+import org.example.dump.DumpRowFormatter;
+import org.example.metrics.Counter;
+import org.example.metrics.LatencyHistogram;
+import org.example.metrics.MetricsRegistry;
+import org.example.scheduler.SchedulerManager;
+import org.example.service.ContactService;
+import org.example.util.DbConnection;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Нагрузочный прогон полного стека (ContactService, SchedulerManager с обновлениями телефонов
+ * и DatabaseDumper) на временной БД, с отчетом в JSON для сравнения сборок и настроек.
+ * Нагрузка задается обычными ключами config.properties: updater.rate и updater.lanes (темп),
+ * records.count (контакты), updater.key.distribution (uniform | zipfian), db.dump.*.interval
+ * (частота дампов); длительность и отчет — ключами soak.*:
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar org.example.benchmarks.SoakDriver benchmarks/soak.properties [key=value ...]
+ * </pre>
+ * Зерна генерации и полос по умолчанию фиксированы, поэтому повторный прогон дает ту же нагрузку.
+ * Задержки — верхние границы корзин LatencyHistogram (погрешность до ~6%), только за время замера.
+ */
+public final class SoakDriver {
+    private static final Logger LOGGER = Logger.getLogger(SoakDriver.class.getName());
+
+    private final Properties settings;
+    private final int warmupSeconds;
+    private final int durationSeconds;
+    private final int sampleSeconds;
+    private final Path reportFile;
+    private final boolean keepFiles;
+
+    private final LatencyHistogram gcPauses = new LatencyHistogram();
+    private final List<String> samples = new ArrayList<>();
+    private long maxDatabaseBytes = 0;
+
+    private SoakDriver(Properties settings) {
+        this.settings = settings;
+        this.warmupSeconds = Integer.parseInt(settings.getProperty("soak.warmup.seconds", "0"));
+        this.durationSeconds = Math.max(1, Integer.parseInt(settings.getProperty("soak.duration.seconds", "60")));
+        this.sampleSeconds = Math.max(1, Integer.parseInt(settings.getProperty("soak.sample.seconds", "10")));
+        this.reportFile = Paths.get(settings.getProperty("soak.report.file", "soak-report.json"));
+        this.keepFiles = Boolean.parseBoolean(settings.getProperty("soak.keep.files", "false"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Properties settings = new Properties();
+        int first = 0;
+        if (args.length > 0 && !args[0].contains("=")) {
+            try (Reader reader = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+                settings.load(reader);
+            }
+            first = 1;
+        }
+        // key=value после файла переопределяют его: так удобно перебирать настройки из скрипта
+        for (int i = first; i < args.length; i++) {
+            int eq = args[i].indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Ожидается key=value: " + args[i]);
+            }
+            settings.setProperty(args[i].substring(0, eq), args[i].substring(eq + 1));
+        }
+        System.exit(new SoakDriver(settings).run());
+    }
+
+    private int run() throws Exception {
+        Path directory = Files.createTempDirectory("integrator-soak");
+        Properties props = new Properties();
+        // Воспроизводимая нагрузка по умолчанию; дампы — в файлы, а не в лог
+        props.setProperty("generator.seed", "1");
+        props.setProperty("updater.seed", "1");
+        props.setProperty("updater.lanes", "4");
+        props.setProperty("db.dump.sinks", "binary");
+        props.setProperty("data.template.file", "");
+        props.putAll(settings);
+        props.setProperty("db.name", directory.resolve("contacts.db").toString());
+        props.setProperty("db.dump.output.dir", directory.resolve("dumps").toString());
+        props.setProperty("run.max.dumps", "0");
+        props.setProperty("http.port", "0");
+        AppConfig config = new AppConfig(props);
+        Path database = directory.resolve("contacts.db");
+
+        String startedAt = Instant.now().toString();
+        List<NotificationEmitter> emitters = listenToGc();
+        boolean completed = false;
+        SchedulerManager manager = null;
+        String report = null;
+        try {
+            DbConnection.initialize(config);
+            ContactService contactService = new ContactService(config);
+            contactService.initializeDatabase();
+            WriteCoordinator writer = contactService.getContactDao().getWriteCoordinator();
+
+            manager = new SchedulerManager(contactService, config);
+            manager.startAll();
+            LOGGER.info(String.format("Нагрузочный прогон: прогрев %d с, замер %d с, выборка каждые %d с",
+                    warmupSeconds, durationSeconds, sampleSeconds));
+
+            long started = System.nanoTime();
+            long measureFrom = started + TimeUnit.SECONDS.toNanos(warmupSeconds);
+            long measureTo = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+            Window window = new Window(writer);
+            // Весь замер: создается по окончании прогрева
+            Window total = null;
+            long bytesAtStart = 0;
+            while (true) {
+                long now = System.nanoTime();
+                if (total == null && now >= measureFrom) {
+                    total = new Window(writer);
+                    bytesAtStart = databaseBytes(database);
+                    maxDatabaseBytes = bytesAtStart;
+                }
+                if (now >= measureTo) {
+                    completed = true;
+                    break;
+                }
+                long next = Math.min(now + TimeUnit.SECONDS.toNanos(sampleSeconds), total == null ? measureFrom : measureTo);
+                if (manager.awaitStopRequest(Math.max(1, next - now), TimeUnit.NANOSECONDS)) {
+                    LOGGER.warning("Прогон остановлен до срока");
+                    break;
+                }
+                sample(window, database, (System.nanoTime() - started) / 1e9, total == null);
+                if (!keepFiles) {
+                    pruneDumps(directory.resolve("dumps"), config.getDumpSinks().length);
+                }
+            }
+            if (total != null) {
+                report = report(total, config, props, startedAt, completed, bytesAtStart, databaseBytes(database));
+            }
+        } finally {
+            for (NotificationEmitter emitter : emitters) {
+                try {
+                    emitter.removeNotificationListener(gcListener);
+                } catch (Exception e) {
+                    LOGGER.log(Level.FINE, "Слушатель GC уже снят", e);
+                }
+            }
+            if (manager != null) {
+                manager.shutdown();
+            } else {
+                DbConnection.shutdown();
+            }
+            if (!keepFiles) {
+                deleteRecursively(directory);
+            } else {
+                LOGGER.info("Файлы прогона сохранены в " + directory);
+            }
+        }
+
+        if (report == null) {
+            LOGGER.severe("Прогон остановлен во время прогрева, отчет не записан");
+            return 1;
+        }
+        Path parent = reportFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.writeString(reportFile, report, StandardCharsets.UTF_8);
+        LOGGER.info("Отчет нагрузочного прогона: " + reportFile.toAbsolutePath());
+        return completed && manager.getExitStatus() == 0 ? 0 : 1;
+    }
+
+    private String report(Window total, AppConfig config, Properties props, String startedAt, boolean completed,
+                          long bytesAtStart, long bytesAtEnd) {
+        double seconds = (System.nanoTime() - total.at) / 1e9;
+        total.advance();
+        maxDatabaseBytes = Math.max(maxDatabaseBytes, bytesAtEnd);
+        long rows = total.updatedRows.getCount() - total.rows;
+
+        StringBuilder out = new StringBuilder(4096);
+        out.append("{\n");
+        field(out, "startedAt", startedAt);
+        field(out, "java", System.getProperty("java.version"));
+        out.append("  \"processors\": ").append(Runtime.getRuntime().availableProcessors()).append(",\n");
+        out.append("  \"settings\": ");
+        settings(out, props);
+        out.append(",\n");
+        out.append("  \"completed\": ").append(completed).append(",\n");
+        out.append("  \"warmupSeconds\": ").append(warmupSeconds).append(",\n");
+        out.append("  \"measuredSeconds\": ").append(format(seconds)).append(",\n");
+        out.append("  \"updates\": {\"rows\": ").append(rows)
+                .append(", \"rowsPerSecond\": ").append(format(rows / seconds))
+                .append(", \"targetPerSecond\": ").append(config.getUpdaterLanes() > 0 ? config.getUpdaterRate() : 0)
+                .append(", \"commits\": ").append(total.writer.getCommits() - total.commits)
+                .append(", \"failedCommands\": ").append(total.writer.getFailedCommands() - total.failed)
+                .append("},\n");
+        out.append("  \"updateLatencyMicros\": ");
+        percentiles(out, total.latency);
+        out.append(",\n  \"commitLatencyMicros\": ");
+        percentiles(out, total.commitLatency);
+        out.append(",\n  \"dumpDurationMicros\": ");
+        percentiles(out, total.dumps);
+        out.append(",\n  \"database\": {\"bytesAtStart\": ").append(bytesAtStart)
+                .append(", \"bytesAtEnd\": ").append(bytesAtEnd)
+                .append(", \"bytesMax\": ").append(maxDatabaseBytes)
+                .append(", \"growthBytes\": ").append(bytesAtEnd - bytesAtStart)
+                .append("},\n");
+        out.append("  \"gcPauseMicros\": ");
+        percentiles(out, total.pauses);
+        out.append(",\n  \"samples\": [\n");
+        for (int i = 0; i < samples.size(); i++) {
+            out.append("    ").append(samples.get(i)).append(i + 1 < samples.size() ? ",\n" : "\n");
+        }
+        out.append("  ]\n}\n");
+        return out.toString();
+    }
+
+    // Строка выборки: темп и p99 за интервал с предыдущей выборки, очередь писателя, размер БД, паузы GC
+    private void sample(Window window, Path database, double elapsed, boolean warmup) throws IOException {
+        double seconds = (System.nanoTime() - window.at) / 1e9;
+        long rows = window.updatedRows.getCount();
+        window.advance();
+        long bytes = databaseBytes(database);
+        if (!warmup) {
+            maxDatabaseBytes = Math.max(maxDatabaseBytes, bytes);
+        }
+        samples.add(String.format(Locale.ROOT,
+                "{\"t\": %.1f, \"warmup\": %b, \"rowsPerSecond\": %.1f, \"updateP99Micros\": %d, " +
+                        "\"commitP99Micros\": %d, \"queue\": %d, \"databaseBytes\": %d, \"gcPauses\": %d, " +
+                        "\"gcPauseMaxMicros\": %d, \"heapUsedBytes\": %d}",
+                elapsed, warmup, (rows - window.rows) / seconds, window.latency.percentile(0.99),
+                window.commitLatency.percentile(0.99), window.writer.getQueueSize(), bytes,
+                window.pauses.getCount(), window.pauses.percentile(1.0),
+                Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()));
+        window.rows = rows;
+    }
+
+    // Окно измерений: разности счетчиков и гистограмм с момента создания или предыдущего advance()
+    private final class Window {
+        final WriteCoordinator writer;
+        final Counter updatedRows = MetricsRegistry.counter("dao.updatedRows");
+        final long commits;
+        final long failed;
+        final LatencyHistogram.Interval latency;
+        final LatencyHistogram.Interval commitLatency;
+        final LatencyHistogram.Interval dumps = MetricsRegistry.timer("dump.total").interval();
+        final LatencyHistogram.Interval pauses = gcPauses.interval();
+        long rows = updatedRows.getCount();
+        long at = System.nanoTime();
+
+        Window(WriteCoordinator writer) {
+            this.writer = writer;
+            this.commits = writer.getCommits();
+            this.failed = writer.getFailedCommands();
+            this.latency = writer.getCommandLatency().interval();
+            this.commitLatency = writer.getCommitLatency().interval();
+        }
+
+        void advance() {
+            latency.advance();
+            commitLatency.advance();
+            dumps.advance();
+            pauses.advance();
+            at = System.nanoTime();
+        }
+    }
+
+    private final NotificationListener gcListener = this::onGc;
+
+    private List<NotificationEmitter> listenToGc() {
+        List<NotificationEmitter> emitters = new ArrayList<>();
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (bean instanceof NotificationEmitter emitter) {
+                emitter.addNotificationListener(gcListener, null, null);
+                emitters.add(emitter);
+            }
+        }
+        return emitters;
+    }
+
+    private void onGc(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info =
+                GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        // Циклы конкурентных сборщиков идут параллельно приложению и паузами не являются
+        String name = info.getGcName();
+        if (name.contains("Concurrent") || name.contains("Cycles")) {
+            return;
+        }
+        gcPauses.record(info.getGcInfo().getDuration() * 1000);
+    }
+
+    private static long databaseBytes(Path database) throws IOException {
+        long bytes = 0;
+        for (String suffix : new String[]{"", "-wal", "-shm"}) {
+            Path file = Paths.get(database + suffix);
+            if (Files.exists(file)) {
+                bytes += Files.size(file);
+            }
+        }
+        return bytes;
+    }
+
+    // Оставляет файлы последнего дампа (по одному на приемник), чтобы многочасовой прогон не заполнил диск
+    private static void pruneDumps(Path dumps, int keep) throws IOException {
+        if (!Files.isDirectory(dumps)) {
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dumps)) {
+            files = list.sorted(Comparator.comparing(Path::getFileName)).toList();
+        }
+        for (int i = 0; i < files.size() - keep; i++) {
+            Files.deleteIfExists(files.get(i));
+        }
+    }
+
+    private static void percentiles(StringBuilder out, LatencyHistogram.Interval interval) {
+        out.append("{\"count\": ").append(interval.getCount())
+                .append(", \"p50\": ").append(interval.percentile(0.50))
+                .append(", \"p99\": ").append(interval.percentile(0.99))
+                .append(", \"p999\": ").append(interval.percentile(0.999))
+                .append(", \"max\": ").append(interval.percentile(1.0))
+                .append('}');
+    }
+
+    private static void settings(StringBuilder out, Properties props) {
+        TreeMap<String, String> sorted = new TreeMap<>();
+        for (String key : props.stringPropertyNames()) {
+            sorted.put(key, props.getProperty(key));
+        }
+        out.append('{');
+        boolean first = true;
+        for (var entry : sorted.entrySet()) {
+            out.append(first ? "" : ", ");
+            DumpRowFormatter.appendJsonString(out, entry.getKey());
+            out.append(": ");
+            DumpRowFormatter.appendJsonString(out, entry.getValue());
+            first = false;
+        }
+        out.append('}');
+    }
+
+    private static void field(StringBuilder out, String name, String value) {
+        out.append("  ");
+        DumpRowFormatter.appendJsonString(out, name);
+        out.append(": ");
+        DumpRowFormatter.appendJsonString(out, value);
+        out.append(",\n");
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package org.example;
 
 import org.example.config.AppConfig;
+import org.example.http.StatusServer;
+import org.example.metrics.MetricsRegistry;
 import org.example.service.ContactService;
 import org.example.scheduler.SchedulerManager;
 import org.example.util.DbConnection;
@@ -14,6 +16,7 @@ import java.util.logging.Logger;
 public class Main {
     private static final Logger LOGGER = Logger.getLogger(Main.class.getName());
     private static SchedulerManager schedulerManager;
+    private static volatile StatusServer statusServer;
 
     public static void main(String[] args) {
 
@@ -21,6 +24,9 @@ public class Main {
             // 1. Загрузка конфигурации
             LOGGER.info("Инициализация конфигурации...");
             AppConfig config = new AppConfig();
+            if (config.isMetricsJmxEnabled()) {
+                MetricsRegistry.enableJmx();
+            }
             DbConnection.initialize(config);
 
             // 2. Инициализация сервисов
@@ -34,6 +40,10 @@ public class Main {
             LOGGER.info("Запуск планировщиков...");
             schedulerManager = new SchedulerManager(contactService, config);
             schedulerManager.startAll();
+            if (config.getHttpPort() > 0) {
+                statusServer = StatusServer.start(config, schedulerManager,
+                        contactService.getContactDao().getWriteCoordinator());
+            }
 //            // Завершение работы
 //                try {
 //                    LOGGER.info("2. Перед вызовом cleanupDatabase()");
@@ -46,15 +56,22 @@ public class Main {
 //                }
 //                LOGGER.info("11Завершение работы приложения...");
 
-            // 5. Настройка завершения работы
+            // 5. Настройка завершения работы по сигналу (SIGTERM, Ctrl+C)
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
                 LOGGER.info("Получен сигнал завершения...");
-                LOGGER.info("исполнен");
-                schedulerManager.shutdown();
+                stop();
             }));
 
-            // 6. Ожидание завершения
-            keepMainThreadAlive();
+            // 6. Работа до запроса остановки (run.max.dumps) или истечения run.max.runtime.seconds
+            LOGGER.info("Приложение успешно запущено и работает...");
+            int maxRuntime = config.getRunMaxRuntimeSeconds();
+            if (!schedulerManager.awaitStopRequest(maxRuntime, TimeUnit.SECONDS)) {
+                LOGGER.info("Истекло время работы: " + maxRuntime + " с");
+            }
+            stop();
+            if (schedulerManager.getExitStatus() != 0) {
+                System.exit(schedulerManager.getExitStatus());
+            }
 
         } catch (Exception e) {
             LOGGER.severe("Критическая ошибка: " + e.getMessage());
@@ -62,15 +79,11 @@ public class Main {
         }
     }
 
-        private static void keepMainThreadAlive() {
-            LOGGER.info("Приложение успешно запущено и работает...");
-            synchronized (Main.class) {
-                try {
-                    Main.class.wait();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    LOGGER.warning("Главный поток прерван");
-                }
-            }
+    // Вызывается главным потоком и обработчиком сигнала; повторные вызовы ничего не делают
+    private static void stop() {
+        if (statusServer != null) {
+            statusServer.close();
         }
+        schedulerManager.shutdown();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,208 @@
+package org.example.cache;
+
+import org.example.util.PhoneNumbers;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Кэш таблицы контактов в памяти с колоночным хранением.
+ * ID -> номер строки через {@link IntIntHashMap}; имена хранятся кодами словаря
+ * (в names.list всего несколько значений), телефоны — упакованными int.
+ * Телефоны не в формате "ddd-ddddd" держатся строками в отдельной таблице.
+ * Все методы синхронизированы; DAO фиксирует транзакцию и обновляет кэш под тем же монитором,
+ * чтобы снимок кэша всегда соответствовал зафиксированному состоянию БД.
+ */
+public final class ContactCache {
+    private final IntIntHashMap rows = new IntIntHashMap(16);
+    private int[] ids = new int[16];
+    private int[] nameCodes = new int[16];
+    private int[] phones = new int[16];
+    private int size = 0;
+    // Строки лежат по возрастанию ID, пока не было вставок не по порядку
+    private boolean ordered = true;
+    private boolean loaded = false;
+
+    private final Map<String, Integer> nameDictionary = new HashMap<>();
+    private String[] namesByCode = new String[8];
+    private final Map<Integer, String> irregularPhones = new HashMap<>();
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    // Кэш будет перечитан из БД при следующем обращении
+    public synchronized void invalidate() {
+        loaded = false;
+    }
+
+    public synchronized void clear() {
+        rows.clear();
+        size = 0;
+        ordered = true;
+        irregularPhones.clear();
+        loaded = true;
+    }
+
+    // Начало полной загрузки: кэш очищается и помечается загруженным после markLoaded()
+    public synchronized void beginLoad(int expected) {
+        clear();
+        loaded = false;
+        ensureCapacity(expected);
+    }
+
+    public synchronized void markLoaded() {
+        loaded = true;
+    }
+
+    public synchronized void put(int id, String name, String phone) {
+        int row = rowFor(id);
+        nameCodes[row] = nameCode(name);
+        setPhone(row, id, phone);
+    }
+
+    // Загрузка из таблицы с phone.encoding=packed: телефон уже упакован
+    public synchronized void putPacked(int id, String name, int phoneCode) {
+        int row = rowFor(id);
+        nameCodes[row] = nameCode(name);
+        phones[row] = phoneCode;
+        irregularPhones.remove(id);
+    }
+
+    public synchronized void updatePhone(int id, String phone) {
+        int row = rows.get(id);
+        if (row != IntIntHashMap.MISSING) {
+            setPhone(row, id, phone);
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized String getPhone(int id) {
+        int row = rows.get(id);
+        return row == IntIntHashMap.MISSING ? null : phoneAt(row);
+    }
+
+    /**
+     * k случайных ID без повторов. Строки не переставляются (порядок нужен снимкам),
+     * поэтому при малом k повторы отбрасываются, а при k сравнимом с размером
+     * перетасовывается копия номеров строк.
+     */
+    public synchronized int[] sample(int k, Random random) {
+        int count = Math.min(k, size);
+        int[] result = new int[count];
+        if (count * 4 <= size) {
+            int found = 0;
+            while (found < count) {
+                int id = ids[random.nextInt(size)];
+                boolean duplicate = false;
+                for (int i = 0; i < found && !duplicate; i++) {
+                    duplicate = result[i] == id;
+                }
+                if (!duplicate) {
+                    result[found++] = id;
+                }
+            }
+            return result;
+        }
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        for (int i = 0; i < count; i++) {
+            int j = i + random.nextInt(size - i);
+            int picked = order[j];
+            order[j] = order[i];
+            result[i] = ids[picked];
+        }
+        return result;
+    }
+
+    /** Копия содержимого, упорядоченная по ID, для выгрузки без обращения к таблице контактов. */
+    public synchronized ContactSnapshot snapshot() {
+        int[] snapshotIds = Arrays.copyOf(ids, size);
+        int[] snapshotNames = Arrays.copyOf(nameCodes, size);
+        int[] snapshotPhones = Arrays.copyOf(phones, size);
+        if (!ordered) {
+            // Ключ сортировки — ID в старших битах, номер строки в младших
+            long[] order = new long[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = ((long) ids[i] << 32) | i;
+            }
+            Arrays.sort(order);
+            for (int i = 0; i < size; i++) {
+                int row = (int) order[i];
+                snapshotIds[i] = ids[row];
+                snapshotNames[i] = nameCodes[row];
+                snapshotPhones[i] = phones[row];
+            }
+        }
+        return new ContactSnapshot(snapshotIds, snapshotNames, snapshotPhones,
+                Arrays.copyOf(namesByCode, nameDictionary.size()), new HashMap<>(irregularPhones));
+    }
+
+    // Оценка занимаемой кучи: колонки по емкости, хеш-таблица, словарь имен и нестандартные телефоны
+    public synchronized long heapBytes() {
+        long bytes = 3L * (16 + 4L * ids.length) + rows.heapBytes();
+        for (int i = 0; i < nameDictionary.size(); i++) {
+            bytes += 40 + 2L * namesByCode[i].length() + 48;
+        }
+        bytes += irregularPhones.size() * (48L + 16 + 40 + 24);
+        return bytes;
+    }
+
+    private int rowFor(int id) {
+        int row = rows.get(id);
+        if (row == IntIntHashMap.MISSING) {
+            ensureCapacity(size + 1);
+            row = size++;
+            if (row > 0 && ids[row - 1] > id) {
+                ordered = false;
+            }
+            ids[row] = id;
+            rows.put(id, row);
+        }
+        return row;
+    }
+
+    private void setPhone(int row, int id, String phone) {
+        int packed = PhoneNumbers.pack(phone);
+        phones[row] = packed;
+        if (packed == PhoneNumbers.NOT_PACKED) {
+            irregularPhones.put(id, phone);
+        } else {
+            irregularPhones.remove(id);
+        }
+    }
+
+    private String phoneAt(int row) {
+        int packed = phones[row];
+        return packed == PhoneNumbers.NOT_PACKED ? irregularPhones.get(ids[row]) : PhoneNumbers.format(packed);
+    }
+
+    private int nameCode(String name) {
+        Integer code = nameDictionary.get(name);
+        if (code == null) {
+            code = nameDictionary.size();
+            if (code == namesByCode.length) {
+                namesByCode = Arrays.copyOf(namesByCode, code * 2);
+            }
+            namesByCode[code] = name;
+            nameDictionary.put(name, code);
+        }
+        return code;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > ids.length) {
+            int newLength = Math.max(capacity, ids.length * 3 / 2);
+            ids = Arrays.copyOf(ids, newLength);
+            nameCodes = Arrays.copyOf(nameCodes, newLength);
+            phones = Arrays.copyOf(phones, newLength);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.example.cache;
+
+import org.example.util.PhoneNumbers;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/** Неизменяемая копия кэша контактов, упорядоченная по ID. Телефон в текст переводится только при чтении. */
+public final class ContactSnapshot {
+    private final int[] ids;
+    private final int[] nameCodes;
+    private final int[] phones;
+    private final String[] namesByCode;
+    private final Map<Integer, String> irregularPhones;
+
+    ContactSnapshot(int[] ids, int[] nameCodes, int[] phones, String[] namesByCode,
+                    Map<Integer, String> irregularPhones) {
+        this.ids = ids;
+        this.nameCodes = nameCodes;
+        this.phones = phones;
+        this.namesByCode = namesByCode;
+        this.irregularPhones = irregularPhones;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public int id(int index) {
+        return ids[index];
+    }
+
+    public String name(int index) {
+        return namesByCode[nameCodes[index]];
+    }
+
+    public String phone(int index) {
+        int packed = phones[index];
+        return packed == PhoneNumbers.NOT_PACKED ? irregularPhones.get(ids[index]) : PhoneNumbers.format(packed);
+    }
+
+    // Упакованный телефон или NOT_PACKED, если он хранится строкой (см. phone())
+    public int phoneCode(int index) {
+        return phones[index];
+    }
+
+    // Позиция контакта в снимке или отрицательное число, если его нет
+    public int indexOf(int id) {
+        return Arrays.binarySearch(ids, id);
+    }
+}
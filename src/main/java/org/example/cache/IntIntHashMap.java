@@ -0,0 +1,150 @@
+package org.example.cache;
+
+import java.util.Arrays;
+
+/**
+ * Хеш-таблица int -> int с открытой адресацией и линейным пробированием, без упаковки ключей.
+ * Ключ 0 зарезервирован под пустую ячейку, поэтому допустимы только ключи != 0.
+ * Удаление сдвигает хвост кластера назад, так что "надгробий" нет и поиск не деградирует.
+ */
+public final class IntIntHashMap {
+    public static final int MISSING = -1;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    public IntIntHashMap(int expected) {
+        allocate(tableSizeFor(expected));
+    }
+
+    public int get(int key) {
+        // Ключ 0 совпал бы с первой пустой ячейкой
+        if (key == 0) {
+            return MISSING;
+        }
+        int slot = hash(key) & mask;
+        while (true) {
+            int k = keys[slot];
+            if (k == key) {
+                return values[slot];
+            }
+            if (k == 0) {
+                return MISSING;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public void put(int key, int value) {
+        if (key == 0) {
+            throw new IllegalArgumentException("Ключ 0 не поддерживается");
+        }
+        int slot = hash(key) & mask;
+        while (true) {
+            int k = keys[slot];
+            if (k == key) {
+                values[slot] = value;
+                return;
+            }
+            if (k == 0) {
+                keys[slot] = key;
+                values[slot] = value;
+                if (++size >= resizeAt) {
+                    rehash(keys.length * 2);
+                }
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public int remove(int key) {
+        if (key == 0) {
+            return MISSING;
+        }
+        int slot = hash(key) & mask;
+        while (true) {
+            int k = keys[slot];
+            if (k == 0) {
+                return MISSING;
+            }
+            if (k == key) {
+                int removed = values[slot];
+                shiftBack(slot);
+                size--;
+                return removed;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        size = 0;
+    }
+
+    public long heapBytes() {
+        return 2L * (16 + 4L * keys.length);
+    }
+
+    // Переносим назад элементы кластера, чья исходная позиция не лежит между дыркой и ними
+    private void shiftBack(int hole) {
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & mask;
+            int k = keys[slot];
+            if (k == 0) {
+                break;
+            }
+            int home = hash(k) & mask;
+            boolean movable = hole <= slot ? (home <= hole || home > slot) : (home <= hole && home > slot);
+            if (movable) {
+                keys[hole] = k;
+                values[hole] = values[slot];
+                hole = slot;
+            }
+        }
+        keys[hole] = 0;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int tableSizeFor(int expected) {
+        int capacity = 16;
+        while (capacity * LOAD_FACTOR <= expected) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    // Перемешивание битов: последовательные ID иначе образуют длинные кластеры
+    static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
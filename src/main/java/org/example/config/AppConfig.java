@@ -2,6 +2,9 @@ package org.example.config;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Random;
 import java.util.logging.Logger;
@@ -23,15 +26,97 @@ public class AppConfig {
     private int dbDumpMaxInterval;
     private int maxContactsToUpdate;
     private int maxLogRetentionSeconds;
+    private int logPurgeIntervalSeconds;
+    private int logPurgeBatchSize;
+
+    private int poolReaders;
+    private int poolBorrowTimeoutMs;
+    private int poolIdleTimeoutMs;
+    private int poolValidationIntervalMs;
+    private int statementCacheSize;
+    private int updateBatchSize;
+    private int dbWriteWindowMs;
+    private int dbWriteBatchMaxRows;
+    private int dbWriteQueueCapacity;
+
+    private final Map<String, String> pragmas = new LinkedHashMap<>();
+    private int checkpointIntervalSeconds;
+    private String checkpointMode;
+
+    private String[] dumpSinks;
+    private String dumpOutputDir;
+    private int dumpFetchSize;
+    private int dumpBufferBlockSize;
+    private int dumpBufferBlocks;
+    private int dumpLoggerRowsPerRecord;
+    private String dumpMode;
+    private int dumpFullSnapshotEvery;
+    private int dumpParallelism;
+    private int dumpRangeIds;
+    private int dumpBinaryBlockRows;
+    private String dumpBinaryCompression;
+
+    private String phoneEncoding;
+    private boolean cacheEnabled;
+
+    private String historyStore;
+    private String historyMmapFile;
+    private int historyMmapChangesPerSecond;
+
+    private int eventsRingCapacity;
+    private String[] eventSubscribers;
+    private int eventsBatchSize;
+    private String eventsSlowConsumer;
+    private String eventsExportFile;
+
+    private int generatorThreads;
+    private Long generatorSeed;
+    private int generatorChunkSize;
+    private int generatorRowsPerInsert;
+    private int generatorCommitRows;
+    private final Map<String, String> generatorPragmas = new LinkedHashMap<>();
+
+    private String schedulerEngine;
+    private int schedulerWorkerThreads;
+    private int schedulerLagReportSeconds;
+
+    private int updaterLanes;
+    private int updaterRate;
+    private int updaterTickMs;
+    private int updaterReportSeconds;
+    private boolean updaterAdaptive;
+    private int updaterAdaptiveTargetP99Ms;
+    private int updaterAdaptiveWindowMs;
+    private String updaterKeyDistribution;
+    private double updaterZipfExponent;
+    private Long updaterSeed;
+
+    private int metricsReportSeconds;
+    private boolean metricsJmxEnabled;
+
+    private int runMaxDumps;
+    private int runMaxRuntimeSeconds;
+    private int runShutdownTimeoutSeconds;
+    private String dataRegenerate;
+    private String dataTemplateFile;
+
+    private int httpPort;
+    private String httpBindAddress;
+    private int httpThreads;
 
     private int logRetentionSeconds;    // Сгенерированное M
     private int dbDumpInterval;         // Сгенерированный интервал работы программы
     private int phoneUpdateInterval;    // Сгенерированный интервал обновления телефонов в млс
 
     public AppConfig() {
+        this(new Properties());
+    }
+
+    // Значения из overrides имеют приоритет над config.properties (бенчмарки, временные БД)
+    public AppConfig(Properties overrides) {
         LOGGER.info("Инициализация конфигурации...");
         loadDefaults();
-        loadConfig();
+        loadConfig(overrides);
         logConfig();
     }
 
@@ -50,6 +135,89 @@ public class AppConfig {
         dbDumpMinInterval = 60;
         dbDumpMaxInterval = 300;
         maxLogRetentionSeconds = 30;
+        logPurgeIntervalSeconds = 5;
+        logPurgeBatchSize = 5000;
+
+        poolReaders = 4;
+        poolBorrowTimeoutMs = 30000;
+        poolIdleTimeoutMs = 60000;
+        poolValidationIntervalMs = 5000;
+        statementCacheSize = 32;
+        updateBatchSize = 500;
+        dbWriteWindowMs = 5;
+        dbWriteBatchMaxRows = 5000;
+        dbWriteQueueCapacity = 10000;
+
+        pragmas.put("journal_mode", "WAL");
+        pragmas.put("synchronous", "NORMAL");
+        pragmas.put("cache_size", "-16000");
+        pragmas.put("mmap_size", "268435456");
+        pragmas.put("temp_store", "MEMORY");
+        pragmas.put("busy_timeout", "5000");
+        checkpointIntervalSeconds = 30;
+        checkpointMode = "PASSIVE";
+
+        dumpSinks = new String[]{"logger"};
+        dumpOutputDir = "dumps";
+        dumpFetchSize = 1000;
+        dumpBufferBlockSize = 256 * 1024;
+        dumpBufferBlocks = 4;
+        dumpLoggerRowsPerRecord = 1000;
+        dumpMode = "full";
+        dumpFullSnapshotEvery = 10;
+        dumpParallelism = 1;
+        dumpRangeIds = 50000;
+        dumpBinaryBlockRows = 65536;
+        dumpBinaryCompression = "deflate";
+
+        phoneEncoding = "text";
+        cacheEnabled = false;
+
+        historyStore = "sqlite";
+        historyMmapFile = "phone-history.bin";
+        historyMmapChangesPerSecond = 1000;
+
+        eventsRingCapacity = 65536;
+        eventSubscribers = new String[0];
+        eventsBatchSize = 256;
+        eventsSlowConsumer = "drop";
+        eventsExportFile = "phone-changes.ndjson";
+
+        generatorThreads = 0;
+        generatorSeed = null;
+        generatorChunkSize = 10000;
+        generatorRowsPerInsert = 256;
+        generatorCommitRows = 1000000;
+        generatorPragmas.put("synchronous", "OFF");
+        generatorPragmas.put("cache_size", "-131072");
+
+        schedulerEngine = "pool";
+        schedulerWorkerThreads = 4;
+        schedulerLagReportSeconds = 60;
+
+        updaterLanes = 0;
+        updaterRate = 10000;
+        updaterTickMs = 10;
+        updaterReportSeconds = 10;
+        updaterAdaptive = false;
+        updaterAdaptiveTargetP99Ms = 50;
+        updaterAdaptiveWindowMs = 1000;
+        updaterKeyDistribution = "uniform";
+        updaterZipfExponent = 0.99;
+        updaterSeed = null;
+
+        metricsReportSeconds = 60;
+        metricsJmxEnabled = false;
+
+        runMaxDumps = 1;
+        runMaxRuntimeSeconds = 0;
+        runShutdownTimeoutSeconds = 30;
+        dataRegenerate = "auto";
+        dataTemplateFile = "";
+
+        httpPort = 0;
+        httpBindAddress = "127.0.0.1";
+        httpThreads = 2;
 
         maxContactsToUpdate = 10;
         phoneUpdateInterval = 3000;
@@ -57,11 +225,17 @@ public class AppConfig {
         logRetentionSeconds = 20;
     }
 
-    private void loadConfig() {
+    private void loadConfig(Properties overrides) {
         Properties prop = new Properties();
         try (FileInputStream input = new FileInputStream("src/main/resources/config.properties")) {
             prop.load(input);
+            LOGGER.info("Конфигурация успешно загружена из файла");
+        } catch (IOException e) {
+            LOGGER.warning("Файл конфигурации не найден, используются значения по умолчанию");
+        }
+        prop.putAll(overrides);
 
+        try {
             dbName = prop.getProperty("db.name", dbName);
             tableName = prop.getProperty("db.table.name", tableName);
             logTableName = prop.getProperty("log.table.name", logTableName);
@@ -78,6 +252,157 @@ public class AppConfig {
                     String.valueOf(maxContactsToUpdate)));
             maxLogRetentionSeconds = Integer.parseInt(prop.getProperty("max.log.retention.seconds",
                     String.valueOf(maxLogRetentionSeconds)));
+            logPurgeIntervalSeconds = Integer.parseInt(prop.getProperty("log.purge.interval",
+                    String.valueOf(logPurgeIntervalSeconds)));
+            logPurgeBatchSize = Integer.parseInt(prop.getProperty("log.purge.batch.size",
+                    String.valueOf(logPurgeBatchSize)));
+
+            poolReaders = Integer.parseInt(prop.getProperty("db.pool.readers",
+                    String.valueOf(poolReaders)));
+            poolBorrowTimeoutMs = Integer.parseInt(prop.getProperty("db.pool.borrow.timeout",
+                    String.valueOf(poolBorrowTimeoutMs)));
+            poolIdleTimeoutMs = Integer.parseInt(prop.getProperty("db.pool.idle.timeout",
+                    String.valueOf(poolIdleTimeoutMs)));
+            poolValidationIntervalMs = Integer.parseInt(prop.getProperty("db.pool.validation.interval",
+                    String.valueOf(poolValidationIntervalMs)));
+            statementCacheSize = Integer.parseInt(prop.getProperty("db.pool.statement.cache.size",
+                    String.valueOf(statementCacheSize)));
+            updateBatchSize = Integer.parseInt(prop.getProperty("db.update.batch.size",
+                    String.valueOf(updateBatchSize)));
+            dbWriteWindowMs = Integer.parseInt(prop.getProperty("db.write.window.ms",
+                    String.valueOf(dbWriteWindowMs)));
+            dbWriteBatchMaxRows = Integer.parseInt(prop.getProperty("db.write.batch.max.rows",
+                    String.valueOf(dbWriteBatchMaxRows)));
+            dbWriteQueueCapacity = Integer.parseInt(prop.getProperty("db.write.queue.capacity",
+                    String.valueOf(dbWriteQueueCapacity)));
+
+            // db.pragma.<имя>=<значение> переопределяет или дополняет профиль PRAGMA
+            String pragmaPrefix = "db.pragma.";
+            for (String key : prop.stringPropertyNames()) {
+                if (key.startsWith(pragmaPrefix)) {
+                    pragmas.put(key.substring(pragmaPrefix.length()), prop.getProperty(key).trim());
+                }
+            }
+            checkpointIntervalSeconds = Integer.parseInt(prop.getProperty("db.checkpoint.interval",
+                    String.valueOf(checkpointIntervalSeconds)));
+            checkpointMode = prop.getProperty("db.checkpoint.mode", checkpointMode);
+
+            String sinksList = prop.getProperty("db.dump.sinks");
+            if (sinksList != null) {
+                dumpSinks = sinksList.split(",");
+                for (int i = 0; i < dumpSinks.length; i++) {
+                    dumpSinks[i] = dumpSinks[i].trim().toLowerCase();
+                }
+            }
+            dumpOutputDir = prop.getProperty("db.dump.output.dir", dumpOutputDir);
+            dumpFetchSize = Integer.parseInt(prop.getProperty("db.dump.fetch.size",
+                    String.valueOf(dumpFetchSize)));
+            dumpBufferBlockSize = Integer.parseInt(prop.getProperty("db.dump.buffer.block.size",
+                    String.valueOf(dumpBufferBlockSize)));
+            dumpBufferBlocks = Integer.parseInt(prop.getProperty("db.dump.buffer.blocks",
+                    String.valueOf(dumpBufferBlocks)));
+            dumpLoggerRowsPerRecord = Integer.parseInt(prop.getProperty("db.dump.logger.rows.per.record",
+                    String.valueOf(dumpLoggerRowsPerRecord)));
+            dumpMode = prop.getProperty("db.dump.mode", dumpMode).trim().toLowerCase();
+            dumpFullSnapshotEvery = Integer.parseInt(prop.getProperty("db.dump.full.every",
+                    String.valueOf(dumpFullSnapshotEvery)));
+            dumpParallelism = Integer.parseInt(prop.getProperty("db.dump.parallelism",
+                    String.valueOf(dumpParallelism)));
+            dumpRangeIds = Integer.parseInt(prop.getProperty("db.dump.range.ids",
+                    String.valueOf(dumpRangeIds)));
+            dumpBinaryBlockRows = Integer.parseInt(prop.getProperty("db.dump.binary.block.rows",
+                    String.valueOf(dumpBinaryBlockRows)));
+            dumpBinaryCompression = prop.getProperty("db.dump.binary.compression", dumpBinaryCompression)
+                    .trim().toLowerCase();
+
+            phoneEncoding = prop.getProperty("phone.encoding", phoneEncoding).trim().toLowerCase();
+            cacheEnabled = Boolean.parseBoolean(prop.getProperty("cache.enabled",
+                    String.valueOf(cacheEnabled)).trim());
+
+            historyStore = prop.getProperty("history.store", historyStore).trim().toLowerCase();
+            historyMmapFile = prop.getProperty("history.mmap.file", historyMmapFile);
+            historyMmapChangesPerSecond = Integer.parseInt(prop.getProperty("history.mmap.changes.per.second",
+                    String.valueOf(historyMmapChangesPerSecond)));
+
+            eventsRingCapacity = Integer.parseInt(prop.getProperty("events.ring.capacity",
+                    String.valueOf(eventsRingCapacity)));
+            String subscribersList = prop.getProperty("events.subscribers", "").trim();
+            if (!subscribersList.isEmpty()) {
+                eventSubscribers = subscribersList.split(",");
+                for (int i = 0; i < eventSubscribers.length; i++) {
+                    eventSubscribers[i] = eventSubscribers[i].trim().toLowerCase();
+                }
+            }
+            eventsBatchSize = Integer.parseInt(prop.getProperty("events.batch.size",
+                    String.valueOf(eventsBatchSize)));
+            eventsSlowConsumer = prop.getProperty("events.slow.consumer", eventsSlowConsumer).trim().toLowerCase();
+            eventsExportFile = prop.getProperty("events.export.file", eventsExportFile);
+
+            generatorThreads = Integer.parseInt(prop.getProperty("generator.threads",
+                    String.valueOf(generatorThreads)));
+            String seed = prop.getProperty("generator.seed", "").trim();
+            if (!seed.isEmpty()) {
+                generatorSeed = Long.parseLong(seed);
+            }
+            generatorChunkSize = Integer.parseInt(prop.getProperty("generator.chunk.size",
+                    String.valueOf(generatorChunkSize)));
+            generatorRowsPerInsert = Integer.parseInt(prop.getProperty("generator.rows.per.insert",
+                    String.valueOf(generatorRowsPerInsert)));
+            generatorCommitRows = Integer.parseInt(prop.getProperty("generator.commit.rows",
+                    String.valueOf(generatorCommitRows)));
+            // generator.pragma.<имя>=<значение> действует только на время генерации
+            String generatorPragmaPrefix = "generator.pragma.";
+            for (String key : prop.stringPropertyNames()) {
+                if (key.startsWith(generatorPragmaPrefix)) {
+                    generatorPragmas.put(key.substring(generatorPragmaPrefix.length()), prop.getProperty(key).trim());
+                }
+            }
+
+            schedulerEngine = prop.getProperty("scheduler.engine", schedulerEngine).trim().toLowerCase();
+            schedulerWorkerThreads = Integer.parseInt(prop.getProperty("scheduler.worker.threads",
+                    String.valueOf(schedulerWorkerThreads)));
+            schedulerLagReportSeconds = Integer.parseInt(prop.getProperty("scheduler.lag.report.interval",
+                    String.valueOf(schedulerLagReportSeconds)));
+
+            updaterLanes = Integer.parseInt(prop.getProperty("updater.lanes",
+                    String.valueOf(updaterLanes)));
+            updaterRate = Integer.parseInt(prop.getProperty("updater.rate",
+                    String.valueOf(updaterRate)));
+            updaterTickMs = Integer.parseInt(prop.getProperty("updater.tick.ms",
+                    String.valueOf(updaterTickMs)));
+            updaterReportSeconds = Integer.parseInt(prop.getProperty("updater.report.interval",
+                    String.valueOf(updaterReportSeconds)));
+            updaterAdaptive = Boolean.parseBoolean(prop.getProperty("updater.adaptive",
+                    String.valueOf(updaterAdaptive)).trim());
+            updaterAdaptiveTargetP99Ms = Integer.parseInt(prop.getProperty("updater.adaptive.target.p99.ms",
+                    String.valueOf(updaterAdaptiveTargetP99Ms)));
+            updaterAdaptiveWindowMs = Integer.parseInt(prop.getProperty("updater.adaptive.window.ms",
+                    String.valueOf(updaterAdaptiveWindowMs)));
+            updaterKeyDistribution = prop.getProperty("updater.key.distribution", updaterKeyDistribution)
+                    .trim().toLowerCase();
+            updaterZipfExponent = Double.parseDouble(prop.getProperty("updater.zipf.exponent",
+                    String.valueOf(updaterZipfExponent)));
+            String updaterSeedValue = prop.getProperty("updater.seed", "").trim();
+            if (!updaterSeedValue.isEmpty()) {
+                updaterSeed = Long.parseLong(updaterSeedValue);
+            }
+
+            metricsReportSeconds = Integer.parseInt(prop.getProperty("metrics.report.interval",
+                    String.valueOf(metricsReportSeconds)));
+            metricsJmxEnabled = Boolean.parseBoolean(prop.getProperty("metrics.jmx.enabled",
+                    String.valueOf(metricsJmxEnabled)));
+
+            runMaxDumps = Integer.parseInt(prop.getProperty("run.max.dumps", String.valueOf(runMaxDumps)));
+            runMaxRuntimeSeconds = Integer.parseInt(prop.getProperty("run.max.runtime.seconds",
+                    String.valueOf(runMaxRuntimeSeconds)));
+            runShutdownTimeoutSeconds = Integer.parseInt(prop.getProperty("run.shutdown.timeout.seconds",
+                    String.valueOf(runShutdownTimeoutSeconds)));
+            dataRegenerate = prop.getProperty("data.regenerate", dataRegenerate).trim().toLowerCase();
+            dataTemplateFile = prop.getProperty("data.template.file", dataTemplateFile).trim();
+
+            httpPort = Integer.parseInt(prop.getProperty("http.port", String.valueOf(httpPort)));
+            httpBindAddress = prop.getProperty("http.bind.address", httpBindAddress).trim();
+            httpThreads = Integer.parseInt(prop.getProperty("http.threads", String.valueOf(httpThreads)));
 
             String namesList = prop.getProperty("names.list");
             if (namesList != null) {
@@ -97,26 +422,64 @@ public class AppConfig {
             // 1 <= M < max
             logRetentionSeconds = 1 + random.nextInt(maxLogRetentionSeconds - 1);
 
-            LOGGER.info("Конфигурация успешно загружена из файла");
-        } catch (IOException e) {
-            LOGGER.warning("Файл конфигурации не найден, используются значения по умолчанию");
         } catch (NumberFormatException e) {
             LOGGER.warning("Ошибка формата числа в конфиге, используются значения по умолчанию");
         }
     }
 
     private void logConfig() {
-        LOGGER.info("Текущая конфигурация:\n" +
-                "DB: " + dbName + "\n" +
+        LOGGER.info("Текущая конфигурация:\n" + describe());
+    }
+
+    // Текущие значения настроек, по строке на группу; то же выводит HTTP /status
+    public String describe() {
+        return "DB: " + dbName + "\n" +
                 "Table: " + tableName + "\n" +
                 "Table Logs: " + logTableName + "\n" +
                 "Records: " + numRecords + "\n" +
                 "Phone update interval: " + phoneUpdateMinInterval + "-" + phoneUpdateMaxInterval + "ms\n" +
                 "DB dump interval: " + dbDumpMinInterval + "-" + dbDumpMaxInterval + "s\n" +
                 "Max contacts to update: " + maxContactsToUpdate + "s\n" +
+                "Connection pool: 1 writer + " + poolReaders + " readers\n" +
+                "Write coordinator: window " + dbWriteWindowMs + "ms, " + dbWriteBatchMaxRows +
+                " rows per commit, queue " + dbWriteQueueCapacity + "\n" +
+                "PRAGMA profile: " + pragmas + "\n" +
+                "Dump sinks: " + String.join(",", dumpSinks) + " -> " + dumpOutputDir + "\n" +
+                "Dump mode: " + dumpMode + "\n" +
+                "Dump parallelism: " + (dumpParallelism == 1 ? "single cursor" :
+                        (dumpParallelism <= 0 ? "all cores" : dumpParallelism + " readers") +
+                                ", ranges of " + dumpRangeIds + " ids") + "\n" +
+                "Binary snapshot: " + dumpBinaryBlockRows + " rows per block, compression " +
+                dumpBinaryCompression + "\n" +
+                "Phone encoding: " + phoneEncoding + "\n" +
+                "Contact cache: " + (cacheEnabled ? "enabled" : "disabled") + "\n" +
+                "History store: " + historyStore + "\n" +
+                "Change events: " + (eventSubscribers.length == 0 ? "no subscribers" :
+                        String.join(",", eventSubscribers) + ", ring " + eventsRingCapacity + ", batch " +
+                                eventsBatchSize + ", slow consumer " + eventsSlowConsumer) + "\n" +
+                "Generator: threads=" + (generatorThreads > 0 ? String.valueOf(generatorThreads) : "auto") +
+                ", seed=" + (generatorSeed != null ? String.valueOf(generatorSeed) : "random") +
+                ", PRAGMA " + generatorPragmas + "\n" +
+                "Scheduler engine: " + schedulerEngine +
+                (isSchedulerVirtualThreads() ? "" : " (" + schedulerWorkerThreads + " workers)") + "\n" +
+                "Phone updater: " + (updaterLanes > 0
+                        ? updaterLanes + " lanes, " + updaterRate + " updates/s"
+                        : "single") +
+                (updaterLanes > 0 ? ", keys " + updaterKeyDistribution +
+                        (isUpdaterKeysZipfian() ? " s=" + updaterZipfExponent : "") +
+                        ", seed=" + (updaterSeed != null ? String.valueOf(updaterSeed) : "random") : "") +
+                (updaterAdaptive ? ", adaptive to p99 " + updaterAdaptiveTargetP99Ms + "ms every " +
+                        updaterAdaptiveWindowMs + "ms" : "") + "\n" +
+                "Metrics report interval: " + metricsReportSeconds + "s" +
+                (metricsJmxEnabled ? ", JMX enabled" : "") + "\n" +
+                "Run: " + (runMaxDumps > 0 ? "up to " + runMaxDumps + " dumps" : "continuous") +
+                (runMaxRuntimeSeconds > 0 ? ", max " + runMaxRuntimeSeconds + "s" : "") +
+                ", existing data: " + dataRegenerate +
+                (dataTemplateFile.isEmpty() ? "" : ", template " + dataTemplateFile) + "\n" +
+                "HTTP endpoint: " + (httpPort > 0 ? httpBindAddress + ":" + httpPort : "disabled") + "\n" +
                 "Max log retention in seconds: " + logRetentionSeconds + "s\n" +
                 "Phone update interval in milliseconds: " + phoneUpdateInterval + "s\n" +
-                "Application runtime in seconds: " + dbDumpInterval + "s\n");
+                "Application runtime in seconds: " + dbDumpInterval + "s\n";
     }
 
 
@@ -134,6 +497,103 @@ public class AppConfig {
     public int getMaxContactsToUpdate() { return maxContactsToUpdate; }
     public int getMaxLogRetentionSeconds() { return maxLogRetentionSeconds; }
     public int getLogRetentionSeconds() { return logRetentionSeconds; }
+    public int getLogPurgeIntervalSeconds() { return logPurgeIntervalSeconds; }
+    public int getLogPurgeBatchSize() { return logPurgeBatchSize; }
     public int getPhoneUpdateInterval() { return phoneUpdateInterval; }
     public int getDbDumpInterval() { return dbDumpInterval; }
+
+    public int getPoolReaders() { return poolReaders; }
+    public int getPoolBorrowTimeoutMs() { return poolBorrowTimeoutMs; }
+    public int getPoolIdleTimeoutMs() { return poolIdleTimeoutMs; }
+    public int getPoolValidationIntervalMs() { return poolValidationIntervalMs; }
+    public int getStatementCacheSize() { return statementCacheSize; }
+    public int getUpdateBatchSize() { return updateBatchSize; }
+    // Групповая фиксация: команды за окно (мс) или до лимита строк уходят одной транзакцией
+    public int getDbWriteWindowMs() { return dbWriteWindowMs; }
+    public int getDbWriteBatchMaxRows() { return dbWriteBatchMaxRows; }
+    public int getDbWriteQueueCapacity() { return dbWriteQueueCapacity; }
+
+    public Map<String, String> getPragmas() { return Collections.unmodifiableMap(pragmas); }
+    public int getCheckpointIntervalSeconds() { return checkpointIntervalSeconds; }
+    public String getCheckpointMode() { return checkpointMode; }
+
+    public String[] getDumpSinks() { return dumpSinks; }
+    public String getDumpOutputDir() { return dumpOutputDir; }
+    public int getDumpFetchSize() { return dumpFetchSize; }
+    public int getDumpBufferBlockSize() { return dumpBufferBlockSize; }
+    public int getDumpBufferBlocks() { return dumpBufferBlocks; }
+    public int getDumpLoggerRowsPerRecord() { return dumpLoggerRowsPerRecord; }
+    public boolean isDumpIncremental() { return "incremental".equals(dumpMode); }
+    public int getDumpFullSnapshotEvery() { return dumpFullSnapshotEvery; }
+    // 1 — один курсор; 0 — по соединению чтения на ядро (не больше db.pool.readers - 1)
+    public int getDumpParallelism() { return dumpParallelism; }
+    public int getDumpRangeIds() { return dumpRangeIds; }
+    public int getDumpBinaryBlockRows() { return dumpBinaryBlockRows; }
+    public boolean isDumpBinaryCompressed() { return "deflate".equals(dumpBinaryCompression); }
+
+    // packed: телефоны хранятся числом prefix * 100000 + suffix в INTEGER-колонках
+    public boolean isPhonePacked() { return "packed".equals(phoneEncoding); }
+    public String getPhoneEncoding() { return phoneEncoding; }
+    public boolean isCacheEnabled() { return cacheEnabled; }
+
+    public boolean isMappedHistoryStore() { return "mmap".equals(historyStore); }
+    public String getHistoryMmapFile() { return historyMmapFile; }
+    // Кольцо рассчитано на max.log.retention.seconds при заданной частоте изменений
+    public int getHistoryMmapCapacity() {
+        return (int) Math.min(Integer.MAX_VALUE / 64, Math.max(1024L,
+                (long) maxLogRetentionSeconds * historyMmapChangesPerSecond));
+    }
+
+    public int getEventsRingCapacity() { return eventsRingCapacity; }
+    public String[] getEventSubscribers() { return eventSubscribers; }
+    public int getEventsBatchSize() { return eventsBatchSize; }
+    public String getEventsSlowConsumer() { return eventsSlowConsumer; }
+    public String getEventsExportFile() { return eventsExportFile; }
+
+    public int getGeneratorThreads() {
+        return generatorThreads > 0 ? generatorThreads : Runtime.getRuntime().availableProcessors();
+    }
+    public Long getGeneratorSeed() { return generatorSeed; }
+    public int getGeneratorChunkSize() { return generatorChunkSize; }
+    public int getGeneratorRowsPerInsert() { return generatorRowsPerInsert; }
+    public int getGeneratorCommitRows() { return generatorCommitRows; }
+    public Map<String, String> getGeneratorPragmas() { return Collections.unmodifiableMap(generatorPragmas); }
+
+    // virtual: задачи на виртуальных потоках (Java 21+), pool: ограниченный пул исполнителей
+    public boolean isSchedulerVirtualThreads() { return "virtual".equals(schedulerEngine); }
+    public int getSchedulerWorkerThreads() { return schedulerWorkerThreads; }
+    public int getSchedulerLagReportSeconds() { return schedulerLagReportSeconds; }
+
+    // 0 — прежний одиночный PhoneUpdater; N > 0 — N полос с общим групповым коммитом
+    public int getUpdaterLanes() { return updaterLanes; }
+    public int getUpdaterRate() { return updaterRate; }
+    public int getUpdaterTickMs() { return updaterTickMs; }
+    public int getUpdaterReportSeconds() { return updaterReportSeconds; }
+    public boolean isUpdaterAdaptive() { return updaterAdaptive; }
+    public int getUpdaterAdaptiveTargetP99Ms() { return updaterAdaptiveTargetP99Ms; }
+    public int getUpdaterAdaptiveWindowMs() { return updaterAdaptiveWindowMs; }
+    public String getUpdaterKeyDistribution() { return updaterKeyDistribution; }
+    public boolean isUpdaterKeysZipfian() { return "zipfian".equals(updaterKeyDistribution); }
+    public double getUpdaterZipfExponent() { return updaterZipfExponent; }
+    // null — случайное зерно полос при каждом запуске
+    public Long getUpdaterSeed() { return updaterSeed; }
+
+    // Сводка MetricsRegistry в лог; 0 — отключена
+    public int getMetricsReportSeconds() { return metricsReportSeconds; }
+    public boolean isMetricsJmxEnabled() { return metricsJmxEnabled; }
+
+    // 1 — прежний режим: один дамп и остановка; 0 — без ограничения (непрерывная работа)
+    public int getRunMaxDumps() { return runMaxDumps; }
+    // 0 — время работы не ограничено
+    public int getRunMaxRuntimeSeconds() { return runMaxRuntimeSeconds; }
+    public int getRunShutdownTimeoutSeconds() { return runShutdownTimeoutSeconds; }
+    // Что делать с уже заполненной таблицей при старте: auto (по отпечатку), no, yes, ask
+    public String getDataRegenerate() { return dataRegenerate; }
+    // Готовая БД для быстрой перегенерации; пустая строка — шаблон не используется
+    public String getDataTemplateFile() { return dataTemplateFile; }
+
+    // 0 — HTTP-сервер (/metrics, /status, /dump) не запускается
+    public int getHttpPort() { return httpPort; }
+    public String getHttpBindAddress() { return httpBindAddress; }
+    public int getHttpThreads() { return httpThreads; }
 }
@@ -1,24 +1,96 @@
 package org.example.dao;
 
+import org.example.cache.ContactCache;
 import org.example.config.AppConfig;
-import org.example.model.Contact;
+import org.example.events.PhoneChangeBus;
+import org.example.history.MappedPhoneHistoryStore;
+import org.example.history.PhoneHistoryStore;
+import org.example.metrics.Counter;
+import org.example.metrics.LatencyHistogram;
+import org.example.metrics.MetricsRegistry;
 import org.example.util.DbConnection;
+import org.example.util.PhoneNumbers;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.logging.Logger;
 
 public class ContactDao {
     private static final Logger LOGGER = Logger.getLogger(ContactDao.class.getName());
+    private static final String LOG_TRIGGER_NAME = "log_contact_update";
+    // Ключ-значение о наборе данных (отпечаток генерации); переживает перезапуски вместе с БД
+    private static final String META_TABLE = "integrator_meta";
+    // SQLITE_MAX_VARIABLE_NUMBER по умолчанию (SQLite 3.32+) при двух параметрах (name, phone) на строку INSERT
+    public static final int MAX_ROWS_PER_INSERT = 32766 / 2;
+
+    // Время вызовов, мкс; метрики берутся один раз, на горячем пути только nanoTime и запись
+    private static final LatencyHistogram INSERT_TIMER = MetricsRegistry.timer("dao.insertContacts");
+    private static final LatencyHistogram CLEAR_DATABASE_TIMER = MetricsRegistry.timer("dao.clearDatabase");
+    private static final LatencyHistogram UPDATE_PHONE_TIMER = MetricsRegistry.timer("dao.updateContactPhone");
+    private static final LatencyHistogram UPDATE_PHONES_TIMER = MetricsRegistry.timer("dao.updateContactPhones");
+    private static final LatencyHistogram UPDATE_ASYNC_TIMER = MetricsRegistry.timer("dao.updateContactPhonesAsync");
+    private static final LatencyHistogram RANDOM_IDS_TIMER = MetricsRegistry.timer("dao.getRandomContactIds");
+    private static final Counter RANDOM_IDS_CALLS = MetricsRegistry.counter("dao.getRandomContactIds.calls");
+    private static final int RANDOM_IDS_SAMPLING = 16;
+    // Только сама загрузка кэша; возврат уже загруженного не замеряется
+    private static final LatencyHistogram LOAD_CACHE_TIMER = MetricsRegistry.timer("dao.getLoadedCache");
+    private static final LatencyHistogram COUNT_TIMER = MetricsRegistry.timer("dao.getCount");
+    private static final LatencyHistogram ID_RANGE_TIMER = MetricsRegistry.timer("dao.getIdRange");
+    private static final LatencyHistogram DELETE_ALL_TIMER = MetricsRegistry.timer("dao.deleteAll");
+    private static final LatencyHistogram LOGGING_SETUP_TIMER = MetricsRegistry.timer("dao.createLoggingInfrastructure");
+    private static final LatencyHistogram PURGE_TIMER = MetricsRegistry.timer("dao.purgeExpiredLogs");
+    private static final LatencyHistogram DROP_TRIGGER_TIMER = MetricsRegistry.timer("dao.dropLogTrigger");
+    private static final Counter UPDATED_ROWS = MetricsRegistry.counter("dao.updatedRows");
+    private static final Counter INSERTED_ROWS = MetricsRegistry.counter("dao.insertedRows");
+    // Мс от старта JVM до первого зафиксированного обновления телефона; 0 — обновлений еще не было
+    private static volatile long timeToFirstUpdateMs = 0;
+
+    static {
+        MetricsRegistry.gauge("startup.timeToFirstUpdateMs", () -> timeToFirstUpdateMs);
+    }
     private final String tableName;
-    private PreparedStatement batchStatement;
     private final AppConfig config;
+    private final int updateBatchSize;
+    private final boolean phonePacked;
+    private final ContactIdIndex idIndex = new ContactIdIndex();
+    // null, если кэш контактов выключен (cache.enabled=false)
+    private final ContactCache cache;
+    // null — историю пишет триггер SQLite в таблицу журнала (history.store=sqlite)
+    private final PhoneHistoryStore historyStore;
+    // Под этим монитором фиксируются транзакции и обновляются кэш и хранилище истории:
+    // читатель снимков под ним же видит согласованное с БД состояние
+    private final Object commitLock = new Object();
+    // Все изменения БД выполняет один поток с групповой фиксацией
+    private final WriteCoordinator writer;
+    // Зафиксированные смены телефонов для подписчиков внутри процесса (events.subscribers)
+    private final PhoneChangeBus changeBus;
 
     // Поправить добавление конфига и таблицы из него
     public ContactDao(String tableName, AppConfig config) {
         this.tableName = tableName;
-        createTableIfNotExists();
         this.config = config;
+        this.phonePacked = config.isPhonePacked();
+        this.writer = new WriteCoordinator(commitLock, config.getDbWriteWindowMs(),
+                config.getDbWriteBatchMaxRows(), config.getDbWriteQueueCapacity());
+        writer.registerMetrics("db.write");
+        createTableIfNotExists();
+        this.updateBatchSize = Math.max(1, config.getUpdateBatchSize());
+        this.cache = config.isCacheEnabled() ? new ContactCache() : null;
+        this.historyStore = config.isMappedHistoryStore()
+                ? new MappedPhoneHistoryStore(Paths.get(config.getHistoryMmapFile()),
+                        config.getHistoryMmapCapacity(), config.getMaxLogRetentionSeconds())
+                : null;
+        this.changeBus = new PhoneChangeBus(config.getEventsRingCapacity());
     }
 
     // Добавляем геттер для имени таблицы
@@ -28,103 +100,596 @@ public class ContactDao {
 
     private void createTableIfNotExists() {
         String sql = String.format("CREATE TABLE IF NOT EXISTS %s " +
-                "(id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT, phone TEXT)", tableName);
+                "(id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT, phone %s)", tableName, phoneColumnType());
 
-        try (Connection conn = DbConnection.getConnection();
-             Statement stmt = conn.createStatement()) {
-            stmt.execute(sql);
+        try {
+            writer.executeExclusive(conn -> {
+                createTableIfNotExists(conn, sql);
+                return null;
+            });
             LOGGER.info("Таблица '" + tableName + "' создана/проверена");
         } catch (SQLException e) {
             LOGGER.severe("Ошибка создания таблицы: " + e.getMessage());
         }
     }
 
-    public void initBatch(Connection connection) throws SQLException {
-        String sql = String.format("INSERT INTO %s (name, phone) VALUES (?, ?)", tableName);
-        this.batchStatement = connection.prepareStatement(sql);
+    private void createTableIfNotExists(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            String existingType = columnType(stmt, tableName, "phone");
+            if (existingType != null && !existingType.equalsIgnoreCase(phoneColumnType())) {
+                // Пустую таблицу пересоздаем; данные в другой кодировке молча не конвертируются
+                try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + tableName)) {
+                    if (rs.getInt(1) > 0) {
+                        throw new IllegalStateException(String.format(
+                                "Таблица %s хранит телефоны как %s, а phone.encoding требует %s; " +
+                                        "перегенерируйте БД", tableName, existingType, phoneColumnType()));
+                    }
+                }
+                stmt.execute("DROP TABLE " + tableName);
+            }
+            stmt.execute(sql);
+        }
+    }
+
+    // phone.encoding=packed: INTEGER-колонка с числом prefix * 100000 + suffix вместо текста
+    private String phoneColumnType() {
+        return phonePacked ? "INTEGER" : "TEXT";
     }
 
-    public void insertContactBatch(Connection connection, Contact contact) throws SQLException {
-        batchStatement.setString(1, contact.getName());
-        batchStatement.setString(2, contact.getPhone());
-        batchStatement.addBatch();
+    // Объявленный тип колонки или null, если таблицы нет
+    private static String columnType(Statement stmt, String table, String column) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name"))) {
+                    return rs.getString("type");
+                }
+            }
+        }
+        return null;
+    }
+
+    public boolean isPhonePacked() {
+        return phonePacked;
+    }
+
+    // Многострочный INSERT: один разбор SQL и один вызов executeUpdate на rowsPerStatement строк.
+    // Транзакцией управляет вызывающий код
+    public void insertContacts(Connection connection, String[] names, String[] phones,
+                               int count, int rowsPerStatement) throws SQLException {
+        insertContacts(connection, names, phones, null, count, rowsPerStatement);
     }
 
-    public void executeBatch(Connection connection) throws SQLException {
+    // Телефоны уже упакованы генератором (phone.encoding=packed)
+    public void insertContacts(Connection connection, String[] names, int[] phoneCodes,
+                               int count, int rowsPerStatement) throws SQLException {
+        insertContacts(connection, names, null, phoneCodes, count, rowsPerStatement);
+    }
+
+    private void insertContacts(Connection connection, String[] names, String[] phones, int[] phoneCodes,
+                                int count, int rowsPerStatement) throws SQLException {
+        long start = System.nanoTime();
         try {
-            batchStatement.executeBatch();  // Выполняем накопленные запросы
-            connection.commit();
-        } catch (SQLException e) {
-            connection.rollback();
-            throw e;
+            int offset = 0;
+            if (count >= rowsPerStatement) {
+                try (PreparedStatement stmt = connection.prepareStatement(multiRowInsertSql(rowsPerStatement))) {
+                    for (; offset + rowsPerStatement <= count; offset += rowsPerStatement) {
+                        bindRows(stmt, names, phones, phoneCodes, offset, rowsPerStatement);
+                        stmt.executeUpdate();
+                    }
+                }
+            }
+            int tail = count - offset;
+            if (tail > 0) {
+                try (PreparedStatement stmt = connection.prepareStatement(multiRowInsertSql(tail))) {
+                    bindRows(stmt, names, phones, phoneCodes, offset, tail);
+                    stmt.executeUpdate();
+                }
+            }
+            INSERTED_ROWS.add(count);
+        } finally {
+            INSERT_TIMER.recordSince(start);
         }
     }
 
-    public void clearBatch() throws SQLException {
-        if (this.batchStatement != null && !this.batchStatement.isClosed()) {
-            this.batchStatement.clearBatch(); // Очищаем накопленные batch-запросы
+    private String multiRowInsertSql(int rows) {
+        StringBuilder sql = new StringBuilder(40 + tableName.length() + rows * 7);
+        sql.append("INSERT INTO ").append(tableName).append(" (name, phone) VALUES ");
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "(?,?)" : ",(?,?)");
         }
+        return sql.toString();
+    }
+
+    private void bindRows(PreparedStatement stmt, String[] names, String[] phones, int[] phoneCodes,
+                          int offset, int rows) throws SQLException {
+        int param = 1;
+        for (int i = offset; i < offset + rows; i++) {
+            stmt.setString(param++, names[i]);
+            if (phoneCodes != null) {
+                stmt.setInt(param++, phoneCodes[i]);
+            } else {
+                bindPhone(stmt, param++, phones[i]);
+            }
+        }
+    }
+
+    // Текст в упакованную форму переводится на границе DAO
+    private void bindPhone(PreparedStatement stmt, int index, String phone) throws SQLException {
+        if (!phonePacked) {
+            stmt.setString(index, phone);
+            return;
+        }
+        int code = PhoneNumbers.pack(phone);
+        if (code == PhoneNumbers.NOT_PACKED) {
+            throw new SQLException("Телефон не в формате ddd-ddddd: " + phone);
+        }
+        stmt.setInt(index, code);
+    }
+
+    private String readPhone(ResultSet rs, int column) throws SQLException {
+        if (!phonePacked) {
+            return rs.getString(column);
+        }
+        int code = rs.getInt(column);
+        return rs.wasNull() ? null : PhoneNumbers.format(code);
     }
 
     public void clearDatabase() throws SQLException {
-        try (Connection connection = DbConnection.getConnection()) {
-            connection.setAutoCommit(false);
+        long start = System.nanoTime();
+        try {
             String sql = String.format("DELETE FROM %s", tableName);
-            try (Statement stmt = connection.createStatement()) {
-                stmt.executeUpdate(sql);
-                connection.commit();
-                LOGGER.info("База данных очищена");
-            }
+            writer.execute(new WriteCommand<Integer>() {
+                @Override
+                public Integer execute(Connection conn) throws SQLException {
+                    try (Statement stmt = conn.createStatement()) {
+                        return stmt.executeUpdate(sql);
+                    }
+                }
+
+                @Override
+                public void committed(Integer deleted) {
+                    clearDerivedState();
+                    LOGGER.info("База данных очищена");
+                }
+            });
+        } finally {
+            CLEAR_DATABASE_TIMER.recordSince(start);
         }
     }
 
 
     public void updateContactPhone(int id, String newPhone) throws SQLException {
-        String sql = String.format("UPDATE %s SET phone = ? WHERE id = ?", tableName);
-        LOGGER.fine(String.format("Обновление телефона для ID=%d на %s", id, newPhone));
+        long start = System.nanoTime();
+        try {
+            LOGGER.fine(String.format("Обновление телефона для ID=%d на %s", id, newPhone));
+            WriteCoordinator.await(updateContactPhonesAsync(Collections.singletonMap(id, newPhone)));
+        } finally {
+            UPDATE_PHONE_TIMER.recordSince(start);
+        }
+    }
 
-        try (Connection conn = DbConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, newPhone);
-            pstmt.setInt(2, id);
-            pstmt.executeUpdate();
+    // Все обновления выполняются одной транзакцией; триггер логирования срабатывает для каждой строки
+    public void updateContactPhones(Map<Integer, String> newPhones) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            if (newPhones.isEmpty()) {
+                return;
+            }
+            LOGGER.fine("Пакетное обновление телефонов: " + newPhones.size());
+            WriteCoordinator.await(updateContactPhonesAsync(newPhones));
+        } finally {
+            UPDATE_PHONES_TIMER.recordSince(start);
         }
     }
 
+    /**
+     * Ставит обновления в очередь писателя; future завершается числом измененных строк
+     * после фиксации группы, в которую попала команда.
+     */
+    public CompletableFuture<Integer> updateContactPhonesAsync(Map<Integer, String> newPhones) {
+        long start = System.nanoTime();
+        // Старые телефоны при фиксации берутся из кэша: загружаем его здесь, а не в потоке писателя
+        // посреди открытой транзакции записи
+        if (cache != null && !cache.isLoaded() && (historyStore != null || changeBus.hasSubscribers())) {
+            try {
+                getLoadedCache();
+            } catch (SQLException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        CompletableFuture<Integer> result = writer.submit(new PhoneUpdateCommand(newPhones));
+        result.whenComplete((updated, error) -> UPDATE_ASYNC_TIMER.recordSince(start));
+        return result;
+    }
+
+    // Команда обновления телефонов; кэш и внешняя история меняются только для реально обновленных строк
+    private final class PhoneUpdateCommand implements WriteCommand<Integer> {
+        private final int[] ids;
+        private final String[] phones;
+        private final boolean[] changed;
+        private String[] oldPhones;
+
+        PhoneUpdateCommand(Map<Integer, String> newPhones) {
+            ids = new int[newPhones.size()];
+            phones = new String[ids.length];
+            changed = new boolean[ids.length];
+            int i = 0;
+            for (Map.Entry<Integer, String> entry : newPhones.entrySet()) {
+                ids[i] = entry.getKey();
+                phones[i++] = entry.getValue();
+            }
+        }
+
+        @Override
+        public int weight() {
+            return ids.length;
+        }
+
+        @Override
+        public Integer execute(Connection conn) throws SQLException {
+            String sql = String.format("UPDATE %s SET phone = ? WHERE id = ?", tableName);
+            // Прежние телефоны нужны внешней истории и подписчикам шины изменений. Загруженный кэш
+            // отдаст их при фиксации (он отражает и предыдущие команды группы); иначе они читаются
+            // до обновления в той же транзакции
+            if ((historyStore != null || changeBus.hasSubscribers()) && (cache == null || !cache.isLoaded())) {
+                oldPhones = readPhones(conn, ids);
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                int pending = 0;
+                for (int i = 0; i < ids.length; i++) {
+                    bindPhone(pstmt, 1, phones[i]);
+                    pstmt.setInt(2, ids[i]);
+                    pstmt.addBatch();
+
+                    if (++pending == updateBatchSize || i == ids.length - 1) {
+                        int[] counts = pstmt.executeBatch();
+                        for (int j = 0; j < counts.length; j++) {
+                            changed[i + 1 - pending + j] = counts[j] != 0;
+                        }
+                        pending = 0;
+                    }
+                }
+            }
+            int updated = 0;
+            for (boolean rowChanged : changed) {
+                if (rowChanged) {
+                    updated++;
+                }
+            }
+            return updated;
+        }
+
+        @Override
+        public void committed(Integer updated) {
+            UPDATED_ROWS.add(updated);
+            if (timeToFirstUpdateMs == 0 && updated > 0) {
+                timeToFirstUpdateMs = Math.max(1, ManagementFactory.getRuntimeMXBean().getUptime());
+                LOGGER.info("Первое обновление телефона зафиксировано через " + timeToFirstUpdateMs +
+                        " мс после запуска JVM");
+            }
+            long now = System.currentTimeMillis();
+            boolean needOldPhones = historyStore != null || changeBus.hasSubscribers();
+            for (int i = 0; i < ids.length; i++) {
+                if (!changed[i]) {
+                    continue;
+                }
+                // Без старого телефона пропускается только запись истории (applyCommitted), кэш и шина обновляются
+                String oldPhone = !needOldPhones ? null : oldPhones != null ? oldPhones[i]
+                        : cache != null && cache.isLoaded() ? cache.getPhone(ids[i]) : null;
+                applyCommitted(ids[i], phones[i], oldPhone, now);
+            }
+        }
+    }
+
+    // Запись зафиксированного изменения в кэш, внешнее хранилище истории и шину; вызывается под commitLock
+    private void applyCommitted(int id, String newPhone, String oldPhone, long changeMillis) {
+        if (cache != null) {
+            cache.updatePhone(id, newPhone);
+        }
+        if (historyStore != null && oldPhone != null) {
+            historyStore.append(id, oldPhone, changeMillis);
+        }
+        changeBus.publish(id, oldPhone, newPhone, changeMillis);
+    }
+
+    private void clearDerivedState() {
+        idIndex.clear();
+        if (cache != null) {
+            cache.clear();
+        }
+        if (historyStore != null) {
+            historyStore.clear();
+        }
+    }
+
+    private String readPhone(Connection conn, int id) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                String.format("SELECT phone FROM %s WHERE id = ?", tableName))) {
+            stmt.setInt(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? readPhone(rs, 1) : null;
+            }
+        }
+    }
+
+    private String[] readPhones(Connection conn, int[] ids) throws SQLException {
+        String[] oldPhones = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            oldPhones[i] = readPhone(conn, ids[i]);
+        }
+        return oldPhones;
+    }
+
+    // Выборка из индекса в памяти вместо ORDER BY RANDOM(): стоимость не зависит от размера таблицы
     public List<Integer> getRandomContactIds(int limit) throws SQLException {
-        String sql = String.format("SELECT id FROM %s ORDER BY RANDOM() LIMIT ?", tableName);
-        List<Integer> ids = new ArrayList<>();
-        LOGGER.fine("Получение " + limit + " случайных ID контактов");
+        RANDOM_IDS_CALLS.increment();
+        // Вызов из памяти короче пары System.nanoTime(), поэтому время замеряется у каждого 16-го
+        long start = ThreadLocalRandom.current().nextInt(RANDOM_IDS_SAMPLING) == 0 ? System.nanoTime() : 0;
+        try {
+            LOGGER.fine("Получение " + limit + " случайных ID контактов");
+            int[] sample;
+            if (cache != null) {
+                sample = getLoadedCache().sample(limit, ThreadLocalRandom.current());
+            } else {
+                ensureIdIndexLoaded();
+                sample = idIndex.sample(limit, ThreadLocalRandom.current());
+            }
+            List<Integer> ids = new ArrayList<>(sample.length);
+            for (int id : sample) {
+                ids.add(id);
+            }
+            return ids;
+        } finally {
+            if (start != 0) {
+                RANDOM_IDS_TIMER.recordSince(start);
+            }
+        }
+    }
 
-        try (Connection conn = DbConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, limit);
+    private void ensureIdIndexLoaded() throws SQLException {
+        synchronized (idIndex) {
+            if (idIndex.isLoaded()) {
+                return;
+            }
+            String sql = String.format("SELECT id FROM %s", tableName);
+            long startTime = System.currentTimeMillis();
+            int[] ids = new int[1024];
+            int count = 0;
 
-            try (ResultSet rs = pstmt.executeQuery()) {
+            try (Connection conn = DbConnection.getConnection();
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(sql)) {
                 while (rs.next()) {
-                    ids.add(rs.getInt("id"));
+                    if (count == ids.length) {
+                        ids = Arrays.copyOf(ids, count * 2);
+                    }
+                    ids[count++] = rs.getInt(1);
                 }
             }
+            idIndex.load(ids, count);
+            LOGGER.info(String.format("Индекс ID построен: %d записей за %d мс",
+                    count, System.currentTimeMillis() - startTime));
+        }
+    }
+
+    public ContactIdIndex getIdIndex() {
+        return idIndex;
+    }
+
+    public boolean isCacheEnabled() {
+        return cache != null;
+    }
+
+    // null, если история ведется триггером в таблице журнала
+    public PhoneHistoryStore getHistoryStore() {
+        return historyStore;
+    }
+
+    public Object getCommitLock() {
+        return commitLock;
+    }
+
+    /** Кэш контактов, при необходимости перечитанный из БД; только при cache.enabled=true. */
+    public ContactCache getLoadedCache() throws SQLException {
+        if (cache == null) {
+            throw new IllegalStateException("Кэш контактов выключен");
+        }
+        synchronized (commitLock) {
+            if (cache.isLoaded()) {
+                return cache;
+            }
+            // Писатели фиксируют транзакции под этим же монитором, поэтому загрузка видит целостное состояние
+            String sql = String.format("SELECT id, name, phone FROM %s ORDER BY id", tableName);
+            long startTime = System.currentTimeMillis();
+            long loadStart = System.nanoTime();
+            cache.beginLoad(0);
+            try (Connection conn = DbConnection.getConnection();
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(sql)) {
+                while (rs.next()) {
+                    if (phonePacked) {
+                        cache.putPacked(rs.getInt(1), rs.getString(2), rs.getInt(3));
+                    } else {
+                        cache.put(rs.getInt(1), rs.getString(2), rs.getString(3));
+                    }
+                }
+            }
+            cache.markLoaded();
+            LOAD_CACHE_TIMER.recordSince(loadStart);
+            LOGGER.info(String.format("Кэш контактов загружен: %d записей за %d мс, ~%.1f МБ кучи",
+                    cache.size(), System.currentTimeMillis() - startTime, cache.heapBytes() / (1024.0 * 1024.0)));
+            return cache;
+        }
+    }
+
+    // После массовой вставки ID неизвестны: индекс и кэш перечитываются при следующем обращении
+    public void invalidateCaches() {
+        idIndex.invalidate();
+        if (cache != null) {
+            cache.invalidate();
         }
-        return ids;
     }
 
     public int getCount() throws SQLException {
-        String sql = String.format("SELECT COUNT(*) FROM %s", tableName);
-        LOGGER.fine("Подсчет количества записей");
+        long start = System.nanoTime();
+        try {
+            if (cache != null && cache.isLoaded()) {
+                return cache.size();
+            }
+            String sql = String.format("SELECT COUNT(*) FROM %s", tableName);
+            LOGGER.fine("Подсчет количества записей");
+
+            try (Connection conn = DbConnection.getConnection();
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(sql)) {
+                return rs.getInt(1);
+            }
+        } finally {
+            COUNT_TIMER.recordSince(start);
+        }
+    }
 
-        try (Connection conn = DbConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            return rs.getInt(1);
+    // {min, max} ID контактов, {0, 0} для пустой таблицы; по первичному ключу без сканирования
+    public int[] getIdRange() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            String sql = String.format("SELECT MIN(id), MAX(id) FROM %s", tableName);
+
+            try (Connection conn = DbConnection.getConnection();
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(sql)) {
+                return new int[]{rs.getInt(1), rs.getInt(2)};
+            }
+        } finally {
+            ID_RANGE_TIMER.recordSince(start);
         }
     }
 
     public void deleteAll(String tableName) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            String sql = String.format("DELETE FROM %s", tableName);
+            writer.execute(new WriteCommand<Integer>() {
+                @Override
+                public Integer execute(Connection conn) throws SQLException {
+                    try (Statement stmt = conn.createStatement()) {
+                        return stmt.executeUpdate(sql);
+                    }
+                }
+
+                @Override
+                public void committed(Integer deleted) {
+                    if (tableName.equals(ContactDao.this.tableName)) {
+                        clearDerivedState();
+                    }
+                    LOGGER.info("Таблица " + tableName + " очищена");
+                }
+            });
+        } finally {
+            DELETE_ALL_TIMER.recordSince(start);
+        }
+    }
+
+    // Метаданные набора данных; пустая карта, если таблицы метаданных нет
+    public Map<String, String> readMetadata() throws SQLException {
+        try (Connection conn = DbConnection.getConnection()) {
+            return readMetadata(conn);
+        }
+    }
+
+    // Метаданные другого файла БД (шаблона) через отдельное соединение вне пула
+    public static Map<String, String> readMetadata(Path dbFile) throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbFile.toAbsolutePath())) {
+            return readMetadata(conn);
+        }
+    }
+
+    private static Map<String, String> readMetadata(Connection conn) throws SQLException {
+        Map<String, String> metadata = new LinkedHashMap<>();
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = '" + META_TABLE + "'")) {
+                if (!rs.next()) {
+                    return metadata;
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT key, value FROM " + META_TABLE)) {
+                while (rs.next()) {
+                    metadata.put(rs.getString(1), rs.getString(2));
+                }
+            }
+        }
+        return metadata;
+    }
+
+    // Заменяет метаданные целиком; пустая карта удаляет прежний отпечаток
+    public void writeMetadata(Map<String, String> metadata) throws SQLException {
+        writer.execute(conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE IF NOT EXISTS " + META_TABLE + " (key TEXT PRIMARY KEY, value TEXT)");
+                stmt.executeUpdate("DELETE FROM " + META_TABLE);
+            }
+            try (PreparedStatement insert = conn.prepareStatement(
+                    "INSERT INTO " + META_TABLE + " (key, value) VALUES (?, ?)")) {
+                for (Map.Entry<String, String> entry : metadata.entrySet()) {
+                    insert.setString(1, entry.getKey());
+                    insert.setString(2, entry.getValue());
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            return null;
+        });
+    }
+
+    // Постраничная копия всей БД в файл через SQLite Online Backup API (расширение sqlite-jdbc "backup to")
+    public void backupTo(Path file) throws SQLException {
+        writer.executeExclusive(conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("backup to " + quotePath(file));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Заменяет содержимое БД копией файла через Backup API ("restore from"). Соединения пула
+     * остаются открытыми, изменение схемы они увидят при следующем запросе;
+     * индекс ID и кэш контактов перечитываются при следующем обращении.
+     */
+    public void restoreFrom(Path file) throws SQLException {
+        writer.executeExclusive(new WriteCommand<Void>() {
+            @Override
+            public Void execute(Connection conn) throws SQLException {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.executeUpdate("restore from " + quotePath(file));
+                }
+                return null;
+            }
+
+            @Override
+            public void committed(Void result) {
+                invalidateCaches();
+            }
+        });
+    }
+
+    private static String quotePath(Path file) {
+        return "'" + file.toAbsolutePath().toString().replace("'", "''") + "'";
+    }
+
+    // Внутри команды писателя соединение передается параметром
+    private void deleteAll(Connection conn, String tableName) throws SQLException {
         String sql = String.format("DELETE FROM %s", tableName);
-        try (Connection conn = DbConnection.getConnection();
-             Statement stmt = conn.createStatement()) {
-            stmt.executeUpdate(sql);
+        try (Statement stmt = conn.createStatement()) {
+            if (tableName.equals(this.tableName)) {
+                synchronized (commitLock) {
+                    stmt.executeUpdate(sql);
+                    clearDerivedState();
+                }
+            } else {
+                stmt.executeUpdate(sql);
+            }
             LOGGER.info("Таблица " + tableName + " очищена");
         }
     }
@@ -168,48 +733,156 @@ public class ContactDao {
 //    }
 
     public void createLoggingInfrastructure() throws SQLException {
-        int m = config.getLogRetentionSeconds();
+        long start = System.nanoTime();
+        try {
+            if (historyStore != null) {
+                openHistoryStore();
+                return;
+            }
+            writer.executeExclusive(conn -> {
+                createLoggingInfrastructure(conn);
+                return null;
+            });
+        } finally {
+            LOGGING_SETUP_TIMER.recordSince(start);
+        }
+    }
+
+    private void createLoggingInfrastructure(Connection conn) throws SQLException {
         String logsTableName = config.getLogTableName();
 
         // вынести функцию создания таблицы в инициацию БД
         // убрать конфиг из логики вынести название таблицы логов
 
-        try (Connection conn = DbConnection.getConnection();
-             Statement stmt = conn.createStatement()) {
+        try (Statement stmt = conn.createStatement()) {
 
+            // Журнал очищается при каждом запуске, поэтому при смене кодировки его можно пересоздать
+            String oldPhoneType = columnType(stmt, logsTableName, "old_phone");
+            if (oldPhoneType != null && !oldPhoneType.equalsIgnoreCase(phoneColumnType())) {
+                stmt.execute("DROP TABLE " + logsTableName);
+            }
             stmt.execute("CREATE TABLE IF NOT EXISTS " + logsTableName +  " (" +
                     "log_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
                     "contact_id INTEGER NOT NULL, " +
-                    "old_phone TEXT NOT NULL, " +
+                    "old_phone " + phoneColumnType() + " NOT NULL, " +
                     "change_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
                     "FOREIGN KEY(contact_id) REFERENCES " + tableName + "(id))");
 
-            deleteAll(logsTableName);
+            // Поиск последней смены по контакту и очистка по времени не должны сканировать всю таблицу
+            stmt.execute(String.format("CREATE INDEX IF NOT EXISTS idx_%1$s_contact_time " +
+                    "ON %1$s(contact_id, change_time)", logsTableName));
+            stmt.execute(String.format("CREATE INDEX IF NOT EXISTS idx_%1$s_change_time " +
+                    "ON %1$s(change_time)", logsTableName));
 
+            deleteAll(conn, logsTableName);
+
+            // Триггер только пишет журнал; устаревшие записи удаляет фоновая очистка (purgeExpiredLogs).
+            // Пересоздаем, чтобы заменить триггер прежней версии с DELETE на каждое обновление
+            stmt.execute("DROP TRIGGER IF EXISTS " + LOG_TRIGGER_NAME);
             String triggerSQL = String.format(
-                    "CREATE TRIGGER IF NOT EXISTS log_contact_update " +
+                    "CREATE TRIGGER %s " +
                             "AFTER UPDATE OF phone ON %s " +
                             "FOR EACH ROW " +
                             "BEGIN " +
                             "  INSERT INTO %s(contact_id, old_phone) " +
                             "  VALUES (OLD.id, OLD.phone); " +
-                            "  " +
-                            "  DELETE FROM %s " +
-                            "  WHERE contact_id = OLD.id " +
-                            "  AND change_time < datetime('now', '-%d seconds'); " +
                             "END",
-                    tableName, logsTableName, logsTableName, m);
+                    LOG_TRIGGER_NAME, tableName, logsTableName);
 
             stmt.execute(triggerSQL);
         }
     }
 
-    public void dropLogTrigger() throws SQLException {
-        try (Connection conn = DbConnection.getConnection();
-             Statement stmt = conn.createStatement()) {
+    // Удаляет записи журнала старше периода хранения порциями, каждая порция — отдельная короткая транзакция.
+    // Записи с log_id > maxLogId не трогаются: они еще не попали в дельта-дамп
+    public int purgeExpiredLogs(int retentionSeconds, long maxLogId, int batchSize) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            String sql = String.format(
+                    "DELETE FROM %1$s WHERE log_id IN (SELECT log_id FROM %1$s " +
+                            "WHERE change_time < datetime('now', ?) AND log_id <= ? LIMIT ?)",
+                    config.getLogTableName());
+            String offset = "-" + retentionSeconds + " seconds";
+            int total = 0;
+
+            while (true) {
+                // Порции идут через очередь писателя и могут фиксироваться вместе с обновлениями
+                int deleted = writer.execute(conn -> {
+                    try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                        pstmt.setString(1, offset);
+                        pstmt.setLong(2, maxLogId);
+                        pstmt.setInt(3, batchSize);
+                        return pstmt.executeUpdate();
+                    }
+                });
+                total += deleted;
+                if (deleted < batchSize) {
+                    return total;
+                }
+            }
+        } finally {
+            PURGE_TIMER.recordSince(start);
+        }
+    }
 
-            stmt.execute("DROP TRIGGER IF EXISTS " + config.getLogTableName() );
+    // Внешнее хранилище вместо триггера: триггер прошлого запуска удаляется, история восстанавливается из файла
+    private void openHistoryStore() throws SQLException {
+        dropLogTrigger();
+        try {
+            historyStore.open();
+        } catch (IOException e) {
+            throw new SQLException("Не удалось открыть хранилище истории: " + historyStore.describe(), e);
+        }
+        LOGGER.info("История телефонов: " + historyStore.describe());
+    }
+
+    public void clearHistoryStore() {
+        if (historyStore != null) {
+            historyStore.clear();
+        }
+    }
+
+    public void closeHistoryStore() {
+        if (historyStore == null) {
+            return;
+        }
+        try {
+            historyStore.close();
+        } catch (IOException e) {
+            LOGGER.warning("Ошибка закрытия хранилища истории: " + e.getMessage());
+        }
+    }
+
+    public void dropLogTrigger() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            writer.executeExclusive(conn -> {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("DROP TRIGGER IF EXISTS " + LOG_TRIGGER_NAME);
+                }
+                return null;
+            });
             LOGGER.info("Триггер логирования удален");
+        } finally {
+            DROP_TRIGGER_TIMER.recordSince(start);
         }
     }
-}
\ No newline at end of file
+
+    public WriteCoordinator getWriteCoordinator() {
+        return writer;
+    }
+
+    // Дописывает принятые команды и останавливает поток писателя; дальнейшие изменения отклоняются
+    public void closeWriteCoordinator() {
+        writer.close();
+    }
+
+    public PhoneChangeBus getChangeBus() {
+        return changeBus;
+    }
+
+    // После остановки писателя: подписчики получают все зафиксированные изменения
+    public void closeChangeBus() {
+        changeBus.close();
+    }
+}
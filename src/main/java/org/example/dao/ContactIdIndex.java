@@ -0,0 +1,65 @@
+package org.example.dao;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Индекс живых ID контактов в памяти для выборки k случайных ID за O(k).
+ * ids — плотный массив существующих ID, выборка переставляет его на месте. Вставки идут массово
+ * с неизвестными ID, а удаляется только вся таблица, поэтому индекс не правится по одному ID:
+ * он перечитывается (invalidate()) или очищается (clear()).
+ */
+public final class ContactIdIndex {
+    private int[] ids = new int[0];
+    private int size = 0;
+    private boolean loaded = false;
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    public synchronized void load(int[] source, int count) {
+        ids = Arrays.copyOf(source, Math.max(count, 16));
+        size = 0;
+        // Повторы и неположительные ID отбрасываются
+        BitSet seen = new BitSet();
+        for (int i = 0; i < count; i++) {
+            int id = source[i];
+            if (id > 0 && !seen.get(id)) {
+                seen.set(id);
+                ids[size++] = id;
+            }
+        }
+        loaded = true;
+    }
+
+    // Индекс будет перестроен из БД при следующей выборке
+    public synchronized void invalidate() {
+        loaded = false;
+    }
+
+    public synchronized void clear() {
+        ids = new int[16];
+        size = 0;
+        loaded = true;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // Частичная перетасовка Фишера-Йетса: первые k элементов массива становятся выборкой без повторов
+    public synchronized int[] sample(int k, Random random) {
+        int count = Math.min(k, size);
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            int j = i + random.nextInt(size - i);
+            int picked = ids[j];
+            ids[j] = ids[i];
+            ids[i] = picked;
+            result[i] = picked;
+        }
+        return result;
+    }
+}
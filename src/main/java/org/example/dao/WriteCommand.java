@@ -0,0 +1,24 @@
+package org.example.dao;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Изменение БД, исполняемое потоком WriteCoordinator.
+ * Обычная команда выполняется внутри общей транзакции группы (под своей точкой сохранения),
+ * эксклюзивная — отдельно, в режиме автофиксации, и сама управляет транзакциями.
+ */
+@FunctionalInterface
+public interface WriteCommand<T> {
+
+    T execute(Connection connection) throws SQLException;
+
+    // Вызывается под commitLock сразу после фиксации транзакции с этой командой
+    default void committed(T result) {
+    }
+
+    // Вклад в лимит размера группы (обычно число изменяемых строк)
+    default int weight() {
+        return 1;
+    }
+}
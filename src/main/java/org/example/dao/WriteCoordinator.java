@@ -0,0 +1,379 @@
+package org.example.dao;
+
+import org.example.metrics.LatencyHistogram;
+import org.example.metrics.MetricsRegistry;
+import org.example.util.DbConnection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Единственный писатель БД. Все изменения приходят командами в очередь и выполняются
+ * одним потоком; команды, пришедшие за окно db.write.window.ms (или до лимита
+ * db.write.batch.max.rows), фиксируются одной транзакцией. Одиночный писатель окна не ждет:
+ * оно включается, когда в предыдущую группу попало больше одной команды. Каждая команда в группе
+ * идет под своей точкой сохранения, поэтому ошибка одной не откатывает остальные.
+ * Вызывающий получает CompletableFuture, завершаемый после фиксации.
+ */
+public final class WriteCoordinator implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(WriteCoordinator.class.getName());
+
+    private final Object commitLock;
+    private final BlockingQueue<Pending<?>> queue;
+    private final int queueCapacity;
+    private final long windowNanos;
+    private final int maxBatchWeight;
+    private final Thread thread;
+    private volatile boolean closed = false;
+    // Эксклюзивная команда, прервавшая набор группы; только для потока писателя
+    private Pending<?> carried;
+    // Размер предыдущей группы: окно выжидается, только когда писателей больше одного
+    private int lastBatchCommands = 0;
+
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder executedCommands = new LongAdder();
+    private final LongAdder failedCommands = new LongAdder();
+    // мкс от начала выполнения группы до фиксации
+    private final LatencyHistogram commitLatency = new LatencyHistogram();
+    private final LatencyHistogram batchCommands = new LatencyHistogram();
+    private final LatencyHistogram batchRows = new LatencyHistogram();
+    // Глубина очереди в момент начала очередной группы
+    private final LatencyHistogram queueDepth = new LatencyHistogram();
+    // мкс от постановки групповой команды в очередь до ее завершения: ожидание, окно, выполнение, фиксация
+    private final LatencyHistogram commandLatency = new LatencyHistogram();
+
+    public WriteCoordinator(Object commitLock, int windowMs, int maxBatchRows, int queueCapacity) {
+        this.commitLock = commitLock;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, windowMs));
+        this.maxBatchWeight = Math.max(1, maxBatchRows);
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.queue = new ArrayBlockingQueue<>(this.queueCapacity);
+        this.thread = new Thread(this::run, "db-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /** Команда в общей транзакции группы; при заполненной очереди вызывающий ждет. */
+    public <T> CompletableFuture<T> submit(WriteCommand<T> command) {
+        return enqueue(command, false);
+    }
+
+    /** Команда вне групповой транзакции: DDL, PRAGMA, массовая загрузка со своими коммитами. */
+    public <T> CompletableFuture<T> submitExclusive(WriteCommand<T> command) {
+        return enqueue(command, true);
+    }
+
+    public <T> T execute(WriteCommand<T> command) throws SQLException {
+        return await(submit(command));
+    }
+
+    public <T> T executeExclusive(WriteCommand<T> command) throws SQLException {
+        return await(submitExclusive(command));
+    }
+
+    private <T> CompletableFuture<T> enqueue(WriteCommand<T> command, boolean exclusive) {
+        Pending<T> pending = new Pending<>(command, exclusive);
+        if (Thread.currentThread() == thread) {
+            // Команда, ждущая другую команду в том же потоке, никогда бы не завершилась
+            pending.future.completeExceptionally(new IllegalStateException("Вложенная команда записи"));
+        } else if (closed) {
+            pending.future.completeExceptionally(new SQLException("Писатель БД остановлен"));
+        } else {
+            try {
+                // offer не проверяет флаг прерывания: при свободной очереди команду примет и прерванный поток
+                if (!queue.offer(pending)) {
+                    queue.put(pending);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                pending.future.completeExceptionally(new SQLException("Ожидание очереди записи прервано", e));
+            }
+        }
+        return pending.future;
+    }
+
+    /**
+     * Ждет результат команды. Принятая команда выполнится в любом случае, поэтому ожидание
+     * не прерывается (завершение работы идет из прерванного потока); флаг восстанавливается.
+     */
+    public static <T> T await(CompletableFuture<T> future) throws SQLException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new SQLException(cause);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        List<Pending<?>> batch = new ArrayList<>();
+        try {
+            while (true) {
+                Pending<?> first = carried != null ? carried : queue.poll(100, TimeUnit.MILLISECONDS);
+                carried = null;
+                if (first == null) {
+                    if (closed && queue.isEmpty()) {
+                        return;
+                    }
+                    continue;
+                }
+                queueDepth.record(queue.size() + 1);
+                if (first.exclusive) {
+                    runExclusive(first);
+                    continue;
+                }
+
+                batch.add(first);
+                int weight = first.weight();
+                long deadline = System.nanoTime() + windowNanos;
+                while (weight < maxBatchWeight) {
+                    Pending<?> next = queue.poll();
+                    if (next == null) {
+                        long left = deadline - System.nanoTime();
+                        if (left <= 0 || closed || lastBatchCommands <= 1) {
+                            break;
+                        }
+                        next = queue.poll(left, TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                    }
+                    if (next.exclusive) {
+                        carried = next;
+                        break;
+                    }
+                    batch.add(next);
+                    weight += next.weight();
+                }
+                runBatch(batch, weight);
+                lastBatchCommands = batch.size();
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            SQLException stopped = new SQLException("Писатель БД прерван");
+            for (Pending<?> pending : batch) {
+                pending.future.completeExceptionally(stopped);
+            }
+            if (carried != null) {
+                carried.future.completeExceptionally(stopped);
+            }
+            Pending<?> left;
+            while ((left = queue.poll()) != null) {
+                left.future.completeExceptionally(stopped);
+            }
+        }
+    }
+
+    private void runBatch(List<Pending<?>> batch, int weight) {
+        long start = System.nanoTime();
+        // Одиночной команде точка сохранения не нужна: ее ошибка и так откатывает всю транзакцию
+        boolean savepoints = batch.size() > 1;
+        try (Connection conn = DbConnection.getWriteConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                for (Pending<?> pending : batch) {
+                    pending.executeIn(conn, savepoints);
+                }
+                synchronized (commitLock) {
+                    conn.commit();
+                    for (Pending<?> pending : batch) {
+                        pending.committed();
+                    }
+                }
+                commits.increment();
+            } catch (SQLException | RuntimeException e) {
+                rollbackQuietly(conn);
+                for (Pending<?> pending : batch) {
+                    pending.failIfPending(e);
+                }
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            for (Pending<?> pending : batch) {
+                pending.failIfPending(e);
+            }
+        }
+        commitLatency.record((System.nanoTime() - start) / 1000);
+        batchCommands.record(batch.size());
+        batchRows.record(weight);
+        for (Pending<?> pending : batch) {
+            complete(pending);
+        }
+    }
+
+    private void runExclusive(Pending<?> pending) {
+        try (Connection conn = DbConnection.getWriteConnection()) {
+            try {
+                pending.executeIn(conn, false);
+                synchronized (commitLock) {
+                    pending.committed();
+                }
+            } finally {
+                // Команда могла оставить открытую транзакцию после ошибки
+                if (!conn.getAutoCommit()) {
+                    rollbackQuietly(conn);
+                    conn.setAutoCommit(true);
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            pending.failIfPending(e);
+        }
+        complete(pending);
+    }
+
+    private void complete(Pending<?> pending) {
+        if (!pending.exclusive) {
+            commandLatency.recordSince(pending.submitNanos);
+        }
+        executedCommands.increment();
+        if (pending.failure != null) {
+            failedCommands.increment();
+        }
+        pending.complete();
+    }
+
+    private static void rollbackQuietly(Connection conn) {
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Ошибка отката транзакции", e);
+        }
+    }
+
+    /** Дожидается выполнения уже принятых команд и останавливает поток писателя. */
+    @Override
+    public void close() {
+        closed = true;
+        boolean interrupted = Thread.interrupted();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (thread.isAlive() && System.nanoTime() < deadline) {
+            try {
+                thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            LOGGER.warning("Писатель БД не завершился, в очереди: " + queue.size());
+        }
+    }
+
+    /** Публикует гистограммы и счетчики писателя в MetricsRegistry под префиксом prefix. */
+    public void registerMetrics(String prefix) {
+        MetricsRegistry.register(prefix + ".commit", commitLatency);
+        MetricsRegistry.register(prefix + ".batch.commands", batchCommands);
+        MetricsRegistry.register(prefix + ".batch.rows", batchRows);
+        MetricsRegistry.register(prefix + ".queue.depth", queueDepth);
+        MetricsRegistry.register(prefix + ".latency", commandLatency);
+        MetricsRegistry.gauge(prefix + ".queue.size", queue::size);
+        MetricsRegistry.gauge(prefix + ".commits", commits::sum);
+        MetricsRegistry.gauge(prefix + ".failedCommands", failedCommands::sum);
+    }
+
+    public int getQueueSize() { return queue.size(); }
+    public int getQueueCapacity() { return queueCapacity; }
+    public long getCommits() { return commits.sum(); }
+    public long getExecutedCommands() { return executedCommands.sum(); }
+    public long getFailedCommands() { return failedCommands.sum(); }
+    public LatencyHistogram getCommitLatency() { return commitLatency; }
+    public LatencyHistogram getBatchCommands() { return batchCommands; }
+    public LatencyHistogram getBatchRows() { return batchRows; }
+    public LatencyHistogram getQueueDepth() { return queueDepth; }
+    public LatencyHistogram getCommandLatency() { return commandLatency; }
+
+    private static final class Pending<T> {
+        final WriteCommand<T> command;
+        final boolean exclusive;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final long submitNanos = System.nanoTime();
+        T result;
+        Throwable failure;
+
+        Pending(WriteCommand<T> command, boolean exclusive) {
+            this.command = command;
+            this.exclusive = exclusive;
+        }
+
+        int weight() {
+            return Math.max(1, command.weight());
+        }
+
+        void executeIn(Connection conn, boolean savepoint) throws SQLException {
+            if (!savepoint) {
+                result = command.execute(conn);
+                return;
+            }
+            Savepoint point = conn.setSavepoint();
+            try {
+                result = command.execute(conn);
+                conn.releaseSavepoint(point);
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback(point);
+                conn.releaseSavepoint(point);
+                failure = e;
+            }
+        }
+
+        // Хук после фиксации; его ошибка не отменяет уже зафиксированное изменение
+        void committed() {
+            if (failure != null) {
+                return;
+            }
+            try {
+                command.committed(result);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Ошибка обработки зафиксированной команды", e);
+            }
+        }
+
+        void failIfPending(Throwable error) {
+            if (failure == null) {
+                failure = error;
+            }
+        }
+
+        void complete() {
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+}
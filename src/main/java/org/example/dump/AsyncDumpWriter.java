@@ -0,0 +1,206 @@
+package org.example.dump;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Logger;
+
+/**
+ * Буферизованная асинхронная запись дампа в файл.
+ * Поток дампа наполняет текстовый блок и кодирует его в один из заранее выделенных
+ * байтовых буферов; фоновый поток сбрасывает заполненные буферы в FileChannel.
+ * Когда свободных буферов нет, производитель ждет (обратное давление).
+ */
+public final class AsyncDumpWriter implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(AsyncDumpWriter.class.getName());
+    private static final ByteBuffer END_OF_STREAM = ByteBuffer.allocate(0);
+
+    private final Path file;
+    private final FileChannel channel;
+    private final int blockChars;
+    private final StringBuilder block;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+
+    private final BlockingQueue<ByteBuffer> free;
+    private final BlockingQueue<ByteBuffer> filled;
+    private final Thread drainer;
+
+    private volatile IOException failure;
+    private boolean closed = false;
+    private long bytesWritten = 0;
+
+    public AsyncDumpWriter(Path file, int blockSize, int blocks) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.blockChars = blockSize;
+        this.block = new StringBuilder(blockSize + 1024);
+
+        int byteCapacity = (int) (blockSize * (double) encoder.maxBytesPerChar());
+        this.free = new ArrayBlockingQueue<>(blocks);
+        this.filled = new ArrayBlockingQueue<>(blocks + 1);
+        for (int i = 0; i < blocks; i++) {
+            free.add(ByteBuffer.allocateDirect(byteCapacity));
+        }
+
+        this.drainer = new Thread(this::drain, "dump-writer-" + file.getFileName());
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    // Буфер текущего блока; после добавления данных нужно вызвать endRecord()
+    public StringBuilder buffer() {
+        return block;
+    }
+
+    public void endRecord() throws IOException {
+        if (block.length() >= blockChars) {
+            flushBlock();
+        }
+    }
+
+    public void write(CharSequence text) throws IOException {
+        block.append(text);
+        endRecord();
+    }
+
+    private void flushBlock() throws IOException {
+        checkFailure();
+        if (block.length() == 0) {
+            return;
+        }
+        // Блок, выросший сверх размера буфера последней записью, кодируется в несколько буферов
+        CharBuffer chars = CharBuffer.wrap(block);
+        encoder.reset();
+        CoderResult result;
+        do {
+            ByteBuffer target = takeUninterruptibly(free);
+            target.clear();
+            result = encoder.encode(chars, target, true);
+            if (result.isError()) {
+                free.add(target);
+                block.setLength(0);
+                result.throwException();
+            }
+            if (result.isUnderflow()) {
+                encoder.flush(target);
+            }
+            target.flip();
+            putUninterruptibly(filled, target);
+        } while (result.isOverflow());
+        block.setLength(0);
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                ByteBuffer buffer = takeUninterruptibly(filled);
+                if (buffer == END_OF_STREAM) {
+                    return;
+                }
+                try {
+                    if (failure == null) {
+                        while (buffer.hasRemaining()) {
+                            bytesWritten += channel.write(buffer);
+                        }
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                } finally {
+                    buffer.clear();
+                    free.add(buffer);
+                }
+            }
+        } catch (RuntimeException e) {
+            failure = new IOException("Сбой фоновой записи дампа", e);
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Ошибка записи " + file, failure);
+        }
+    }
+
+    /**
+     * Сбрасывает остаток блока, дожидается записи всех буферов и закрывает файл.
+     * Выполняется до конца даже при прерывании потока (например, shutdownNow планировщика).
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        boolean interrupted = Thread.interrupted();
+        try {
+            flushBlock();
+        } finally {
+            putUninterruptibly(filled, END_OF_STREAM);
+            while (drainer.isAlive()) {
+                try {
+                    drainer.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            try {
+                channel.force(false);
+            } finally {
+                channel.close();
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        checkFailure();
+        LOGGER.fine("Дамп записан: " + file + " (" + bytesWritten + " байт)");
+    }
+
+    private static <T> T takeUninterruptibly(BlockingQueue<T> queue) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return queue.take();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static <T> void putUninterruptibly(BlockingQueue<T> queue, T item) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    queue.put(item);
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+}
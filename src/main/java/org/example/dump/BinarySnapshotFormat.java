@@ -0,0 +1,97 @@
+package org.example.dump;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Разметка бинарного снимка (BinarySnapshotSink пишет, BinarySnapshotReader читает).
+ * Файл: заголовок, блоки по db.dump.binary.block.rows строк, концевик с итогами.
+ * Блок: число строк, кодек, длина до и после сжатия, CRC32C сохраненных байт, данные.
+ * Данные блока по колонкам: новые имена словаря, ID (разности, zigzag varint),
+ * индексы имен (varint), телефоны (упакованные int), битовая карта и телефоны истории,
+ * битовая карта и время изменения (разности мс, zigzag varint), телефоны-исключения строками.
+ */
+final class BinarySnapshotFormat {
+    static final int MAGIC = 0x43534E50;           // "CSNP"
+    static final int TRAILER_MAGIC = 0x43454E44;   // "CEND"
+    static final int VERSION = 1;
+
+    // magic, версия, время создания (мс), вид дампа, резерв
+    static final int HEADER_SIZE = 24;
+    static final int H_VERSION = 4;
+    static final int H_CREATED = 8;
+    static final int H_KIND = 16;
+
+    // строки (> 0), кодек, длина данных, сохраненная длина, CRC32C
+    static final int BLOCK_HEADER_SIZE = 17;
+    // 0 вместо числа строк, всего строк, с историей, блоков, magic
+    static final int TRAILER_SIZE = 28;
+
+    static final byte CODEC_NONE = 0;
+    static final byte CODEC_DEFLATE = 1;
+    // Предельная степень сжатия Deflate: больше из сохраненных байт не распаковать
+    static final int MAX_DEFLATE_RATIO = 1032;
+
+    // Колонка телефона-исключения: значение не упаковывается в int и хранится строкой
+    static final byte COLUMN_PHONE = 0;
+    static final byte COLUMN_OLD_PHONE = 1;
+
+    static final int MAX_VARINT_BYTES = 5;
+    static final int MAX_VARLONG_BYTES = 10;
+
+    private BinarySnapshotFormat() {
+    }
+
+    static void putVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static void putVarlong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static int getVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    static long getVarlong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,338 @@
+package org.example.dump;
+
+import org.example.util.PhoneNumbers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.example.dump.BinarySnapshotFormat.*;
+
+/**
+ * Чтение бинарного снимка из отображенного в память файла. Блок проверяется по CRC32C
+ * и раскладывается в переиспользуемые колонки; next() только сдвигает номер строки,
+ * поэтому перебор строк ничего не выделяет (кроме getPhone()/getOldPhone(), создающих строку).
+ * <pre>
+ * try (BinarySnapshotReader reader = BinarySnapshotReader.open(path)) {
+ *     while (reader.next()) {
+ *         reader.getId(); reader.getPhoneCode(); ...
+ *     }
+ * }
+ * </pre>
+ */
+public final class BinarySnapshotReader implements AutoCloseable {
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int version;
+    private final long createdMillis;
+    private final DumpKind kind;
+    private final long total;
+    private final long withHistory;
+    private final int blocks;
+    private final int end;
+
+    private final List<String> dictionary = new ArrayList<>();
+    private final CRC32C crc = new CRC32C();
+    private Inflater inflater;
+    private ByteBuffer inflated = ByteBuffer.allocate(0);
+
+    private int[] ids = new int[0];
+    private int[] names = new int[0];
+    private int[] phones = new int[0];
+    private int[] oldPhones = new int[0];
+    private long[] changeMillis = new long[0];
+    private byte[] history = new byte[0];
+    private byte[] changed = new byte[0];
+    private String[] phoneStrings = new String[0];
+    private String[] oldPhoneStrings = new String[0];
+    private boolean blockHasExceptions = false;
+
+    private int blockRows = 0;
+    private int row = -1;
+    private int blocksRead = 0;
+
+    private BinarySnapshotReader(Path file, FileChannel channel, MappedByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.buffer = buffer;
+        int size = buffer.limit();
+        if (size < HEADER_SIZE + TRAILER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Не бинарный снимок дампа: " + file);
+        }
+        this.version = buffer.getInt(H_VERSION);
+        if (version != VERSION) {
+            throw new IOException("Версия снимка " + version + " не поддерживается (ожидается " + VERSION + "): " + file);
+        }
+        this.createdMillis = buffer.getLong(H_CREATED);
+        int kindOrdinal = buffer.getInt(H_KIND);
+        if (kindOrdinal < 0 || kindOrdinal >= DumpKind.values().length) {
+            throw new IOException("Неизвестный вид дампа " + kindOrdinal + " в снимке " + file);
+        }
+        this.kind = DumpKind.values()[kindOrdinal];
+
+        int trailer = size - TRAILER_SIZE;
+        if (buffer.getInt(trailer) != 0 || buffer.getInt(size - Integer.BYTES) != TRAILER_MAGIC) {
+            throw new IOException("Снимок оборван (нет концевика): " + file);
+        }
+        this.total = buffer.getLong(trailer + 4);
+        this.withHistory = buffer.getLong(trailer + 12);
+        this.blocks = buffer.getInt(trailer + 20);
+        this.end = trailer;
+        buffer.position(HEADER_SIZE);
+    }
+
+    public static BinarySnapshotReader open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Снимок больше 2 ГБ не отображается одним буфером: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new BinarySnapshotReader(file, channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Переходит к следующей строке; false — строки кончились
+    public boolean next() throws IOException {
+        if (++row < blockRows) {
+            return true;
+        }
+        if (buffer.position() >= end) {
+            if (blocksRead != blocks) {
+                throw new IOException("В снимке " + file + " блоков " + blocksRead + " вместо " + blocks);
+            }
+            row = blockRows;
+            return false;
+        }
+        readBlock();
+        row = 0;
+        return true;
+    }
+
+    private void readBlock() throws IOException {
+        int rows = buffer.getInt();
+        byte codec = buffer.get();
+        int rawLength = buffer.getInt();
+        int storedLength = buffer.getInt();
+        int checksum = buffer.getInt();
+        int start = buffer.position();
+        if (rows <= 0 || storedLength < 0 || storedLength > end - start || !validRawLength(codec, rawLength, storedLength)) {
+            throw new IOException("Поврежден заголовок блока " + blocksRead + " снимка " + file);
+        }
+        ByteBuffer stored = buffer.slice(start, storedLength);
+        crc.reset();
+        crc.update(stored);
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("Контрольная сумма блока " + blocksRead + " снимка " + file + " не совпадает");
+        }
+        stored.rewind();
+        buffer.position(start + storedLength);
+
+        ByteBuffer data = switch (codec) {
+            case CODEC_NONE -> stored;
+            case CODEC_DEFLATE -> inflate(stored, rawLength);
+            default -> throw new IOException("Неизвестный кодек " + codec + " в блоке " + blocksRead + " снимка " + file);
+        };
+        try {
+            decode(data, rows);
+        } catch (RuntimeException e) {
+            throw new IOException("Поврежден блок " + blocksRead + " снимка " + file, e);
+        }
+        blockRows = rows;
+        blocksRead++;
+    }
+
+    // Длина до сжатия не входит в CRC: без сжатия равна сохраненной, после Deflate ограничена его степенью сжатия
+    private static boolean validRawLength(byte codec, int rawLength, int storedLength) {
+        if (codec == CODEC_NONE) {
+            return rawLength == storedLength;
+        }
+        return rawLength >= 0 && rawLength < Integer.MAX_VALUE
+                && rawLength <= (long) storedLength * MAX_DEFLATE_RATIO;
+    }
+
+    private ByteBuffer inflate(ByteBuffer stored, int rawLength) throws IOException {
+        if (inflater == null) {
+            inflater = new Inflater();
+        }
+        // Байт сверх длины: поток должен закончиться, не заполнив его
+        if (inflated.capacity() < rawLength + 1) {
+            inflated = ByteBuffer.allocate(rawLength + 1);
+        }
+        inflated.clear().limit(rawLength + 1);
+        inflater.reset();
+        inflater.setInput(stored);
+        try {
+            while (!inflater.finished() && inflated.hasRemaining()) {
+                if (inflater.inflate(inflated) == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Не распаковывается блок " + blocksRead + " снимка " + file, e);
+        }
+        if (!inflater.finished() || inflated.position() != rawLength) {
+            throw new IOException("Длина распакованного блока " + blocksRead + " снимка " + file + " не совпадает");
+        }
+        return inflated.flip();
+    }
+
+    private void decode(ByteBuffer in, int rows) {
+        ensureCapacity(rows);
+        int newNames = getVarint(in);
+        for (int i = 0; i < newNames; i++) {
+            dictionary.add(getString(in));
+        }
+        int id = 0;
+        for (int i = 0; i < rows; i++) {
+            id += unzigzag(getVarint(in));
+            ids[i] = id;
+        }
+        for (int i = 0; i < rows; i++) {
+            names[i] = getVarint(in);
+            if (names[i] >= dictionary.size()) {
+                throw new IllegalStateException("имя " + names[i] + " вне словаря из " + dictionary.size());
+            }
+        }
+        for (int i = 0; i < rows; i++) {
+            phones[i] = in.getInt();
+        }
+        int bitmap = BinarySnapshotSink.bitmapBytes(rows);
+        in.get(history, 0, bitmap);
+        for (int i = 0; i < rows; i++) {
+            oldPhones[i] = BinarySnapshotSink.isSet(history, i) ? in.getInt() : DumpRow.NO_CODE;
+        }
+        in.get(changed, 0, bitmap);
+        long millis = 0;
+        for (int i = 0; i < rows; i++) {
+            if (BinarySnapshotSink.isSet(changed, i)) {
+                millis += unzigzag(getVarlong(in));
+                changeMillis[i] = millis;
+            }
+        }
+
+        if (blockHasExceptions) {
+            Arrays.fill(phoneStrings, null);
+            Arrays.fill(oldPhoneStrings, null);
+        }
+        int exceptions = getVarint(in);
+        blockHasExceptions = exceptions > 0;
+        for (int i = 0; i < exceptions; i++) {
+            int index = getVarint(in);
+            byte column = in.get();
+            String value = getString(in);
+            if (column == COLUMN_PHONE) {
+                phoneStrings[index] = value;
+            } else {
+                oldPhoneStrings[index] = value;
+            }
+        }
+        if (in.hasRemaining()) {
+            throw new IllegalStateException("лишние байты в конце блока: " + in.remaining());
+        }
+    }
+
+    private void ensureCapacity(int rows) {
+        if (ids.length >= rows) {
+            return;
+        }
+        ids = new int[rows];
+        names = new int[rows];
+        phones = new int[rows];
+        oldPhones = new int[rows];
+        changeMillis = new long[rows];
+        history = new byte[BinarySnapshotSink.bitmapBytes(rows)];
+        changed = new byte[BinarySnapshotSink.bitmapBytes(rows)];
+        phoneStrings = new String[rows];
+        oldPhoneStrings = new String[rows];
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = getVarint(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public int getId() {
+        return ids[row];
+    }
+
+    // Строка из словаря снимка: одна и та же для всех строк с этим именем
+    public String getName() {
+        return dictionary.get(names[row]);
+    }
+
+    public int getNameIndex() {
+        return names[row];
+    }
+
+    // Упакованный телефон или DumpRow.NO_CODE, если он хранится строкой
+    public int getPhoneCode() {
+        return phones[row];
+    }
+
+    public String getPhone() {
+        int code = phones[row];
+        return code != PhoneNumbers.NOT_PACKED ? PhoneNumbers.format(code) : phoneStrings[row];
+    }
+
+    public boolean hasHistory() {
+        return BinarySnapshotSink.isSet(history, row);
+    }
+
+    // DumpRow.NO_CODE — истории нет или телефон хранится строкой
+    public int getOldPhoneCode() {
+        return oldPhones[row];
+    }
+
+    public String getOldPhone() {
+        if (!hasHistory()) {
+            return null;
+        }
+        int code = oldPhones[row];
+        return code != PhoneNumbers.NOT_PACKED ? PhoneNumbers.format(code) : oldPhoneStrings[row];
+    }
+
+    public boolean hasChangeTime() {
+        return BinarySnapshotSink.isSet(changed, row);
+    }
+
+    // Время изменения в мс (как Timestamp.getTime()); 0, если hasChangeTime() = false
+    public long getChangeMillis() {
+        return hasChangeTime() ? changeMillis[row] : 0;
+    }
+
+    public int getFormatVersion() { return version; }
+    public long getCreatedMillis() { return createdMillis; }
+    public DumpKind getKind() { return kind; }
+    public long getTotal() { return total; }
+    public long getWithHistory() { return withHistory; }
+    public int getBlockCount() { return blocks; }
+
+    @Override
+    public void close() throws IOException {
+        if (inflater != null) {
+            inflater.end();
+        }
+        channel.close();
+    }
+}
@@ -0,0 +1,342 @@
+package org.example.dump;
+
+import org.example.util.PhoneNumbers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+import java.util.zip.Deflater;
+
+import static org.example.dump.BinarySnapshotFormat.*;
+
+/**
+ * Приемник, пишущий дамп в бинарный колоночный снимок (разметка — BinarySnapshotFormat).
+ * Строки копируются в колонки блока; заполненный блок кодируется, при необходимости
+ * сжимается Deflate (если это его уменьшает) и пишется одной записью в канал.
+ * Имена кодируются словарем: новое имя попадает в блок, где встретилось впервые.
+ */
+public class BinarySnapshotSink implements DumpSink {
+    private static final Logger LOGGER = Logger.getLogger(BinarySnapshotSink.class.getName());
+
+    private final Path file;
+    private final DumpKind kind;
+    private final int blockRows;
+    private final boolean compress;
+    private WritableByteChannel channel;
+
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final List<byte[]> newNames = new ArrayList<>();
+    private int newNameBytes = 0;
+
+    // Колонки текущего блока
+    private final int[] ids;
+    private final int[] names;
+    private final int[] phones;
+    private final int[] oldPhones;
+    private final long[] changeMillis;
+    private final byte[] history;
+    private final byte[] changed;
+    // Телефоны, не упаковываемые в int (PhoneNumbers.NOT_PACKED в колонке)
+    private final String[] phoneStrings;
+    private final String[] oldPhoneStrings;
+    private int exceptionBytes = 0;
+    private int rows = 0;
+
+    private final Deflater deflater;
+    private final CRC32C crc = new CRC32C();
+    private final ByteBuffer blockHeader = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+    private ByteBuffer raw = ByteBuffer.allocate(0);
+    private ByteBuffer packed = ByteBuffer.allocate(0);
+    private int blocks = 0;
+    private long bytesWritten = 0;
+
+    public BinarySnapshotSink(Path file, DumpKind kind, int blockRows, boolean compress) {
+        this(file, null, kind, blockRows, compress);
+    }
+
+    // Запись в готовый канал (ответ HTTP /dump?format=binary); канал закрывается в close()
+    public BinarySnapshotSink(WritableByteChannel channel, DumpKind kind, int blockRows, boolean compress) {
+        this(null, channel, kind, blockRows, compress);
+    }
+
+    private BinarySnapshotSink(Path file, WritableByteChannel channel, DumpKind kind, int blockRows, boolean compress) {
+        this.file = file;
+        this.channel = channel;
+        this.kind = kind;
+        this.blockRows = Math.max(1, blockRows);
+        this.compress = compress;
+        this.deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+        this.ids = new int[this.blockRows];
+        this.names = new int[this.blockRows];
+        this.phones = new int[this.blockRows];
+        this.oldPhones = new int[this.blockRows];
+        this.changeMillis = new long[this.blockRows];
+        this.history = new byte[bitmapBytes(this.blockRows)];
+        this.changed = new byte[bitmapBytes(this.blockRows)];
+        this.phoneStrings = new String[this.blockRows];
+        this.oldPhoneStrings = new String[this.blockRows];
+    }
+
+    @Override
+    public void begin() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC)
+                .putInt(VERSION)
+                .putLong(System.currentTimeMillis())
+                .putInt(kind.ordinal())
+                .putInt(0)
+                .flip();
+        write(header);
+    }
+
+    @Override
+    public void accept(DumpRow row) throws IOException {
+        int i = rows;
+        ids[i] = row.getId();
+        names[i] = nameIndex(row.getName());
+        phones[i] = packPhone(row.getPhoneCode(), row.getPhone(), phoneStrings, i);
+        if (row.hasHistory()) {
+            history[i >>> 3] |= (byte) (1 << (i & 7));
+            oldPhones[i] = packPhone(row.getOldPhoneCode(), row.getOldPhone(), oldPhoneStrings, i);
+        }
+        Timestamp changeTime = row.getChangeTime();
+        if (changeTime != null) {
+            changed[i >>> 3] |= (byte) (1 << (i & 7));
+            changeMillis[i] = changeTime.getTime();
+        }
+        if (++rows == blockRows) {
+            flushBlock();
+        }
+    }
+
+    private int nameIndex(String name) {
+        Integer index = dictionary.get(name);
+        if (index == null) {
+            index = dictionary.size();
+            dictionary.put(name, index);
+            byte[] bytes = name != null ? name.getBytes(StandardCharsets.UTF_8) : null;
+            newNames.add(bytes);
+            newNameBytes += MAX_VARINT_BYTES + (bytes != null ? bytes.length : 0);
+        }
+        return index;
+    }
+
+    // Код телефона; строка сохраняется, только если телефон не в формате "ddd-ddddd"
+    private int packPhone(int code, String text, String[] strings, int i) {
+        if (code == DumpRow.NO_CODE) {
+            code = PhoneNumbers.pack(text);
+        }
+        if (code == PhoneNumbers.NOT_PACKED) {
+            strings[i] = text;
+            exceptionBytes += 2 * MAX_VARINT_BYTES + 1 + (text != null ? 3 * text.length() : 0);
+        }
+        return code;
+    }
+
+    @Override
+    public void end(long total, long withHistory) throws IOException {
+        flushBlock();
+        ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+        trailer.putInt(0)
+                .putLong(total)
+                .putLong(withHistory)
+                .putInt(blocks)
+                .putInt(TRAILER_MAGIC)
+                .flip();
+        write(trailer);
+    }
+
+    private void flushBlock() throws IOException {
+        if (rows == 0) {
+            return;
+        }
+        int bitmap = bitmapBytes(rows);
+        int bound = rows * (2 * MAX_VARINT_BYTES + 2 * Integer.BYTES + MAX_VARLONG_BYTES)
+                + 2 * bitmap + 2 * MAX_VARINT_BYTES + newNameBytes + exceptionBytes;
+        if (raw.capacity() < bound) {
+            raw = ByteBuffer.allocate(bound);
+        }
+        raw.clear();
+        encode(raw, bitmap);
+        raw.flip();
+
+        ByteBuffer stored = raw;
+        byte codec = CODEC_NONE;
+        if (compress && deflate(raw)) {
+            stored = packed;
+            codec = CODEC_DEFLATE;
+        }
+        crc.reset();
+        int position = stored.position();
+        crc.update(stored);
+        stored.position(position);
+
+        blockHeader.clear();
+        blockHeader.putInt(rows)
+                .put(codec)
+                .putInt(raw.remaining())
+                .putInt(stored.remaining())
+                .putInt((int) crc.getValue())
+                .flip();
+        write(blockHeader);
+        write(stored);
+
+        blocks++;
+        rows = 0;
+        newNames.clear();
+        newNameBytes = 0;
+        Arrays.fill(history, 0, bitmap, (byte) 0);
+        Arrays.fill(changed, 0, bitmap, (byte) 0);
+        if (exceptionBytes > 0) {
+            Arrays.fill(phoneStrings, null);
+            Arrays.fill(oldPhoneStrings, null);
+            exceptionBytes = 0;
+        }
+    }
+
+    private void encode(ByteBuffer out, int bitmap) {
+        putVarint(out, newNames.size());
+        for (byte[] name : newNames) {
+            putString(out, name);
+        }
+        int previousId = 0;
+        for (int i = 0; i < rows; i++) {
+            putVarint(out, zigzag(ids[i] - previousId));
+            previousId = ids[i];
+        }
+        for (int i = 0; i < rows; i++) {
+            putVarint(out, names[i]);
+        }
+        for (int i = 0; i < rows; i++) {
+            out.putInt(phones[i]);
+        }
+        out.put(history, 0, bitmap);
+        for (int i = 0; i < rows; i++) {
+            if (isSet(history, i)) {
+                out.putInt(oldPhones[i]);
+            }
+        }
+        out.put(changed, 0, bitmap);
+        long previousMillis = 0;
+        for (int i = 0; i < rows; i++) {
+            if (isSet(changed, i)) {
+                putVarlong(out, zigzag(changeMillis[i] - previousMillis));
+                previousMillis = changeMillis[i];
+            }
+        }
+
+        int exceptions = 0;
+        if (exceptionBytes > 0) {
+            for (int i = 0; i < rows; i++) {
+                if (phones[i] == PhoneNumbers.NOT_PACKED) {
+                    exceptions++;
+                }
+                if (isSet(history, i) && oldPhones[i] == PhoneNumbers.NOT_PACKED) {
+                    exceptions++;
+                }
+            }
+        }
+        putVarint(out, exceptions);
+        for (int i = 0; exceptions > 0 && i < rows; i++) {
+            if (phones[i] == PhoneNumbers.NOT_PACKED) {
+                putException(out, i, COLUMN_PHONE, phoneStrings[i]);
+            }
+            if (isSet(history, i) && oldPhones[i] == PhoneNumbers.NOT_PACKED) {
+                putException(out, i, COLUMN_OLD_PHONE, oldPhoneStrings[i]);
+            }
+        }
+    }
+
+    private static void putException(ByteBuffer out, int row, byte column, String value) {
+        putVarint(out, row);
+        out.put(column);
+        putString(out, value != null ? value.getBytes(StandardCharsets.UTF_8) : null);
+    }
+
+    // Длина + 1, 0 — null
+    private static void putString(ByteBuffer out, byte[] bytes) {
+        if (bytes == null) {
+            putVarint(out, 0);
+            return;
+        }
+        putVarint(out, bytes.length + 1);
+        out.put(bytes);
+    }
+
+    // false, если сжатие не уменьшает блок: тогда он хранится как есть
+    private boolean deflate(ByteBuffer input) {
+        if (packed.capacity() < input.remaining()) {
+            packed = ByteBuffer.allocate(input.remaining());
+        }
+        packed.clear().limit(input.remaining());
+        int position = input.position();
+        deflater.reset();
+        deflater.setInput(input);
+        deflater.finish();
+        while (!deflater.finished() && packed.hasRemaining()) {
+            deflater.deflate(packed);
+        }
+        input.position(position);
+        if (!deflater.finished()) {
+            return false;
+        }
+        packed.flip();
+        return true;
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        // Прерывание потока дампа (shutdownNow) закрыло бы FileChannel посреди файла
+        boolean interrupted = Thread.interrupted();
+        try {
+            while (buffer.hasRemaining()) {
+                bytesWritten += channel.write(buffer);
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    static boolean isSet(byte[] bitmap, int i) {
+        return (bitmap[i >>> 3] & (1 << (i & 7))) != 0;
+    }
+
+    static int bitmapBytes(int rows) {
+        return (rows + 7) >>> 3;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (deflater != null) {
+            deflater.end();
+        }
+        if (channel == null) {
+            return;
+        }
+        try {
+            if (channel instanceof FileChannel fileChannel && fileChannel.isOpen()) {
+                fileChannel.force(false);
+            }
+        } finally {
+            channel.close();
+        }
+        LOGGER.fine("Снимок записан: " + (file != null ? file : "поток") + " (" + bytesWritten + " байт, блоков " + blocks + ")");
+    }
+}
@@ -0,0 +1,20 @@
+package org.example.dump;
+
+import java.nio.file.Path;
+
+public class CsvDumpSink extends FileDumpSink {
+
+    public CsvDumpSink(Path file, int blockSize, int blocks) {
+        super(file, blockSize, blocks);
+    }
+
+    @Override
+    protected void appendHeader(StringBuilder out) {
+        out.append("id,name,phone,old_phone,change_time");
+    }
+
+    @Override
+    protected void appendRow(StringBuilder out, DumpRow row) {
+        DumpRowFormatter.appendCsvRow(out, row);
+    }
+}
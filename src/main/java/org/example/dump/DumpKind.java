@@ -0,0 +1,19 @@
+package org.example.dump;
+
+public enum DumpKind {
+    // Полный снимок всех контактов
+    FULL("full", "=== ТЕКУЩЕЕ СОСТОЯНИЕ КОНТАКТОВ С ИСТОРИЕЙ ==="),
+    // Только контакты, измененные после предыдущего дампа
+    DELTA("delta", "=== КОНТАКТЫ, ИЗМЕНЕННЫЕ С ПРЕДЫДУЩЕГО ДАМПА ===");
+
+    private final String fileTag;
+    private final String title;
+
+    DumpKind(String fileTag, String title) {
+        this.fileTag = fileTag;
+        this.title = title;
+    }
+
+    public String getFileTag() { return fileTag; }
+    public String getTitle() { return title; }
+}
@@ -0,0 +1,63 @@
+package org.example.dump;
+
+import org.example.util.PhoneNumbers;
+
+import java.sql.Timestamp;
+
+/**
+ * Строка дампа. Один экземпляр переиспользуется для всех строк курсора,
+ * поэтому приемники не должны сохранять ссылку на него после accept().
+ * Телефоны хранятся либо строками, либо упакованными числами (phone.encoding=packed);
+ * во втором случае текст создается только приемником, которому нужна строка.
+ */
+public final class DumpRow {
+    // Нет значения: телефон задан строкой или истории изменений нет
+    public static final int NO_CODE = PhoneNumbers.NOT_PACKED;
+
+    private int id;
+    private String name;
+    private String phone;
+    private String oldPhone;
+    private int phoneCode = NO_CODE;
+    private int oldPhoneCode = NO_CODE;
+    private Timestamp changeTime;
+
+    public void set(int id, String name, String phone, String oldPhone, Timestamp changeTime) {
+        set(id, name, phone, NO_CODE, oldPhone, NO_CODE, changeTime);
+    }
+
+    // oldPhoneCode = NO_CODE — истории нет
+    public void setPacked(int id, String name, int phoneCode, int oldPhoneCode, Timestamp changeTime) {
+        set(id, name, null, phoneCode, null, oldPhoneCode, changeTime);
+    }
+
+    // Для каждого телефона используется код, если он задан, иначе строка
+    public void set(int id, String name, String phone, int phoneCode,
+                    String oldPhone, int oldPhoneCode, Timestamp changeTime) {
+        this.id = id;
+        this.name = name;
+        this.phone = phone;
+        this.phoneCode = phoneCode;
+        this.oldPhone = oldPhone;
+        this.oldPhoneCode = oldPhoneCode;
+        this.changeTime = changeTime;
+    }
+
+    public int getId() { return id; }
+    public String getName() { return name; }
+    public Timestamp getChangeTime() { return changeTime; }
+    public int getPhoneCode() { return phoneCode; }
+    public int getOldPhoneCode() { return oldPhoneCode; }
+
+    public String getPhone() {
+        return phoneCode != NO_CODE ? PhoneNumbers.format(phoneCode) : phone;
+    }
+
+    public String getOldPhone() {
+        return oldPhoneCode != NO_CODE ? PhoneNumbers.format(oldPhoneCode) : oldPhone;
+    }
+
+    public boolean hasHistory() {
+        return oldPhone != null || oldPhoneCode != NO_CODE;
+    }
+}
@@ -0,0 +1,173 @@
+package org.example.dump;
+
+import org.example.util.PhoneNumbers;
+
+/**
+ * Форматирование строк дампа без String.format: все значения дописываются
+ * в переданный StringBuilder, промежуточные строки не создаются.
+ */
+public final class DumpRowFormatter {
+    private static final String NOT_AVAILABLE = "N/A";
+    private static final String SEPARATOR = " | ";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private DumpRowFormatter() {
+    }
+
+    // Эквивалент "%-4s | %-15s | %-12s | %-12s | %-20s"
+    public static void appendTableHeader(StringBuilder out) {
+        appendPadded(out, "ID", 4);
+        out.append(SEPARATOR);
+        appendPadded(out, "Имя", 15);
+        out.append(SEPARATOR);
+        appendPadded(out, "Текущий тел.", 12);
+        out.append(SEPARATOR);
+        appendPadded(out, "Старый тел.", 12);
+        out.append(SEPARATOR);
+        appendPadded(out, "Время изменения", 20);
+    }
+
+    // Эквивалент "%-4d | %-15s | %-12s | %-12s | %-20s"
+    public static void appendTableRow(StringBuilder out, DumpRow row) {
+        int start = out.length();
+        out.append(row.getId());
+        pad(out, start, 4);
+        out.append(SEPARATOR);
+        appendPadded(out, row.getName(), 15);
+        out.append(SEPARATOR);
+        start = out.length();
+        if (!appendCode(out, row.getPhoneCode())) {
+            out.append(row.getPhone());
+        }
+        pad(out, start, 12);
+        out.append(SEPARATOR);
+        start = out.length();
+        if (!appendCode(out, row.getOldPhoneCode())) {
+            out.append(row.getOldPhone() != null ? row.getOldPhone() : NOT_AVAILABLE);
+        }
+        pad(out, start, 12);
+        out.append(SEPARATOR);
+        start = out.length();
+        if (row.getChangeTime() != null) {
+            out.append(row.getChangeTime());
+        } else {
+            out.append(NOT_AVAILABLE);
+        }
+        pad(out, start, 20);
+    }
+
+    // Пустое поле означает NULL; кавычки только при необходимости (RFC 4180)
+    public static void appendCsvRow(StringBuilder out, DumpRow row) {
+        out.append(row.getId()).append(',');
+        appendCsvField(out, row.getName());
+        out.append(',');
+        if (!appendCode(out, row.getPhoneCode())) {
+            appendCsvField(out, row.getPhone());
+        }
+        out.append(',');
+        if (!appendCode(out, row.getOldPhoneCode())) {
+            appendCsvField(out, row.getOldPhone());
+        }
+        out.append(',');
+        if (row.getChangeTime() != null) {
+            out.append(row.getChangeTime());
+        }
+    }
+
+    public static void appendJsonRow(StringBuilder out, DumpRow row) {
+        out.append("{\"id\":").append(row.getId());
+        out.append(",\"name\":");
+        appendJsonString(out, row.getName());
+        out.append(",\"phone\":");
+        if (!appendQuotedCode(out, row.getPhoneCode())) {
+            appendJsonString(out, row.getPhone());
+        }
+        out.append(",\"old_phone\":");
+        if (!appendQuotedCode(out, row.getOldPhoneCode())) {
+            appendJsonString(out, row.getOldPhone());
+        }
+        out.append(",\"change_time\":");
+        if (row.getChangeTime() != null) {
+            out.append('"').append(row.getChangeTime()).append('"');
+        } else {
+            out.append("null");
+        }
+        out.append('}');
+    }
+
+    // Упакованный телефон пишется цифрами прямо в буфер; экранирование ему не нужно
+    private static boolean appendCode(StringBuilder out, int code) {
+        if (code == DumpRow.NO_CODE) {
+            return false;
+        }
+        PhoneNumbers.appendTo(out, code);
+        return true;
+    }
+
+    private static boolean appendQuotedCode(StringBuilder out, int code) {
+        if (code == DumpRow.NO_CODE) {
+            return false;
+        }
+        out.append('"');
+        PhoneNumbers.appendTo(out, code);
+        out.append('"');
+        return true;
+    }
+
+    private static void appendPadded(StringBuilder out, String value, int width) {
+        int start = out.length();
+        out.append(value);
+        pad(out, start, width);
+    }
+
+    private static void pad(StringBuilder out, int start, int width) {
+        for (int i = out.length() - start; i < width; i++) {
+            out.append(' ');
+        }
+    }
+
+    private static void appendCsvField(StringBuilder out, String value) {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            out.append(value);
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    public static void appendJsonString(StringBuilder out, String value) {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+}
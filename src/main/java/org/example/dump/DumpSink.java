@@ -0,0 +1,15 @@
+package org.example.dump;
+
+import java.io.IOException;
+
+public interface DumpSink extends AutoCloseable {
+
+    void begin() throws IOException;
+
+    void accept(DumpRow row) throws IOException;
+
+    void end(long total, long withHistory) throws IOException;
+
+    @Override
+    void close() throws IOException;
+}
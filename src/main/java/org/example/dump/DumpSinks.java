@@ -0,0 +1,47 @@
+package org.example.dump;
+
+import org.example.config.AppConfig;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class DumpSinks {
+    private static final DateTimeFormatter FILE_STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private DumpSinks() {
+    }
+
+    // Создает приемники из списка db.dump.sinks (logger, text, csv, ndjson, binary) для одного запуска дампа
+    public static List<DumpSink> create(AppConfig config, DumpKind kind, long sequence) throws IOException {
+        List<DumpSink> sinks = new ArrayList<>();
+        String stamp = String.format("%s-%06d-%s",
+                LocalDateTime.now().format(FILE_STAMP), sequence, kind.getFileTag());
+
+        for (String type : config.getDumpSinks()) {
+            int blockSize = config.getDumpBufferBlockSize();
+            int blocks = config.getDumpBufferBlocks();
+            switch (type) {
+                case "logger" -> sinks.add(new LoggerDumpSink(kind, config.getDumpLoggerRowsPerRecord()));
+                case "text" -> sinks.add(new TextDumpSink(outputFile(config, stamp, "txt"), blockSize, blocks));
+                case "csv" -> sinks.add(new CsvDumpSink(outputFile(config, stamp, "csv"), blockSize, blocks));
+                case "ndjson" -> sinks.add(new NdjsonDumpSink(outputFile(config, stamp, "ndjson"), blockSize, blocks));
+                case "binary" -> sinks.add(new BinarySnapshotSink(outputFile(config, stamp, "snap"), kind,
+                        config.getDumpBinaryBlockRows(), config.isDumpBinaryCompressed()));
+                default -> throw new IllegalArgumentException("Неизвестный приемник дампа: " + type);
+            }
+        }
+        return sinks;
+    }
+
+    private static Path outputFile(AppConfig config, String stamp, String extension) throws IOException {
+        Path dir = Paths.get(config.getDumpOutputDir());
+        Files.createDirectories(dir);
+        return dir.resolve(config.getTableName() + "-" + stamp + "." + extension);
+    }
+}
@@ -0,0 +1,64 @@
+package org.example.dump;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// Приемник, пишущий дамп в файл через AsyncDumpWriter
+public abstract class FileDumpSink implements DumpSink {
+    private final Path file;
+    private final int blockSize;
+    private final int blocks;
+    private AsyncDumpWriter writer;
+
+    protected FileDumpSink(Path file, int blockSize, int blocks) {
+        this.file = file;
+        this.blockSize = blockSize;
+        this.blocks = blocks;
+    }
+
+    @Override
+    public void begin() throws IOException {
+        writer = new AsyncDumpWriter(file, blockSize, blocks);
+        StringBuilder out = writer.buffer();
+        int start = out.length();
+        appendHeader(out);
+        if (out.length() > start) {
+            out.append('\n');
+        }
+        writer.endRecord();
+    }
+
+    @Override
+    public void accept(DumpRow row) throws IOException {
+        StringBuilder out = writer.buffer();
+        appendRow(out, row);
+        out.append('\n');
+        writer.endRecord();
+    }
+
+    @Override
+    public void end(long total, long withHistory) throws IOException {
+        StringBuilder out = writer.buffer();
+        int start = out.length();
+        appendFooter(out, total, withHistory);
+        if (out.length() > start) {
+            out.append('\n');
+        }
+        writer.endRecord();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    protected void appendHeader(StringBuilder out) {
+    }
+
+    protected abstract void appendRow(StringBuilder out, DumpRow row);
+
+    protected void appendFooter(StringBuilder out, long total, long withHistory) {
+    }
+}
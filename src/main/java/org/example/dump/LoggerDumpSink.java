@@ -0,0 +1,59 @@
+package org.example.dump;
+
+import java.util.logging.Logger;
+
+// Строки дампа выводятся в лог блоками, а не отдельной записью на каждый контакт
+public class LoggerDumpSink implements DumpSink {
+    private static final Logger LOGGER = Logger.getLogger(LoggerDumpSink.class.getName());
+
+    private final DumpKind kind;
+    private final int rowsPerRecord;
+    private final StringBuilder block = new StringBuilder(8192);
+    private int rowsInBlock = 0;
+
+    public LoggerDumpSink(DumpKind kind, int rowsPerRecord) {
+        this.kind = kind;
+        this.rowsPerRecord = Math.max(1, rowsPerRecord);
+    }
+
+    @Override
+    public void begin() {
+        LOGGER.info(kind.getTitle());
+        block.setLength(0);
+        DumpRowFormatter.appendTableHeader(block);
+        LOGGER.info(block.toString());
+        block.setLength(0);
+    }
+
+    @Override
+    public void accept(DumpRow row) {
+        if (rowsInBlock > 0) {
+            block.append('\n');
+        }
+        DumpRowFormatter.appendTableRow(block, row);
+        if (++rowsInBlock == rowsPerRecord) {
+            flush();
+        }
+    }
+
+    @Override
+    public void end(long total, long withHistory) {
+        flush();
+        LOGGER.info("\n=== ИТОГО ===");
+        LOGGER.info("Всего контактов: " + total);
+        LOGGER.info("С историей изменений: " + withHistory);
+        LOGGER.info("Без истории изменений: " + (total - withHistory));
+    }
+
+    private void flush() {
+        if (rowsInBlock > 0) {
+            LOGGER.info(block.toString());
+            block.setLength(0);
+            rowsInBlock = 0;
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
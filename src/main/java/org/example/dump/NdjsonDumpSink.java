@@ -0,0 +1,15 @@
+package org.example.dump;
+
+import java.nio.file.Path;
+
+public class NdjsonDumpSink extends FileDumpSink {
+
+    public NdjsonDumpSink(Path file, int blockSize, int blocks) {
+        super(file, blockSize, blocks);
+    }
+
+    @Override
+    protected void appendRow(StringBuilder out, DumpRow row) {
+        DumpRowFormatter.appendJsonRow(out, row);
+    }
+}
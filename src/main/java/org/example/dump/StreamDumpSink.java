@@ -0,0 +1,65 @@
+package org.example.dump;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+// Приемник, пишущий дамп в поток (ответ HTTP /dump) в формате text, csv или ndjson
+public class StreamDumpSink implements DumpSink {
+    private static final int FLUSH_CHARS = 64 * 1024;
+
+    private final String format;
+    private final Writer writer;
+    private final StringBuilder out = new StringBuilder(FLUSH_CHARS + 1024);
+
+    public StreamDumpSink(String format, OutputStream stream) {
+        if (!"text".equals(format) && !"csv".equals(format) && !"ndjson".equals(format)) {
+            throw new IllegalArgumentException("Неизвестный формат дампа: " + format);
+        }
+        this.format = format;
+        this.writer = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void begin() throws IOException {
+        if ("text".equals(format)) {
+            DumpRowFormatter.appendTableHeader(out);
+            out.append('\n');
+        } else if ("csv".equals(format)) {
+            out.append("id,name,phone,old_phone,change_time\n");
+        }
+    }
+
+    @Override
+    public void accept(DumpRow row) throws IOException {
+        switch (format) {
+            case "text" -> DumpRowFormatter.appendTableRow(out, row);
+            case "csv" -> DumpRowFormatter.appendCsvRow(out, row);
+            default -> DumpRowFormatter.appendJsonRow(out, row);
+        }
+        out.append('\n');
+        if (out.length() >= FLUSH_CHARS) {
+            writer.append(out);
+            out.setLength(0);
+        }
+    }
+
+    @Override
+    public void end(long total, long withHistory) throws IOException {
+        if ("text".equals(format)) {
+            out.append("Всего контактов: ").append(total).append('\n');
+            out.append("С историей изменений: ").append(withHistory).append('\n');
+            out.append("Без истории изменений: ").append(total - withHistory).append('\n');
+        }
+        writer.append(out);
+        out.setLength(0);
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
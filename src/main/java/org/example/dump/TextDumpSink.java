@@ -0,0 +1,28 @@
+package org.example.dump;
+
+import java.nio.file.Path;
+
+// Та же таблица, что выводит LoggerDumpSink, но в файл и без накладных расходов java.util.logging
+public class TextDumpSink extends FileDumpSink {
+
+    public TextDumpSink(Path file, int blockSize, int blocks) {
+        super(file, blockSize, blocks);
+    }
+
+    @Override
+    protected void appendHeader(StringBuilder out) {
+        DumpRowFormatter.appendTableHeader(out);
+    }
+
+    @Override
+    protected void appendRow(StringBuilder out, DumpRow row) {
+        DumpRowFormatter.appendTableRow(out, row);
+    }
+
+    @Override
+    protected void appendFooter(StringBuilder out, long total, long withHistory) {
+        out.append("Всего контактов: ").append(total).append('\n');
+        out.append("С историей изменений: ").append(withHistory).append('\n');
+        out.append("Без истории изменений: ").append(total - withHistory);
+    }
+}
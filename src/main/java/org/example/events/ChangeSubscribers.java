@@ -0,0 +1,26 @@
+package org.example.events;
+
+import org.example.config.AppConfig;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+public final class ChangeSubscribers {
+
+    private ChangeSubscribers() {
+    }
+
+    // Подписывает на шину подписчиков из списка events.subscribers (metrics, ndjson)
+    public static void subscribeAll(PhoneChangeBus bus, AppConfig config) throws IOException {
+        SlowConsumerPolicy policy = SlowConsumerPolicy.parse(config.getEventsSlowConsumer());
+        int batchSize = config.getEventsBatchSize();
+        for (String type : config.getEventSubscribers()) {
+            PhoneChangeListener listener = switch (type) {
+                case "metrics" -> new MetricsChangeListener();
+                case "ndjson" -> new NdjsonChangeExporter(Paths.get(config.getEventsExportFile()));
+                default -> throw new IllegalArgumentException("Неизвестный подписчик изменений: " + type);
+            };
+            bus.subscribe(type, listener, batchSize, policy);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package org.example.events;
+
+import org.example.metrics.Counter;
+import org.example.metrics.MetricsRegistry;
+
+import java.util.List;
+
+// Подписчик events.subscribers=metrics: смены телефонов в реальном времени без опроса журнала
+public final class MetricsChangeListener implements PhoneChangeListener {
+    private static final Counter CHANGES = MetricsRegistry.counter("events.changes");
+    private static final Counter UNKNOWN_OLD_PHONE = MetricsRegistry.counter("events.changes.unknownOldPhone");
+
+    @Override
+    public void onChanges(List<PhoneChange> changes) {
+        CHANGES.add(changes.size());
+        for (PhoneChange change : changes) {
+            if (change.getOldPhone() == null) {
+                UNKNOWN_OLD_PHONE.increment();
+            }
+        }
+    }
+}
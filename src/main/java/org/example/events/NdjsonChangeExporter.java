@@ -0,0 +1,54 @@
+package org.example.events;
+
+import org.example.dump.DumpRowFormatter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+// Подписчик events.subscribers=ndjson: дописывает каждую смену телефона строкой JSON в events.export.file
+public final class NdjsonChangeExporter implements PhoneChangeListener {
+    private final Writer writer;
+    private final StringBuilder out = new StringBuilder(16 * 1024);
+
+    public NdjsonChangeExporter(Path file) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) {
+            Files.createDirectories(dir);
+        }
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public void onChanges(List<PhoneChange> changes) throws IOException {
+        for (PhoneChange change : changes) {
+            out.append("{\"seq\":").append(change.getSequence());
+            out.append(",\"id\":").append(change.getContactId());
+            out.append(",\"old_phone\":");
+            DumpRowFormatter.appendJsonString(out, change.getOldPhone());
+            out.append(",\"new_phone\":");
+            DumpRowFormatter.appendJsonString(out, change.getNewPhone());
+            out.append(",\"change_time\":\"").append(change.changeTime()).append("\"}\n");
+        }
+        // Пачка уходит в файл целиком: внешний читатель не увидит оборванной строки дольше одной пачки
+        writer.append(out);
+        writer.flush();
+        out.setLength(0);
+    }
+
+    @Override
+    public void onDropped(long count) {
+        out.append("{\"dropped\":").append(count).append("}\n");
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.append(out);
+        writer.close();
+    }
+}
@@ -0,0 +1,51 @@
+package org.example.events;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/** Зафиксированная смена телефона. Неизменяема: одно событие разделяют все подписчики шины. */
+public final class PhoneChange {
+    final long sequence;
+    final long publishNanos;
+    private final int contactId;
+    private final String oldPhone;
+    private final String newPhone;
+    private final long changeMillis;
+
+    PhoneChange(long sequence, int contactId, String oldPhone, String newPhone, long changeMillis) {
+        this.sequence = sequence;
+        this.publishNanos = System.nanoTime();
+        this.contactId = contactId;
+        this.oldPhone = oldPhone;
+        this.newPhone = newPhone;
+        this.changeMillis = changeMillis;
+    }
+
+    // Сквозной номер события в шине; пропуски у подписчика означают потерянные события
+    public long getSequence() {
+        return sequence;
+    }
+
+    public int getContactId() {
+        return contactId;
+    }
+
+    // null, если прежний телефон не был известен при фиксации (подписка появилась во время записи)
+    public String getOldPhone() {
+        return oldPhone;
+    }
+
+    public String getNewPhone() {
+        return newPhone;
+    }
+
+    public long getChangeMillis() {
+        return changeMillis;
+    }
+
+    // Время в UTC с точностью до секунды — как CURRENT_TIMESTAMP в таблице журнала
+    public Timestamp changeTime() {
+        return Timestamp.valueOf(LocalDateTime.ofEpochSecond(changeMillis / 1000, 0, ZoneOffset.UTC));
+    }
+}
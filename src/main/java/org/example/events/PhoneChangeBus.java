@@ -0,0 +1,256 @@
+package org.example.events;
+
+import org.example.metrics.LatencyHistogram;
+import org.example.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Шина зафиксированных смен телефонов внутри процесса: публикуют команды записи при фиксации,
+ * читают подписчики, каждый своим потоком и своим курсором, без SQL и без блокировок.
+ * Кольцо фиксированного размера: производитель занимает номер события getAndIncrement
+ * и кладет событие в ячейку номер &amp; mask, подписчик идет по номерам подряд.
+ * Ячейка с номером больше ожидаемого значит, что подписчик отстал на целое кольцо; что тогда
+ * делать, решает его политика (SlowConsumerPolicy). Без подписчиков публикация ничего не стоит.
+ */
+public final class PhoneChangeBus implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(PhoneChangeBus.class.getName());
+    // Сон простаивающего подписчика; публикация будит его раньше
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final AtomicReferenceArray<PhoneChange> ring;
+    private final int capacity;
+    private final int mask;
+    // Номер следующего публикуемого события
+    private final AtomicLong tail = new AtomicLong();
+    // Копия при записи: публикация читает массив без блокировок
+    private volatile Subscription[] subscriptions = new Subscription[0];
+
+    public PhoneChangeBus(int capacity) {
+        this.capacity = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = this.capacity - 1;
+        this.ring = new AtomicReferenceArray<>(this.capacity);
+    }
+
+    public boolean hasSubscribers() {
+        return subscriptions.length > 0;
+    }
+
+    /**
+     * Публикует изменение; вызывается из любого числа потоков. Возвращает сразу,
+     * кроме подписчиков с политикой BLOCK, отставших на целое кольцо.
+     */
+    public void publish(int contactId, String oldPhone, String newPhone, long changeMillis) {
+        Subscription[] current = subscriptions;
+        if (current.length == 0) {
+            return;
+        }
+        long sequence = tail.getAndIncrement();
+        for (Subscription subscription : current) {
+            if (subscription.policy == SlowConsumerPolicy.BLOCK) {
+                subscription.awaitRoom(sequence);
+            }
+        }
+        PhoneChange change = new PhoneChange(sequence, contactId, oldPhone, newPhone, changeMillis);
+        int index = (int) sequence & mask;
+        PhoneChange previous;
+        do {
+            previous = ring.get(index);
+            // Пока этот производитель медлил, ячейку занял производитель следующего круга
+            if (previous != null && previous.sequence > sequence) {
+                return;
+            }
+        } while (!ring.compareAndSet(index, previous, change));
+        for (Subscription subscription : current) {
+            subscription.wake();
+        }
+    }
+
+    /** Подписка с этого момента: события, опубликованные раньше, подписчик не получит. */
+    public synchronized Subscription subscribe(String name, PhoneChangeListener listener, int batchSize,
+                                               SlowConsumerPolicy policy) {
+        Subscription subscription = new Subscription(name, listener, Math.max(1, batchSize), policy);
+        Subscription[] next = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+        next[next.length - 1] = subscription;
+        subscriptions = next;
+        subscription.thread.start();
+        LOGGER.info("Подписчик изменений " + name + ": пачки до " + subscription.batchSize + ", политика " + policy);
+        return subscription;
+    }
+
+    /** Доставляет подписчикам уже опубликованные события и останавливает их потоки. */
+    @Override
+    public void close() {
+        Subscription[] current;
+        synchronized (this) {
+            current = subscriptions;
+            subscriptions = new Subscription[0];
+        }
+        for (Subscription subscription : current) {
+            subscription.close();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getPublished() {
+        return tail.get();
+    }
+
+    /** Курсор одного подписчика и поток, доставляющий ему события пачками. */
+    public final class Subscription {
+        private final String name;
+        private final PhoneChangeListener listener;
+        private final int batchSize;
+        private final SlowConsumerPolicy policy;
+        private final Thread thread;
+        // мкс от публикации самого старого события пачки до передачи пачки подписчику
+        private final LatencyHistogram delivery = new LatencyHistogram();
+        // Номер следующего события; меняет только поток подписки
+        private volatile long cursor;
+        private volatile long delivered;
+        private volatile long dropped;
+        private volatile long failed;
+        private volatile boolean parked;
+        private volatile boolean closed;
+
+        private Subscription(String name, PhoneChangeListener listener, int batchSize, SlowConsumerPolicy policy) {
+            this.name = name;
+            this.listener = listener;
+            this.batchSize = batchSize;
+            this.policy = policy;
+            this.cursor = tail.get();
+            this.thread = new Thread(this::run, "events-" + name);
+            this.thread.setDaemon(true);
+            String prefix = "events." + name;
+            MetricsRegistry.register(prefix + ".delivery", delivery);
+            MetricsRegistry.gauge(prefix + ".delivered", () -> delivered);
+            MetricsRegistry.gauge(prefix + ".dropped", () -> dropped);
+            MetricsRegistry.gauge(prefix + ".lag", this::getLag);
+        }
+
+        private void run() {
+            List<PhoneChange> batch = new ArrayList<>(batchSize);
+            while (true) {
+                // Флаг читается до выборки: пустая выборка после закрытия значит, что все доставлено
+                boolean stopping = closed;
+                poll(batch);
+                if (!batch.isEmpty()) {
+                    deliver(batch);
+                    batch.clear();
+                    continue;
+                }
+                if (stopping) {
+                    return;
+                }
+                parked = true;
+                if (!hasNext()) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                parked = false;
+            }
+        }
+
+        private void poll(List<PhoneChange> batch) {
+            long next = cursor;
+            while (batch.size() < batchSize) {
+                PhoneChange change = ring.get((int) next & mask);
+                if (change == null || change.sequence < next) {
+                    // Событие с этим номером еще публикуется
+                    break;
+                }
+                if (change.sequence > next) {
+                    long oldest = Math.max(next + 1, tail.get() - capacity);
+                    skip(oldest - next);
+                    next = oldest;
+                    continue;
+                }
+                batch.add(change);
+                next++;
+            }
+            cursor = next;
+        }
+
+        private boolean hasNext() {
+            PhoneChange change = ring.get((int) cursor & mask);
+            return change != null && change.sequence >= cursor;
+        }
+
+        private void skip(long count) {
+            dropped += count;
+            try {
+                listener.onDropped(count);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Ошибка подписчика изменений " + name, e);
+            }
+        }
+
+        private void deliver(List<PhoneChange> batch) {
+            delivery.recordSince(batch.get(0).publishNanos);
+            try {
+                listener.onChanges(batch);
+            } catch (IOException | RuntimeException e) {
+                if (failed == 0) {
+                    LOGGER.log(Level.SEVERE, "Ошибка подписчика изменений " + name + ", пачка пропущена", e);
+                }
+                failed += batch.size();
+            }
+            delivered += batch.size();
+        }
+
+        // Только для политики BLOCK: производитель ждет, пока ячейка события освободится
+        private void awaitRoom(long sequence) {
+            while (sequence - cursor >= capacity && !closed && thread.isAlive()) {
+                wake();
+                LockSupport.parkNanos(BLOCK_PARK_NANOS);
+            }
+        }
+
+        private void wake() {
+            if (parked) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        private void close() {
+            closed = true;
+            LockSupport.unpark(thread);
+            boolean interrupted = false;
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            try {
+                listener.close();
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Ошибка закрытия подписчика изменений " + name, e);
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            LOGGER.info(String.format("Подписчик изменений %s остановлен: доставлено %d, пропущено %d, ошибок %d",
+                    name, delivered, dropped, failed));
+        }
+
+        public String getName() { return name; }
+        public long getDelivered() { return delivered; }
+        public long getDropped() { return dropped; }
+        public long getFailed() { return failed; }
+        public long getLag() { return Math.max(0, tail.get() - cursor); }
+    }
+}
@@ -0,0 +1,21 @@
+package org.example.events;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Подписчик шины изменений. Вызывается только потоком своей подписки, пачками
+ * до events.batch.size событий в порядке номеров; события можно сохранять после вызова.
+ */
+public interface PhoneChangeListener {
+
+    void onChanges(List<PhoneChange> changes) throws IOException;
+
+    // Подписчик отстал больше чем на емкость кольца, count самых старых событий пропущено
+    default void onDropped(long count) {
+    }
+
+    // После доставки всех событий, опубликованных до закрытия шины
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,17 @@
+package org.example.events;
+
+// Что делать, когда подписчик отстал от публикации на целое кольцо
+public enum SlowConsumerPolicy {
+    // Подписчик пропускает самые старые события; публикация не ждет
+    DROP,
+    // Публикация ждет подписчика; вместе с ней ждет фиксация групп писателя БД
+    BLOCK;
+
+    public static SlowConsumerPolicy parse(String value) {
+        return switch (value.trim().toLowerCase()) {
+            case "drop" -> DROP;
+            case "block" -> BLOCK;
+            default -> throw new IllegalArgumentException("Неизвестная политика отстающего подписчика: " + value);
+        };
+    }
+}
@@ -0,0 +1,84 @@
+package org.example.history;
+
+import org.example.util.PhoneNumbers;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/** Прочитанная запись истории; переиспользуется между вызовами хранилища. */
+public final class HistoryEntry {
+    // Телефон в записи — long: упакованный "ddd-ddddd" (>= 0) или текст до TEXT_LENGTH символов ASCII
+    // по 7 бит на символ со знаковым битом как признаком; UNKNOWN — телефон не поместился
+    static final long UNKNOWN = -1L;
+    private static final int TEXT_LENGTH = 9;
+    private static final int CHAR_BITS = 7;
+
+    private long sequence;
+    private long phone;
+    private long changeMillis;
+
+    void set(long sequence, long phone, long changeMillis) {
+        this.sequence = sequence;
+        this.phone = phone;
+        this.changeMillis = changeMillis;
+    }
+
+    // Код записи для телефона или UNKNOWN, если он длиннее TEXT_LENGTH или не в ASCII
+    static long encode(String phone) {
+        int packed = PhoneNumbers.pack(phone);
+        if (packed != PhoneNumbers.NOT_PACKED) {
+            return packed;
+        }
+        if (phone == null || phone.length() > TEXT_LENGTH) {
+            return UNKNOWN;
+        }
+        long code = Long.MIN_VALUE;
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            // 0 завершает текст, 127 запрещен, чтобы код не совпал с UNKNOWN
+            if (c == 0 || c >= 127) {
+                return UNKNOWN;
+            }
+            code |= (long) c << (TEXT_LENGTH - 1 - i) * CHAR_BITS;
+        }
+        return code;
+    }
+
+    private static String decode(long code) {
+        if (code >= 0) {
+            return PhoneNumbers.format((int) code);
+        }
+        if (code == UNKNOWN) {
+            return null;
+        }
+        StringBuilder text = new StringBuilder(TEXT_LENGTH);
+        for (int i = 0; i < TEXT_LENGTH; i++) {
+            char c = (char) (code >>> (TEXT_LENGTH - 1 - i) * CHAR_BITS & 0x7F);
+            if (c == 0) {
+                break;
+            }
+            text.append(c);
+        }
+        return text.toString();
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    // NOT_PACKED, если телефон не был в формате "ddd-ddddd"
+    public int getPhoneCode() {
+        return phone >= 0 ? (int) phone : PhoneNumbers.NOT_PACKED;
+    }
+
+    // null, если телефон не поместился в запись (об этом пишется предупреждение при добавлении)
+    public String oldPhone() {
+        return decode(phone);
+    }
+
+    // Время в UTC с точностью до секунды — как CURRENT_TIMESTAMP в таблице журнала
+    public Timestamp changeTime() {
+        return Timestamp.valueOf(LocalDateTime.ofEpochSecond(changeMillis / 1000, 0, ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,296 @@
+package org.example.history;
+
+import org.example.cache.IntIntHashMap;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * История телефонов в отображенном в память файле: заголовок и кольцо записей фиксированной длины.
+ * Запись: штамп (номер последовательности + 1, 0 — пусто), номер предыдущей записи того же контакта,
+ * время в мс, ID контакта, старый телефон (long, см. HistoryEntry.encode).
+ * Штамп пишется последним, а номер следующей записи в заголовке — после записи, поэтому после
+ * аварийного завершения процесса открытие дочитывает записи со штампом за пределами заголовка
+ * и отбрасывает недописанные. Индекс ID -> последняя запись строится заново при открытии.
+ */
+public final class MappedPhoneHistoryStore implements PhoneHistoryStore {
+    private static final Logger LOGGER = Logger.getLogger(MappedPhoneHistoryStore.class.getName());
+
+    private static final int MAGIC = 0x50485354;   // "PHST"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_SIZE = 40;
+
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_CAPACITY = 8;
+    private static final int H_RECORD_SIZE = 12;
+    private static final int H_NEXT_SEQUENCE = 16;
+
+    private static final int R_STAMP = 0;
+    private static final int R_PREVIOUS = 8;
+    private static final int R_MILLIS = 16;
+    private static final int R_CONTACT = 24;
+    private static final int R_PHONE = 32;
+
+    private final Path file;
+    private final int capacity;
+    private final long retentionMillis;
+    // ID контакта -> ячейка кольца с его последней записью
+    private final IntIntHashMap latestSlots = new IntIntHashMap(1024);
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long nextSequence;
+    private boolean overflowReported = false;
+    private boolean unknownPhoneReported = false;
+    // Таблицу контактов очистили до открытия файла (перегенерация данных при запуске)
+    private boolean clearOnOpen = false;
+
+    public MappedPhoneHistoryStore(Path file, int capacity, int retentionSeconds) {
+        this.file = file;
+        this.capacity = capacity;
+        this.retentionMillis = retentionSeconds * 1000L;
+    }
+
+    @Override
+    public synchronized void open() throws IOException {
+        channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long existingSize = channel.size();
+        long size = HEADER_SIZE + (long) capacity * RECORD_SIZE;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+        if (existingSize == 0) {
+            format();
+        } else if (!headerMatches()) {
+            LOGGER.warning("Формат файла истории " + file + " не совпадает с настройками, история сброшена");
+            format();
+            channel.truncate(size);
+        } else {
+            recover();
+            if (clearOnOpen) {
+                clear();
+            }
+        }
+        clearOnOpen = false;
+    }
+
+    private boolean headerMatches() {
+        return buffer.getInt(H_MAGIC) == MAGIC
+                && buffer.getInt(H_VERSION) == VERSION
+                && buffer.getInt(H_CAPACITY) == capacity
+                && buffer.getInt(H_RECORD_SIZE) == RECORD_SIZE;
+    }
+
+    private void format() {
+        for (int i = 0; i < capacity; i++) {
+            buffer.putLong(offset(i) + R_STAMP, 0);
+        }
+        buffer.putInt(H_MAGIC, MAGIC);
+        buffer.putInt(H_VERSION, VERSION);
+        buffer.putInt(H_CAPACITY, capacity);
+        buffer.putInt(H_RECORD_SIZE, RECORD_SIZE);
+        buffer.putLong(H_NEXT_SEQUENCE, 0);
+        nextSequence = 0;
+        latestSlots.clear();
+    }
+
+    private void recover() {
+        long sequence = buffer.getLong(H_NEXT_SEQUENCE);
+        long recovered = 0;
+        // Записи, дописанные до сбоя, но не отраженные в заголовке
+        while (recovered < capacity && stampAt(slot(sequence)) == sequence + 1) {
+            sequence++;
+            recovered++;
+        }
+        nextSequence = sequence;
+        buffer.putLong(H_NEXT_SEQUENCE, nextSequence);
+
+        latestSlots.clear();
+        int records = 0;
+        for (long s = Math.max(0, nextSequence - capacity); s < nextSequence; s++) {
+            int slot = slot(s);
+            if (stampAt(slot) == s + 1) {
+                latestSlots.put(buffer.getInt(offset(slot) + R_CONTACT), slot);
+                records++;
+            }
+        }
+        LOGGER.info(String.format("История телефонов восстановлена из %s: записей %d, последовательность %d%s",
+                file, records, nextSequence, recovered > 0 ? ", дочитано после сбоя: " + recovered : ""));
+    }
+
+    @Override
+    public synchronized void append(int contactId, String oldPhone, long changeMillis) {
+        long sequence = nextSequence;
+        int slot = slot(sequence);
+        int base = offset(slot);
+
+        int previousSlot = latestSlots.get(contactId);
+        long previousSequence = previousSlot == IntIntHashMap.MISSING || previousSlot == slot
+                ? -1 : stampAt(previousSlot) - 1;
+
+        // Вытесняемая запись больше не последняя для своего контакта
+        if (buffer.getLong(base + R_STAMP) != 0) {
+            int evictedContact = buffer.getInt(base + R_CONTACT);
+            if (latestSlots.get(evictedContact) == slot) {
+                latestSlots.remove(evictedContact);
+            }
+            if (!overflowReported && changeMillis - buffer.getLong(base + R_MILLIS) < retentionMillis) {
+                overflowReported = true;
+                LOGGER.warning("Кольцо истории (" + capacity + " записей) перезаписывает изменения "
+                        + "моложе срока хранения; увеличьте history.mmap.changes.per.second");
+            }
+        }
+
+        buffer.putLong(base + R_STAMP, 0);
+        buffer.putLong(base + R_PREVIOUS, previousSequence);
+        buffer.putLong(base + R_MILLIS, changeMillis);
+        buffer.putInt(base + R_CONTACT, contactId);
+        long phone = HistoryEntry.encode(oldPhone);
+        if (phone == HistoryEntry.UNKNOWN && !unknownPhoneReported) {
+            unknownPhoneReported = true;
+            LOGGER.warning("Старый телефон \"" + oldPhone + "\" контакта " + contactId + " длиннее 9 символов "
+                    + "или не в ASCII и в историю не записан (изменение учтено без старого телефона); "
+                    + "для таких данных используйте history.store=sqlite");
+        }
+        buffer.putLong(base + R_PHONE, phone);
+        buffer.putLong(base + R_STAMP, sequence + 1);
+
+        nextSequence = sequence + 1;
+        buffer.putLong(H_NEXT_SEQUENCE, nextSequence);
+        latestSlots.put(contactId, slot);
+    }
+
+    @Override
+    public synchronized void clear() {
+        if (channel == null) {
+            clearOnOpen = true;
+            return;
+        }
+        for (int i = 0; i < capacity; i++) {
+            buffer.putLong(offset(i) + R_STAMP, 0);
+        }
+        latestSlots.clear();
+    }
+
+    @Override
+    public synchronized long lastSequence() {
+        return nextSequence;
+    }
+
+    @Override
+    public synchronized boolean latest(int contactId, long sinceMillis, long upToSequence, HistoryEntry entry) {
+        long sequence = findAtOrBefore(contactId, upToSequence);
+        if (sequence < 0) {
+            return false;
+        }
+        int base = offset(slot(sequence));
+        long millis = buffer.getLong(base + R_MILLIS);
+        if (millis < sinceMillis) {
+            return false;
+        }
+        entry.set(sequence + 1, buffer.getLong(base + R_PHONE), millis);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean latestInRange(int contactId, long afterSequence, long upToSequence,
+                                              HistoryEntry entry) {
+        long sequence = findAtOrBefore(contactId, upToSequence);
+        // Номера записей в API начинаются с 1, внутри — с 0
+        if (sequence < 0 || sequence + 1 <= afterSequence) {
+            return false;
+        }
+        int base = offset(slot(sequence));
+        entry.set(sequence + 1, buffer.getLong(base + R_PHONE), buffer.getLong(base + R_MILLIS));
+        return true;
+    }
+
+    @Override
+    public synchronized int[] changedContacts(long afterSequence, long upToSequence) {
+        long oldest = Math.max(0, nextSequence - capacity);
+        if (afterSequence < oldest) {
+            LOGGER.warning(String.format("Часть изменений (%d-%d) уже вытеснена из кольца истории",
+                    afterSequence + 1, oldest));
+        }
+        long to = Math.min(upToSequence, nextSequence);
+        IntIntHashMap seen = new IntIntHashMap(64);
+        int[] ids = new int[16];
+        int count = 0;
+        for (long s = Math.max(afterSequence, oldest); s < to; s++) {
+            int slot = slot(s);
+            if (stampAt(slot) != s + 1) {
+                continue;
+            }
+            int contactId = buffer.getInt(offset(slot) + R_CONTACT);
+            if (seen.get(contactId) == IntIntHashMap.MISSING) {
+                seen.put(contactId, slot);
+                if (count == ids.length) {
+                    ids = Arrays.copyOf(ids, count * 2);
+                }
+                ids[count++] = contactId;
+            }
+        }
+        int[] result = Arrays.copyOf(ids, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    // Номер (с 0) последней записи контакта не позже upToSequence; идет назад по цепочке записей контакта
+    private long findAtOrBefore(int contactId, long upToSequence) {
+        int slot = latestSlots.get(contactId);
+        if (slot == IntIntHashMap.MISSING) {
+            return -1;
+        }
+        long sequence = stampAt(slot) - 1;
+        while (sequence >= upToSequence) {
+            sequence = buffer.getLong(offset(slot(sequence)) + R_PREVIOUS);
+            if (!isLive(sequence, contactId)) {
+                return -1;
+            }
+        }
+        return sequence;
+    }
+
+    private boolean isLive(long sequence, int contactId) {
+        if (sequence < 0 || sequence < nextSequence - capacity) {
+            return false;
+        }
+        int slot = slot(sequence);
+        return stampAt(slot) == sequence + 1 && buffer.getInt(offset(slot) + R_CONTACT) == contactId;
+    }
+
+    private long stampAt(int slot) {
+        return buffer.getLong(offset(slot) + R_STAMP);
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence % capacity);
+    }
+
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    @Override
+    public String describe() {
+        return "mmap " + file + " (" + capacity + " записей по " + RECORD_SIZE + " байт)";
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        buffer.force();
+        channel.close();
+        channel = null;
+        LOGGER.info("Файл истории телефонов закрыт: " + file);
+    }
+}
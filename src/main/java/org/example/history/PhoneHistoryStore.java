@@ -0,0 +1,34 @@
+package org.example.history;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Внешнее хранилище истории смены телефонов — альтернатива триггеру SQLite и таблице журнала.
+ * Каждой записи присваивается возрастающий номер последовательности; он же служит
+ * watermark для дельта-дампов вместо log_id.
+ */
+public interface PhoneHistoryStore extends Closeable {
+
+    // Открывает хранилище, восстанавливая ранее записанную историю
+    void open() throws IOException;
+
+    void append(int contactId, String oldPhone, long changeMillis);
+
+    // Удаляет всю историю; номера последовательности продолжают расти
+    void clear();
+
+    // Номер последней записи; 0 — записей еще не было
+    long lastSequence();
+
+    /** Последняя смена телефона контакта с номером не больше upToSequence и не раньше sinceMillis. */
+    boolean latest(int contactId, long sinceMillis, long upToSequence, HistoryEntry entry);
+
+    /** Последняя смена телефона контакта с номером в диапазоне (afterSequence, upToSequence]. */
+    boolean latestInRange(int contactId, long afterSequence, long upToSequence, HistoryEntry entry);
+
+    /** ID контактов с изменениями в диапазоне (afterSequence, upToSequence], по возрастанию. */
+    int[] changedContacts(long afterSequence, long upToSequence);
+
+    String describe();
+}
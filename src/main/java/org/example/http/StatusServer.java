@@ -0,0 +1,247 @@
+package org.example.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.example.config.AppConfig;
+import org.example.dao.WriteCoordinator;
+import org.example.dump.BinarySnapshotSink;
+import org.example.dump.DumpKind;
+import org.example.dump.DumpSink;
+import org.example.dump.StreamDumpSink;
+import org.example.metrics.Counter;
+import org.example.metrics.Gauge;
+import org.example.metrics.LatencyHistogram;
+import org.example.metrics.MetricsRegistry;
+import org.example.scheduler.DatabaseDumper;
+import org.example.scheduler.SchedulerManager;
+import org.example.scheduler.TaskEngine;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Встроенный HTTP-сервер на com.sun.net.httpserver для операторов:
+ * /metrics — MetricsRegistry в текстовом формате Prometheus,
+ * /status — состояние планировщика, писателя БД и текущая конфигурация,
+ * /dump?format=text|csv|ndjson|binary — полный дамп потоком в ответ (binary — снимок BinarySnapshotSink).
+ * Запросы обслуживает собственный пул http.threads потоков, потоки планировщика не задействуются.
+ */
+public final class StatusServer implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(StatusServer.class.getName());
+    private static final String PREFIX = "integrator_";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AppConfig config;
+    private final SchedulerManager schedulerManager;
+    private final WriteCoordinator writer;
+    // Дамп по запросу держит соединение чтения все время выгрузки, поэтому одновременно только один
+    private final Semaphore dumpPermit = new Semaphore(1);
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private StatusServer(HttpServer server, ExecutorService executor, AppConfig config,
+                         SchedulerManager schedulerManager, WriteCoordinator writer) {
+        this.server = server;
+        this.executor = executor;
+        this.config = config;
+        this.schedulerManager = schedulerManager;
+        this.writer = writer;
+    }
+
+    public static StatusServer start(AppConfig config, SchedulerManager schedulerManager,
+                                     WriteCoordinator writer) throws IOException {
+        HttpServer server = HttpServer.create(
+                new InetSocketAddress(config.getHttpBindAddress(), config.getHttpPort()), 0);
+        int threads = Math.max(1, config.getHttpThreads());
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), task -> {
+                    Thread thread = new Thread(task, "http-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        StatusServer status = new StatusServer(server, executor, config, schedulerManager, writer);
+        server.createContext("/metrics", status.handler(status::metrics));
+        server.createContext("/status", status.handler(status::status));
+        server.createContext("/dump", status.handler(status::dump));
+        server.setExecutor(executor);
+        server.start();
+        LOGGER.info("HTTP-сервер запущен: http://" + config.getHttpBindAddress() + ":"
+                + server.getAddress().getPort() + " (/metrics, /status, /dump)");
+        return status;
+    }
+
+    private HttpHandler handler(HttpHandler body) {
+        return exchange -> {
+            try (exchange) {
+                String method = exchange.getRequestMethod();
+                if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                    exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                    send(exchange, 405, "text/plain; charset=utf-8", "Метод не поддерживается\n");
+                    return;
+                }
+                body.handle(exchange);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Ошибка обработки HTTP-запроса " + exchange.getRequestURI(), e);
+            }
+        };
+    }
+
+    private void metrics(HttpExchange exchange) throws IOException {
+        StringBuilder out = new StringBuilder(8192);
+        for (Map.Entry<String, LatencyHistogram> entry : MetricsRegistry.timers().entrySet()) {
+            String name = metricName(entry.getKey());
+            LatencyHistogram timer = entry.getValue();
+            out.append("# TYPE ").append(name).append(" summary\n");
+            for (double quantile : QUANTILES) {
+                out.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+                        .append(timer.percentile(quantile)).append('\n');
+            }
+            out.append(name).append("_sum ").append(timer.getSum()).append('\n');
+            out.append(name).append("_count ").append(timer.getCount()).append('\n');
+        }
+        for (Map.Entry<String, Counter> entry : MetricsRegistry.counters().entrySet()) {
+            String name = metricName(entry.getKey()) + "_total";
+            out.append("# TYPE ").append(name).append(" counter\n");
+            out.append(name).append(' ').append(entry.getValue().getCount()).append('\n');
+        }
+        for (Map.Entry<String, Gauge> entry : MetricsRegistry.gauges().entrySet()) {
+            String name = metricName(entry.getKey());
+            out.append("# TYPE ").append(name).append(" gauge\n");
+            out.append(name).append(' ').append(entry.getValue().getValue()).append('\n');
+        }
+        send(exchange, 200, "text/plain; version=0.0.4; charset=utf-8", out.toString());
+    }
+
+    // "dao.getCount" -> "integrator_dao_getCount"; таймеры в мкс, гистограммы писателя — в строках и командах
+    static String metricName(String name) {
+        StringBuilder out = new StringBuilder(PREFIX.length() + name.length()).append(PREFIX);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            out.append(Character.isLetterOrDigit(c) && c < 128 ? c : '_');
+        }
+        return out.toString();
+    }
+
+    private void status(HttpExchange exchange) throws IOException {
+        TaskEngine engine = schedulerManager.getTaskEngine();
+        DatabaseDumper dumper = schedulerManager.getDatabaseDumper();
+        String text = "Состояние: " + (schedulerManager.isRunning() ? "работает" : "остановлено") + "\n" +
+                "Время работы: " + ManagementFactory.getRuntimeMXBean().getUptime() / 1000 + " с\n" +
+                "Планировщик: " + engine.getDescription() + (engine.isShutdown() ? ", остановлен" : "") + "\n" +
+                "Задержка запуска задач, мкс: " + engine.getSchedulingLag().summary() + "\n" +
+                "Пропущено тиков: " + engine.getOverruns() + "\n" +
+                "Дампов по таймеру: " + (dumper != null ? dumper.getDumpCount() : 0) + "\n" +
+                "Очередь записи: " + writer.getQueueSize() + "/" + writer.getQueueCapacity() +
+                ", коммитов " + writer.getCommits() + ", ошибок команд " + writer.getFailedCommands() + "\n" +
+                "\nКонфигурация:\n" + config.describe();
+        send(exchange, 200, "text/plain; charset=utf-8", text);
+    }
+
+    private void dump(HttpExchange exchange) throws IOException {
+        DatabaseDumper dumper = schedulerManager.getDatabaseDumper();
+        String format = query(exchange).getOrDefault("format", "text");
+        if (!"text".equals(format) && !"csv".equals(format) && !"ndjson".equals(format) && !"binary".equals(format)) {
+            send(exchange, 400, "text/plain; charset=utf-8", "Формат: text, csv, ndjson или binary\n");
+            return;
+        }
+        if (dumper == null || !schedulerManager.isRunning()) {
+            send(exchange, 503, "text/plain; charset=utf-8", "Планировщик не запущен\n");
+            return;
+        }
+        if (!dumpPermit.tryAcquire()) {
+            send(exchange, 503, "text/plain; charset=utf-8", "Дамп уже выполняется\n");
+            return;
+        }
+        try {
+            exchange.getResponseHeaders().set("Content-Type", contentType(format));
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            // Длина заранее неизвестна: ответ идет chunked по мере выгрузки строк
+            exchange.sendResponseHeaders(200, 0);
+            DumpSink sink = "binary".equals(format)
+                    ? new BinarySnapshotSink(Channels.newChannel(exchange.getResponseBody()), DumpKind.FULL,
+                            config.getDumpBinaryBlockRows(), config.isDumpBinaryCompressed())
+                    : new StreamDumpSink(format, exchange.getResponseBody());
+            List<DumpSink> sinks = List.of(sink);
+            dumper.dumpOnDemand(sinks);
+        } catch (SQLException e) {
+            // Заголовки уже отправлены: клиент увидит оборванный ответ
+            LOGGER.log(Level.SEVERE, "Ошибка дампа по запросу", e);
+        } finally {
+            dumpPermit.release();
+        }
+    }
+
+    private static String contentType(String format) {
+        return switch (format) {
+            case "csv" -> "text/csv; charset=utf-8";
+            case "ndjson" -> "application/x-ndjson; charset=utf-8";
+            case "binary" -> "application/octet-stream";
+            default -> "text/plain; charset=utf-8";
+        };
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null) {
+            return params;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(pair.substring(0, eq), pair.substring(eq + 1));
+            }
+        }
+        return params;
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        server.stop(0);
+        executor.shutdownNow();
+        LOGGER.info("HTTP-сервер остановлен");
+    }
+}
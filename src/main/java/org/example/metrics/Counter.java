@@ -0,0 +1,21 @@
+package org.example.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** Монотонный счетчик на LongAdder: запись из многих потоков без общей точки конкуренции. */
+public final class Counter implements CounterMBean {
+    private final LongAdder value = new LongAdder();
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long delta) {
+        value.add(delta);
+    }
+
+    @Override
+    public long getCount() {
+        return value.sum();
+    }
+}
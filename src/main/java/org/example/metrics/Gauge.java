@@ -0,0 +1,17 @@
+package org.example.metrics;
+
+import java.util.function.LongSupplier;
+
+/** Мгновенное значение (глубина очереди, размер пула), вычисляемое при чтении. */
+public final class Gauge implements GaugeMBean {
+    private final LongSupplier supplier;
+
+    public Gauge(LongSupplier supplier) {
+        this.supplier = supplier;
+    }
+
+    @Override
+    public long getValue() {
+        return supplier.getAsLong();
+    }
+}
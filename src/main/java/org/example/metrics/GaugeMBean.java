@@ -0,0 +1,5 @@
+package org.example.metrics;
+
+public interface GaugeMBean {
+    long getValue();
+}
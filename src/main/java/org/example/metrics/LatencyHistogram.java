@@ -0,0 +1,162 @@
+package org.example.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Лог-линейная гистограмма неотрицательных значений (задержек в мкс и т.п.).
+ * Каждая степень двойки делится на 16 корзин, поэтому погрешность перцентилей не больше ~6%.
+ * Запись без блокировок, память фиксирована (~8 КБ).
+ */
+public final class LatencyHistogram implements LatencyHistogramMBean {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(indexOf(value));
+        count.increment();
+        sum.add(value);
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // Верхняя граница значений корзины
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - SUB_BITS);
+        long upper = lower + (1L << (exponent - SUB_BITS)) - 1;
+        return upper < 0 ? Long.MAX_VALUE : upper;
+    }
+
+    // Для таймеров: мкс от момента System.nanoTime(), взятого в начале операции
+    public void recordSince(long startNanos) {
+        record((System.nanoTime() - startNanos) / 1000);
+    }
+
+    @Override
+    public long getCount() { return count.sum(); }
+    public long getSum() { return sum.sum(); }
+    @Override
+    public long getMax() { return max.get(); }
+    @Override
+    public long getP50() { return percentile(0.50); }
+    @Override
+    public long getP90() { return percentile(0.90); }
+    @Override
+    public long getP99() { return percentile(0.99); }
+    @Override
+    public long getP999() { return percentile(0.999); }
+
+    @Override
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    // Значение, не превышаемое долей quantile (0..1) записей; 0, если записей нет
+    public long percentile(double quantile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /** Окно по записям с предыдущего advance(): для регуляторов, которым нужен недавний p99, а не накопленный. */
+    public Interval interval() {
+        return new Interval();
+    }
+
+    public final class Interval {
+        private final long[] previous = new long[BUCKETS];
+        private final long[] current = new long[BUCKETS];
+        private long total;
+
+        private Interval() {
+            for (int i = 0; i < BUCKETS; i++) {
+                previous[i] = counts.get(i);
+            }
+        }
+
+        // Переносит границу окна на текущий момент; перцентили считаются по записям между границами
+        public void advance() {
+            total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                long value = counts.get(i);
+                // После reset() счетчики меньше прежних: окно начинается заново
+                current[i] = Math.max(0, value - previous[i]);
+                previous[i] = value;
+                total += current[i];
+            }
+        }
+
+        public long getCount() {
+            return total;
+        }
+
+        public long percentile(double quantile) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += current[i];
+                if (seen >= rank) {
+                    return upperBound(i);
+                }
+            }
+            return upperBound(BUCKETS - 1);
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    public String summary() {
+        return String.format("n=%d, mean=%.1f, p50=%d, p90=%d, p99=%d, max=%d",
+                getCount(), getMean(), percentile(0.50), percentile(0.90), percentile(0.99), getMax());
+    }
+}
@@ -0,0 +1,12 @@
+package org.example.metrics;
+
+/** JMX-представление гистограммы: значения в единицах записи (для таймеров — мкс). */
+public interface LatencyHistogramMBean {
+    long getCount();
+    double getMean();
+    long getMax();
+    long getP50();
+    long getP90();
+    long getP99();
+    long getP999();
+}
@@ -0,0 +1,121 @@
+package org.example.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Реестр метрик процесса: таймеры (LatencyHistogram, мкс), счетчики и датчики по именам вида "dao.getCount".
+ * Вызывающий код получает метрику один раз (обычно в static final поле), поэтому на горячем пути
+ * остаются только System.nanoTime() и запись без блокировок. При включенном JMX каждая метрика
+ * публикуется MBean-ом org.example:type=Timer|Counter|Gauge,name=&lt;имя&gt;.
+ */
+public final class MetricsRegistry {
+    private static final Logger LOGGER = Logger.getLogger(MetricsRegistry.class.getName());
+    private static final String DOMAIN = "org.example";
+
+    private static final ConcurrentMap<String, LatencyHistogram> TIMERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Counter> COUNTERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Gauge> GAUGES = new ConcurrentHashMap<>();
+    private static volatile boolean jmxEnabled = false;
+
+    private MetricsRegistry() {
+    }
+
+    public static LatencyHistogram timer(String name) {
+        return TIMERS.computeIfAbsent(name, key -> publish("Timer", key, new LatencyHistogram()));
+    }
+
+    public static Counter counter(String name) {
+        return COUNTERS.computeIfAbsent(name, key -> publish("Counter", key, new Counter()));
+    }
+
+    // Гистограмма, которой владеет компонент (планировщик, писатель БД); заменяет прежнюю с тем же именем
+    public static void register(String name, LatencyHistogram histogram) {
+        TIMERS.put(name, publish("Timer", name, histogram));
+    }
+
+    public static void gauge(String name, LongSupplier supplier) {
+        GAUGES.put(name, publish("Gauge", name, new Gauge(supplier)));
+    }
+
+    public static SortedMap<String, LatencyHistogram> timers() {
+        return Collections.unmodifiableSortedMap(new TreeMap<>(TIMERS));
+    }
+
+    public static SortedMap<String, Counter> counters() {
+        return Collections.unmodifiableSortedMap(new TreeMap<>(COUNTERS));
+    }
+
+    public static SortedMap<String, Gauge> gauges() {
+        return Collections.unmodifiableSortedMap(new TreeMap<>(GAUGES));
+    }
+
+    /** Публикует в JMX уже созданные и все последующие метрики. */
+    public static synchronized void enableJmx() {
+        if (jmxEnabled) {
+            return;
+        }
+        jmxEnabled = true;
+        TIMERS.forEach((name, timer) -> publish("Timer", name, timer));
+        COUNTERS.forEach((name, counter) -> publish("Counter", name, counter));
+        GAUGES.forEach((name, gauge) -> publish("Gauge", name, gauge));
+        LOGGER.info("Метрики опубликованы в JMX: " + DOMAIN + ":type=Timer|Counter|Gauge");
+    }
+
+    private static <T> T publish(String type, String name, T metric) {
+        if (!jmxEnabled) {
+            return metric;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(metric, objectName);
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Не удалось опубликовать метрику " + name + " в JMX", e);
+        }
+        return metric;
+    }
+
+    /** Одна строка по всем метрикам с данными: таймеры n/p50/p99/max в мкс, счетчики и датчики значением. */
+    public static String summary() {
+        StringBuilder line = new StringBuilder(1024);
+        for (Map.Entry<String, LatencyHistogram> entry : timers().entrySet()) {
+            LatencyHistogram timer = entry.getValue();
+            if (timer.getCount() == 0) {
+                continue;
+            }
+            separate(line).append(entry.getKey())
+                    .append(" n=").append(timer.getCount())
+                    .append(" p50=").append(timer.getP50())
+                    .append(" p99=").append(timer.getP99())
+                    .append(" max=").append(timer.getMax());
+        }
+        for (Map.Entry<String, Counter> entry : counters().entrySet()) {
+            if (entry.getValue().getCount() != 0) {
+                separate(line).append(entry.getKey()).append('=').append(entry.getValue().getCount());
+            }
+        }
+        for (Map.Entry<String, Gauge> entry : gauges().entrySet()) {
+            separate(line).append(entry.getKey()).append('=').append(entry.getValue().getValue());
+        }
+        return line.length() == 0 ? "нет данных" : line.toString();
+    }
+
+    private static StringBuilder separate(StringBuilder line) {
+        return line.length() == 0 ? line : line.append("; ");
+    }
+}
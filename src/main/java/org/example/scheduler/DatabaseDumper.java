@@ -1,141 +1,617 @@
 package org.example.scheduler;
 
+import org.example.cache.ContactCache;
+import org.example.cache.ContactSnapshot;
 import org.example.config.AppConfig;
 import org.example.dao.ContactDao;
-import org.example.model.Contact;
+import org.example.dump.DumpKind;
+import org.example.dump.DumpRow;
+import org.example.dump.DumpSink;
+import org.example.dump.DumpSinks;
+import org.example.history.HistoryEntry;
+import org.example.history.PhoneHistoryStore;
+import org.example.metrics.Counter;
+import org.example.metrics.LatencyHistogram;
+import org.example.metrics.MetricsRegistry;
 import org.example.util.DbConnection;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public final class DatabaseDumper implements Runnable {
     private static final Logger LOGGER = Logger.getLogger(DatabaseDumper.class.getName());
+    // Фазы дампа, мкс: захват снимка под монитором фиксации, выполнение запроса до первой строки,
+    // чтение целиком (снимок, запрос и передача строк приемникам), завершение приемников и весь дамп
+    private static final LatencyHistogram SNAPSHOT_TIMER = MetricsRegistry.timer("dump.snapshot");
+    private static final LatencyHistogram QUERY_TIMER = MetricsRegistry.timer("dump.query");
+    private static final LatencyHistogram SCAN_TIMER = MetricsRegistry.timer("dump.scan");
+    private static final LatencyHistogram OUTPUT_TIMER = MetricsRegistry.timer("dump.output");
+    private static final LatencyHistogram TOTAL_TIMER = MetricsRegistry.timer("dump.total");
+    private static final Counter DUMPED_ROWS = MetricsRegistry.counter("dump.rows");
 
+    private final ContactDao contactDao;
     private final AppConfig config;
-    private final Runnable shutdownCallback;
+    private final Listener listener;
 
-    public DatabaseDumper(ContactDao contactDao, AppConfig config, Runnable shutdownCallback) {
+    // Последний log_id (или номер записи внешнего хранилища истории), уже отраженный в выгрузках;
+    // -1 — полного снимка еще не было
+    private volatile long logWatermark = -1;
+    private volatile long dumpCount = 0;
+    // Попытки по таймеру, включая неудачные; меняет только выполняющаяся задача дампа
+    private long attempts = 0;
+    // Чтение по диапазонам занимает почти все соединения чтения, поэтому одновременно только одно:
+    // дамп по запросу во время дампа по таймеру идет одним курсором
+    private final ReentrantLock rangeScanLock = new ReentrantLock();
+    private ExecutorService rangeReaders;
+
+    // Вызывается после каждой попытки дампа по таймеру; решает, продолжать ли работу
+    public interface Listener {
+        void dumpFinished(long attempt, boolean failed);
+    }
+
+    public DatabaseDumper(ContactDao contactDao, AppConfig config, Listener listener) {
+        this.contactDao = contactDao;
         this.config = config;
-        this.shutdownCallback = shutdownCallback;
+        this.listener = listener;
     }
 
     @Override
     public void run() {
+        boolean failed = false;
         try {
-            // 1. Получаем объединенные данные
-            List<ContactWithHistory> contactsWithHistory = getContactsWithHistory(config.getLogRetentionSeconds());
+            // 1. Потоковая выгрузка контактов с историей в приемники
+            long start = System.nanoTime();
+            DumpKind kind = nextDumpKind();
+            List<DumpSink> sinks = DumpSinks.create(config, kind, dumpCount + 1);
+            try {
+                dump(sinks, kind, true);
+            } finally {
+                closeAll(sinks);
+                TOTAL_TIMER.recordSince(start);
+            }
+        } catch (SQLException | IOException e) {
+            failed = true;
+            LOGGER.log(Level.SEVERE, "Ошибка при выполнении дампа", e);
+        }
 
-            // 2. Выводим в лог
-            logContactsWithHistory(contactsWithHistory);
+        // 2. Продолжение или остановка решается владельцем (run.max.dumps)
+        listener.dumpFinished(++attempts, failed);
+    }
 
-            // 3. Инициируем остановку
-            shutdownCallback.run();
+    public long getLogWatermark() {
+        return logWatermark;
+    }
 
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Ошибка при выполнении дампа", e);
-            System.exit(1);
+    // Инкрементальный режим: первый и каждый N-й дамп — полный снимок, остальные — дельта
+    private DumpKind nextDumpKind() {
+        if (!config.isDumpIncremental() || logWatermark < 0) {
+            return DumpKind.FULL;
+        }
+        int fullEvery = config.getDumpFullSnapshotEvery();
+        return fullEvery > 0 && dumpCount % fullEvery == 0 ? DumpKind.FULL : DumpKind.DELTA;
+    }
+
+    /**
+     * Полный дамп по запросу (HTTP /dump) в переданные приемники. Watermark и счетчик дампов
+     * не меняются, поэтому очередная инкрементальная выгрузка по таймеру не теряет изменений.
+     * Приемники закрываются здесь же; возвращает число выгруженных контактов.
+     */
+    public long dumpOnDemand(List<DumpSink> sinks) throws SQLException, IOException {
+        long start = System.nanoTime();
+        try {
+            return dump(sinks, DumpKind.FULL, false);
+        } finally {
+            closeAll(sinks);
+            TOTAL_TIMER.recordSince(start);
         }
     }
 
-    private List<ContactWithHistory> getContactsWithHistory(int retentionSeconds) throws SQLException {
-        // Получаем текущие контакты
-        List<Contact> currentContacts = getCurrentContacts();
+    // advance = false: выгрузка не сдвигает watermark (дамп по запросу)
+    private long dump(List<DumpSink> sinks, DumpKind kind, boolean advance) throws SQLException, IOException {
+        for (DumpSink sink : sinks) {
+            sink.begin();
+        }
+
+        // Кэш загружается до взятия соединения для дампа, загрузке нужно свое соединение
+        ContactCache cache = contactDao.isCacheEnabled() ? contactDao.getLoadedCache() : null;
+        PhoneHistoryStore history = contactDao.getHistoryStore();
+        DumpStats stats = new DumpStats();
+        long fromLogId = logWatermark;
+        long toLogId;
 
-        // Получаем исторические данные за указанный период
-        Map<Integer, PhoneHistory> latestPhoneHistory = getLatestPhoneHistory(retentionSeconds);
+        int readers = history == null && cache == null ? rangeReaderCount() : 1;
+        if (readers > 1 && rangeScanLock.tryLock()) {
+            try {
+                toLogId = dumpInRanges(readers, kind, fromLogId, sinks, stats);
+            } finally {
+                rangeScanLock.unlock();
+            }
+        } else {
+            toLogId = dumpWithCursor(cache, history, kind, fromLogId, sinks, stats);
+        }
 
-        // Объединяем данные
-        List<ContactWithHistory> result = new ArrayList<>();
-        for (Contact contact : currentContacts) {
-            PhoneHistory history = latestPhoneHistory.get(contact.getId());
-            result.add(new ContactWithHistory(
-                    contact,
-                    history != null ? history.oldPhone() : null,
-                    history != null ? history.changeTime() : null
-            ));
+        long outputStart = System.nanoTime();
+        for (DumpSink sink : sinks) {
+            sink.end(stats.total, stats.withHistory);
         }
+        OUTPUT_TIMER.recordSince(outputStart);
+        DUMPED_ROWS.add(stats.total);
 
-        return result;
+        if (!advance) {
+            LOGGER.info(String.format("Дамп по запросу: контактов %d", stats.total));
+            return stats.total;
+        }
+        logWatermark = toLogId;
+        dumpCount++;
+        String bound = history != null ? "запись истории" : "log_id";
+        if (kind == DumpKind.DELTA) {
+            LOGGER.info(String.format("Дельта-дамп #%d: %s (%d, %d], контактов: %d",
+                    dumpCount, bound, fromLogId, toLogId, stats.total));
+        } else {
+            LOGGER.info(String.format("Полный дамп #%d: %s <= %d, контактов: %d",
+                    dumpCount, bound, toLogId, stats.total));
+        }
+        return stats.total;
     }
 
-    private List<Contact> getCurrentContacts() throws SQLException {
-        String sql = "SELECT id, name, phone FROM " + config.getTableName();
+    // Один курсор на одном соединении; возвращает верхнюю границу watermark снимка
+    private long dumpWithCursor(ContactCache cache, PhoneHistoryStore history, DumpKind kind, long fromLogId,
+                                List<DumpSink> sinks, DumpStats stats) throws SQLException, IOException {
+        try (Connection conn = DbConnection.getConnection()) {
+            // Снимок и верхняя граница watermark читаются в одной транзакции чтения
+            conn.setAutoCommit(false);
+            long snapshotStart = System.nanoTime();
+            long toLogId;
+            if (history != null) {
+                // Под монитором фиксации не меняются ни БД, ни кэш, ни история: границы согласованы
+                ContactSnapshot snapshot = null;
+                synchronized (contactDao.getCommitLock()) {
+                    if (cache != null) {
+                        snapshot = cache.snapshot();
+                    } else {
+                        openReadSnapshot(conn);
+                    }
+                    toLogId = history.lastSequence();
+                }
+                SNAPSHOT_TIMER.recordSince(snapshotStart);
+                dumpFromHistoryStore(conn, kind, history, snapshot, fromLogId, toLogId, sinks, stats);
+            } else if (cache != null) {
+                ContactSnapshot snapshot;
+                synchronized (contactDao.getCommitLock()) {
+                    snapshot = cache.snapshot();
+                    toLogId = currentMaxLogId(conn);
+                }
+                SNAPSHOT_TIMER.recordSince(snapshotStart);
+                dumpFromCache(conn, kind, snapshot, fromLogId, toLogId, sinks, stats);
+            } else {
+                toLogId = currentMaxLogId(conn);
+                SNAPSHOT_TIMER.recordSince(snapshotStart);
+                dumpFromDatabase(conn, kind, fromLogId, toLogId, sinks, stats);
+            }
+            conn.commit();
+            SCAN_TIMER.recordSince(snapshotStart);
+            return toLogId;
+        }
+    }
+
+    // Завершенные дампы по таймеру
+    public long getDumpCount() {
+        return dumpCount;
+    }
 
-        List<Contact> contacts = new ArrayList<>();
-        try (Connection conn = DbConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+    private void dumpFromDatabase(Connection conn, DumpKind kind, long fromLogId, long toLogId,
+                                  List<DumpSink> sinks, DumpStats stats) throws SQLException, IOException {
+        DumpRow row = new DumpRow();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                kind == DumpKind.FULL ? fullSnapshotSql() : deltaSql())) {
+            if (kind == DumpKind.DELTA) {
+                stmt.setLong(1, fromLogId);
+                stmt.setLong(2, toLogId);
+            }
+            stmt.setFetchSize(config.getDumpFetchSize());
 
-            while (rs.next()) {
-                Contact contact = new Contact(
-                        rs.getString("name"),
-                        rs.getString("phone")
-                );
-                contact.setId(rs.getInt("id"));
-                contacts.add(contact);
+            long queryStart = System.nanoTime();
+            try (ResultSet rs = stmt.executeQuery()) {
+                QUERY_TIMER.recordSince(queryStart);
+                while (rs.next()) {
+                    readContactRow(rs, row);
+                    emit(row, sinks, stats);
+                }
             }
         }
-        return contacts;
     }
 
-    private Map<Integer, PhoneHistory> getLatestPhoneHistory(int retentionSeconds) throws SQLException {
-        String sql = String.format(
-                "SELECT contact_id, old_phone, change_time FROM " +
-                        "(SELECT contact_id, old_phone, change_time, " +
-                        "ROW_NUMBER() OVER (PARTITION BY contact_id ORDER BY change_time DESC) as rn " +
-                        "FROM %s WHERE change_time >= datetime('now', '-%d seconds')) " +
-                        "WHERE rn = 1",
-                config.getLogTableName(),
-                retentionSeconds
+    // Строка запросов fullSnapshotSql/deltaSql и их вариантов по диапазону ID
+    private void readContactRow(ResultSet rs, DumpRow row) throws SQLException {
+        row.set(
+                rs.getInt(1),
+                rs.getString(2),
+                phoneText(rs, 3), phoneCode(rs, 3),
+                phoneText(rs, 4), phoneCode(rs, 4),
+                rs.getTimestamp(5)
         );
+    }
+
+    /**
+     * Тот же дамп из БД, что и dumpFromDatabase, но диапазонами ID на readers соединениях
+     * параллельно (RangeDumpScan). Транзакции чтения всех соединений открываются под монитором
+     * фиксации, поэтому диапазоны читаются из одного снимка и вывод совпадает с одним курсором.
+     * Возвращает верхнюю границу log_id снимка.
+     */
+    private long dumpInRanges(int readers, DumpKind kind, long fromLogId, List<DumpSink> sinks,
+                              DumpStats stats) throws SQLException, IOException {
+        List<Connection> connections = new ArrayList<>(readers);
+        try {
+            for (int i = 0; i < readers; i++) {
+                Connection conn = DbConnection.getConnection();
+                connections.add(conn);
+                conn.setAutoCommit(false);
+            }
+            long snapshotStart = System.nanoTime();
+            synchronized (contactDao.getCommitLock()) {
+                for (Connection conn : connections) {
+                    openReadSnapshot(conn);
+                }
+            }
+            Connection first = connections.get(0);
+            long toLogId = currentMaxLogId(first);
+            // Граница хранения вычисляется один раз, иначе datetime('now') в диапазонах разошлось бы
+            String retentionFrom = retentionCutoff(first);
+            int[] idRange = idRange(first);
+            SNAPSHOT_TIMER.recordSince(snapshotStart);
+
+            if (idRange != null) {
+                RangeDumpScan.Binder binder = kind == DumpKind.FULL
+                        ? (stmt, fromId, toId) -> {
+                            stmt.setInt(1, fromId);
+                            stmt.setInt(2, toId);
+                            stmt.setString(3, retentionFrom);
+                            stmt.setInt(4, fromId);
+                            stmt.setInt(5, toId);
+                        }
+                        : (stmt, fromId, toId) -> {
+                            stmt.setLong(1, fromLogId);
+                            stmt.setLong(2, toLogId);
+                            stmt.setInt(3, fromId);
+                            stmt.setInt(4, toId);
+                            stmt.setInt(5, fromId);
+                            stmt.setInt(6, toId);
+                        };
+                new RangeDumpScan(rangeReaderPool(), connections,
+                        kind == DumpKind.FULL ? fullSnapshotRangeSql() : deltaRangeSql(),
+                        binder, this::readContactRow, config.getDumpFetchSize())
+                        .run(idRange[0], idRange[1], config.getDumpRangeIds(), row -> emit(row, sinks, stats));
+            }
+            for (Connection conn : connections) {
+                conn.commit();
+            }
+            SCAN_TIMER.recordSince(snapshotStart);
+            return toLogId;
+        } finally {
+            for (Connection conn : connections) {
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    LOGGER.log(Level.WARNING, "Ошибка закрытия соединения дампа", e);
+                }
+            }
+        }
+    }
+
+    // Соединений чтения для дампа: одно остается свободным для остальных читателей пула
+    private int rangeReaderCount() {
+        int parallelism = config.getDumpParallelism();
+        if (parallelism == 1) {
+            return 1;
+        }
+        int wanted = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(wanted, config.getPoolReaders() - 1));
+    }
+
+    // Потоки чтения диапазонов; простаивающие завершаются, поэтому пул не нужно закрывать
+    private synchronized ExecutorService rangeReaderPool() {
+        if (rangeReaders == null) {
+            int threads = Math.max(1, config.getPoolReaders() - 1);
+            AtomicInteger counter = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), task -> {
+                        Thread thread = new Thread(task, "dump-reader-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            rangeReaders = pool;
+        }
+        return rangeReaders;
+    }
+
+    // Контакты берутся из снимка кэша, из SQLite читается только журнал изменений по contact_id
+    private void dumpFromCache(Connection conn, DumpKind kind, ContactSnapshot snapshot, long fromLogId,
+                               long toLogId, List<DumpSink> sinks, DumpStats stats)
+            throws SQLException, IOException {
+        DumpRow row = new DumpRow();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                kind == DumpKind.FULL ? fullHistorySql() : deltaHistorySql())) {
+            if (kind == DumpKind.DELTA) {
+                stmt.setLong(1, fromLogId);
+                stmt.setLong(2, toLogId);
+            }
+            stmt.setFetchSize(config.getDumpFetchSize());
+
+            long queryStart = System.nanoTime();
+            try (ResultSet rs = stmt.executeQuery()) {
+                QUERY_TIMER.recordSince(queryStart);
+                if (kind == DumpKind.DELTA) {
+                    while (rs.next()) {
+                        int index = snapshot.indexOf(rs.getInt(1));
+                        if (index >= 0) {
+                            int code = snapshot.phoneCode(index);
+                            row.set(snapshot.id(index), snapshot.name(index),
+                                    code == DumpRow.NO_CODE ? snapshot.phone(index) : null, code,
+                                    phoneText(rs, 2), phoneCode(rs, 2), rs.getTimestamp(3));
+                            emit(row, sinks, stats);
+                        }
+                    }
+                    return;
+                }
+                // Слияние двух упорядоченных по ID потоков: все контакты и их последние изменения
+                boolean hasHistory = rs.next();
+                for (int i = 0; i < snapshot.size(); i++) {
+                    int id = snapshot.id(i);
+                    while (hasHistory && rs.getInt(1) < id) {
+                        hasHistory = rs.next();
+                    }
+                    int code = snapshot.phoneCode(i);
+                    String text = code == DumpRow.NO_CODE ? snapshot.phone(i) : null;
+                    if (hasHistory && rs.getInt(1) == id) {
+                        row.set(id, snapshot.name(i), text, code,
+                                phoneText(rs, 2), phoneCode(rs, 2), rs.getTimestamp(3));
+                    } else {
+                        row.set(id, snapshot.name(i), text, code, null, DumpRow.NO_CODE, null);
+                    }
+                    emit(row, sinks, stats);
+                }
+            }
+        }
+    }
 
-        Map<Integer, PhoneHistory> historyMap = new HashMap<>();
-        try (Connection conn = DbConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+    // История из внешнего хранилища без SQL; контакты — из снимка кэша или одним курсором по таблице
+    private void dumpFromHistoryStore(Connection conn, DumpKind kind, PhoneHistoryStore history,
+                                      ContactSnapshot snapshot, long fromSequence, long toSequence,
+                                      List<DumpSink> sinks, DumpStats stats) throws SQLException, IOException {
+        DumpRow row = new DumpRow();
+        HistoryEntry entry = new HistoryEntry();
 
-            while (rs.next()) {
-                historyMap.put(rs.getInt("contact_id"),
-                        new PhoneHistory(
-                                rs.getString("old_phone"),
-                                rs.getTimestamp("change_time")
-                        ));
+        if (kind == DumpKind.DELTA) {
+            int[] changed = history.changedContacts(fromSequence, toSequence);
+            try (PreparedStatement stmt = snapshot == null ? conn.prepareStatement(
+                    String.format("SELECT name, phone FROM %s WHERE id = ?", config.getTableName())) : null) {
+                for (int id : changed) {
+                    if (!history.latestInRange(id, fromSequence, toSequence, entry)) {
+                        continue;
+                    }
+                    if (snapshot != null) {
+                        int index = snapshot.indexOf(id);
+                        if (index < 0) {
+                            continue;
+                        }
+                        int code = snapshot.phoneCode(index);
+                        setWithHistory(row, id, snapshot.name(index),
+                                code == DumpRow.NO_CODE ? snapshot.phone(index) : null, code, entry);
+                    } else {
+                        stmt.setInt(1, id);
+                        try (ResultSet rs = stmt.executeQuery()) {
+                            if (!rs.next()) {
+                                continue;
+                            }
+                            setWithHistory(row, id, rs.getString(1), phoneText(rs, 2), phoneCode(rs, 2), entry);
+                        }
+                    }
+                    emit(row, sinks, stats);
+                }
             }
+            return;
+        }
+
+        long sinceMillis = System.currentTimeMillis() - config.getLogRetentionSeconds() * 1000L;
+        if (snapshot != null) {
+            for (int i = 0; i < snapshot.size(); i++) {
+                int id = snapshot.id(i);
+                int code = snapshot.phoneCode(i);
+                setWithHistory(row, id, snapshot.name(i), code == DumpRow.NO_CODE ? snapshot.phone(i) : null, code,
+                        history.latest(id, sinceMillis, toSequence, entry) ? entry : null);
+                emit(row, sinks, stats);
+            }
+            return;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(
+                String.format("SELECT id, name, phone FROM %s ORDER BY id", config.getTableName()))) {
+            stmt.setFetchSize(config.getDumpFetchSize());
+            long queryStart = System.nanoTime();
+            try (ResultSet rs = stmt.executeQuery()) {
+                QUERY_TIMER.recordSince(queryStart);
+                while (rs.next()) {
+                    int id = rs.getInt(1);
+                    setWithHistory(row, id, rs.getString(2), phoneText(rs, 3), phoneCode(rs, 3),
+                            history.latest(id, sinceMillis, toSequence, entry) ? entry : null);
+                    emit(row, sinks, stats);
+                }
+            }
+        }
+    }
+
+    private static void setWithHistory(DumpRow row, int id, String name, String phone, int phoneCode,
+                                       HistoryEntry entry) {
+        if (entry == null) {
+            row.set(id, name, phone, phoneCode, null, DumpRow.NO_CODE, null);
+            return;
+        }
+        int oldCode = entry.getPhoneCode();
+        row.set(id, name, phone, phoneCode,
+                oldCode == DumpRow.NO_CODE ? entry.oldPhone() : null, oldCode, entry.changeTime());
+    }
+
+    // При phone.encoding=packed телефон читается числом и в текст переводится только приемником
+    private String phoneText(ResultSet rs, int column) throws SQLException {
+        return config.isPhonePacked() ? null : rs.getString(column);
+    }
+
+    private int phoneCode(ResultSet rs, int column) throws SQLException {
+        if (!config.isPhonePacked()) {
+            return DumpRow.NO_CODE;
+        }
+        int code = rs.getInt(column);
+        return rs.wasNull() ? DumpRow.NO_CODE : code;
+    }
+
+    private static void emit(DumpRow row, List<DumpSink> sinks, DumpStats stats) throws IOException {
+        stats.total++;
+        if (row.hasHistory()) {
+            stats.withHistory++;
+        }
+        for (DumpSink sink : sinks) {
+            sink.accept(row);
+        }
+    }
+
+    // Первое чтение в транзакции фиксирует снимок БД, который увидит последующий курсор
+    private void openReadSnapshot(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT 1 FROM " + config.getTableName() + " LIMIT 1")) {
+            rs.next();
+        }
+    }
+
+    // Границы ID в текущем снимке; null — таблица пуста
+    private int[] idRange(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MIN(id), MAX(id) FROM " + config.getTableName())) {
+            int max = rs.getInt(2);
+            return rs.wasNull() ? null : new int[]{rs.getInt(1), max};
+        }
+    }
+
+    private String retentionCutoff(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                     "SELECT datetime('now', '-" + config.getLogRetentionSeconds() + " seconds')")) {
+            return rs.getString(1);
         }
-        return historyMap;
     }
 
-    private void logContactsWithHistory(List<ContactWithHistory> contacts) {
-        LOGGER.info("=== ТЕКУЩЕЕ СОСТОЯНИЕ КОНТАКТОВ С ИСТОРИЕЙ ===");
-        LOGGER.info(String.format("%-4s | %-15s | %-12s | %-12s | %-20s",
-                "ID", "Имя", "Текущий тел.", "Старый тел.", "Время изменения"));
+    private long currentMaxLogId(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(log_id), 0) FROM " + config.getLogTableName())) {
+            return rs.getLong(1);
+        }
+    }
+
+    // Контакты и последняя смена телефона за период хранения читаются одним курсором,
+    // каждая строка сразу передается приемникам без накопления в памяти
+    private String fullSnapshotSql() {
+        return String.format(
+                "SELECT c.id, c.name, c.phone, h.old_phone, h.change_time FROM %s c " +
+                        "LEFT JOIN (SELECT contact_id, old_phone, change_time, " +
+                        "ROW_NUMBER() OVER (PARTITION BY contact_id ORDER BY change_time DESC, log_id DESC) as rn " +
+                        "FROM %s WHERE change_time >= datetime('now', '-%d seconds')) h " +
+                        "ON h.contact_id = c.id AND h.rn = 1 " +
+                        "ORDER BY c.id",
+                config.getTableName(),
+                config.getLogTableName(),
+                config.getLogRetentionSeconds()
+        );
+    }
+
+    // Только контакты с записями журнала в диапазоне (from, to]; поиск по первичному ключу log_id
+    private String deltaSql() {
+        return String.format(
+                "SELECT c.id, c.name, c.phone, l.old_phone, l.change_time FROM " +
+                        "(SELECT contact_id, MAX(log_id) AS log_id FROM %2$s " +
+                        "WHERE log_id > ? AND log_id <= ? GROUP BY contact_id) d " +
+                        "JOIN %2$s l ON l.log_id = d.log_id " +
+                        "JOIN %1$s c ON c.id = d.contact_id " +
+                        "ORDER BY c.id",
+                config.getTableName(),
+                config.getLogTableName()
+        );
+    }
+
+    // fullSnapshotSql для ID из [?, ?]: история отбирается по индексу (contact_id, change_time)
+    // того же диапазона, граница хранения передается параметром
+    private String fullSnapshotRangeSql() {
+        return String.format(
+                "SELECT c.id, c.name, c.phone, h.old_phone, h.change_time FROM %s c " +
+                        "LEFT JOIN (SELECT contact_id, old_phone, change_time, " +
+                        "ROW_NUMBER() OVER (PARTITION BY contact_id ORDER BY change_time DESC, log_id DESC) as rn " +
+                        "FROM %s WHERE contact_id BETWEEN ? AND ? AND change_time >= ?) h " +
+                        "ON h.contact_id = c.id AND h.rn = 1 " +
+                        "WHERE c.id BETWEEN ? AND ? " +
+                        "ORDER BY c.id",
+                config.getTableName(),
+                config.getLogTableName()
+        );
+    }
+
+    private String deltaRangeSql() {
+        return String.format(
+                "SELECT c.id, c.name, c.phone, l.old_phone, l.change_time FROM " +
+                        "(SELECT contact_id, MAX(log_id) AS log_id FROM %2$s " +
+                        "WHERE log_id > ? AND log_id <= ? AND contact_id BETWEEN ? AND ? GROUP BY contact_id) d " +
+                        "JOIN %2$s l ON l.log_id = d.log_id " +
+                        "JOIN %1$s c ON c.id = d.contact_id " +
+                        "WHERE c.id BETWEEN ? AND ? " +
+                        "ORDER BY c.id",
+                config.getTableName(),
+                config.getLogTableName()
+        );
+    }
 
-        contacts.forEach(c -> {
-            String oldPhone = c.oldPhone() != null ? c.oldPhone() : "N/A";
-            String changeTime = c.changeTime() != null ? c.changeTime().toString() : "N/A";
+    // Последняя смена телефона каждого контакта за период хранения, по возрастанию contact_id
+    private String fullHistorySql() {
+        return String.format(
+                "SELECT contact_id, old_phone, change_time FROM " +
+                        "(SELECT contact_id, old_phone, change_time, " +
+                        "ROW_NUMBER() OVER (PARTITION BY contact_id ORDER BY change_time DESC, log_id DESC) as rn " +
+                        "FROM %s WHERE change_time >= datetime('now', '-%d seconds')) " +
+                        "WHERE rn = 1 ORDER BY contact_id",
+                config.getLogTableName(),
+                config.getLogRetentionSeconds()
+        );
+    }
 
-            LOGGER.info(String.format(
-                    "%-4d | %-15s | %-12s | %-12s | %-20s",
-                    c.contact().getId(),
-                    c.contact().getName(),
-                    c.contact().getPhone(),
-                    oldPhone,
-                    changeTime
-            ));
-        });
+    private String deltaHistorySql() {
+        return String.format(
+                "SELECT l.contact_id, l.old_phone, l.change_time FROM " +
+                        "(SELECT contact_id, MAX(log_id) AS log_id FROM %1$s " +
+                        "WHERE log_id > ? AND log_id <= ? GROUP BY contact_id) d " +
+                        "JOIN %1$s l ON l.log_id = d.log_id " +
+                        "ORDER BY l.contact_id",
+                config.getLogTableName()
+        );
+    }
 
-        long withHistory = contacts.stream().filter(c -> c.oldPhone() != null).count();
-        LOGGER.info("\n=== ИТОГО ===");
-        LOGGER.info("Всего контактов: " + contacts.size());
-        LOGGER.info("С историей изменений: " + withHistory);
-        LOGGER.info("Без истории изменений: " + (contacts.size() - withHistory));
+    private void closeAll(List<DumpSink> sinks) {
+        for (DumpSink sink : sinks) {
+            try {
+                sink.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Ошибка закрытия приемника дампа", e);
+            }
+        }
     }
 
-    private record PhoneHistory(String oldPhone, Timestamp changeTime) {}
-    private record ContactWithHistory(Contact contact, String oldPhone, Timestamp changeTime) {}
-}
\ No newline at end of file
+    private static final class DumpStats {
+        long total;
+        long withHistory;
+    }
+}
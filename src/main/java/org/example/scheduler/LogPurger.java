@@ -0,0 +1,39 @@
+package org.example.scheduler;
+
+import org.example.dao.ContactDao;
+
+import java.sql.SQLException;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class LogPurger implements Runnable {
+    private static final Logger LOGGER = Logger.getLogger(LogPurger.class.getName());
+
+    private final ContactDao contactDao;
+    private final int retentionSeconds;
+    private final int batchSize;
+    // Наибольший log_id, который можно удалить (watermark инкрементального дампа)
+    private final LongSupplier purgeBound;
+
+    public LogPurger(ContactDao contactDao, int retentionSeconds, int batchSize, LongSupplier purgeBound) {
+        this.contactDao = contactDao;
+        this.retentionSeconds = retentionSeconds;
+        this.batchSize = batchSize;
+        this.purgeBound = purgeBound;
+    }
+
+    @Override
+    public void run() {
+        try {
+            long startTime = System.currentTimeMillis();
+            int deleted = contactDao.purgeExpiredLogs(retentionSeconds, purgeBound.getAsLong(), batchSize);
+            if (deleted > 0) {
+                LOGGER.fine(String.format("Удалено устаревших записей журнала: %d за %d мс",
+                        deleted, System.currentTimeMillis() - startTime));
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Ошибка очистки журнала изменений", e);
+        }
+    }
+}
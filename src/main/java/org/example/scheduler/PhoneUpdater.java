@@ -1,43 +1,65 @@
 package org.example.scheduler;
 
 import org.example.config.AppConfig;
+import org.example.metrics.LatencyHistogram;
+import org.example.metrics.MetricsRegistry;
 import org.example.service.ContactService;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class PhoneUpdater implements Runnable {
     private static final Logger LOGGER = Logger.getLogger(PhoneUpdater.class.getName());
+    private static final LatencyHistogram TICK_TIMER = MetricsRegistry.timer("updater.tick");
+    // Отставание фактического запуска от запрошенного интервала, мкс
+    private static final LatencyHistogram DRIFT = MetricsRegistry.timer("updater.drift");
 
     private final ContactService contactService;
     private final AppConfig config;
-    private final ScheduledExecutorService scheduler;
+    private final TaskEngine scheduler;
+    // null — случайные пачка и интервал из конфигурации
+    private final UpdateRateController rateController;
     private int executionCount = 0;
+    // Когда должен был начаться следующий запуск (System.nanoTime), 0 — до первого планирования
+    private long expectedStart = 0;
 
-    public PhoneUpdater(ContactService contactService, AppConfig config, ScheduledExecutorService scheduler) {
+    public PhoneUpdater(ContactService contactService, AppConfig config, TaskEngine scheduler,
+                        UpdateRateController rateController) {
         this.contactService = contactService;
         this.config = config;
         this.scheduler = scheduler;
+        this.rateController = rateController;
     }
 
     @Override
     public void run() {
+        long start = System.nanoTime();
+        if (expectedStart != 0) {
+            DRIFT.record(Math.max(0, start - expectedStart) / 1000);
+        }
         try {
             executionCount++;
             LOGGER.fine("Запуск обновления телефонных номеров (выполнение #" + executionCount);
 
             // Основная логика обновления
-            contactService.updateRandomContactsPhones();
+            if (rateController != null) {
+                contactService.updateRandomContactsPhones(rateController.getBatchSize());
+            } else {
+                contactService.updateRandomContactsPhones();
+            }
 
             // Генерируем новый интервал
-            int newInterval = config.generateRandomPhoneUpdateInterval();
+            int newInterval = rateController != null
+                    ? rateController.getIntervalMs()
+                    : config.generateRandomPhoneUpdateInterval();
             LOGGER.fine(String.format(
                     "Обновление номеров завершено. Следующее выполнение через %d мс",
                     newInterval
             ));
 
             // Планируем следующее выполнение с новым интервалом
+            TICK_TIMER.recordSince(start);
+            expectedStart = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(newInterval);
             scheduler.schedule(
                     this,
                     newInterval,
@@ -0,0 +1,260 @@
+package org.example.scheduler;
+
+import org.example.dump.DumpRow;
+import org.example.metrics.LatencyHistogram;
+import org.example.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Чтение дампа по диапазонам ID на нескольких соединениях. Каждый поток пула берет
+ * очередной диапазон и читает контакты вместе с их историей своим соединением; все соединения
+ * уже открыли транзакцию чтения на одном снимке БД. Готовые диапазоны отдаются вызывающему
+ * строго по возрастанию ID, поэтому строки идут в том же порядке, что и у одного курсора.
+ * В памяти не больше 2 * readers прочитанных, но еще не выданных диапазонов.
+ */
+final class RangeDumpScan {
+    private static final LatencyHistogram QUERY_TIMER = MetricsRegistry.timer("dump.query");
+    private static final LatencyHistogram RANGE_TIMER = MetricsRegistry.timer("dump.range");
+
+    // Подставляет границы диапазона [fromId, toId] и прочие параметры запроса
+    interface Binder {
+        void bind(PreparedStatement stmt, int fromId, int toId) throws SQLException;
+    }
+
+    interface RowReader {
+        void read(ResultSet rs, DumpRow row) throws SQLException;
+    }
+
+    interface RowConsumer {
+        void accept(DumpRow row) throws IOException;
+    }
+
+    private final ExecutorService executor;
+    private final List<Connection> connections;
+    private final String sql;
+    private final Binder binder;
+    private final RowReader reader;
+    private final int fetchSize;
+
+    RangeDumpScan(ExecutorService executor, List<Connection> connections, String sql, Binder binder,
+                  RowReader reader, int fetchSize) {
+        this.executor = executor;
+        this.connections = connections;
+        this.sql = sql;
+        this.binder = binder;
+        this.reader = reader;
+        this.fetchSize = fetchSize;
+    }
+
+    /** Читает ID minId..maxId диапазонами примерно по rangeIds и отдает строки consumer по порядку. */
+    void run(int minId, int maxId, int rangeIds, RowConsumer consumer) throws SQLException, IOException {
+        long span = (long) maxId - minId + 1;
+        long wanted = Math.max(connections.size(), (span + Math.max(1, rangeIds) - 1) / Math.max(1, rangeIds));
+        Ranges ranges = new Ranges(minId, span, (int) Math.min(wanted, span), connections.size() * 2);
+
+        List<Future<?>> workers = new ArrayList<>(connections.size());
+        for (Connection conn : connections) {
+            workers.add(executor.submit(() -> readRanges(conn, ranges)));
+        }
+        boolean completed = false;
+        try {
+            DumpRow row = new DumpRow();
+            for (int index = 0; index < ranges.count; index++) {
+                RangeRows rows = ranges.await(index);
+                // Место в окне освобождается до выдачи: следующий диапазон читается, пока этот форматируется
+                ranges.window.release();
+                for (int i = 0; i < rows.size; i++) {
+                    rows.copyTo(i, row);
+                    consumer.accept(row);
+                }
+            }
+            completed = true;
+        } finally {
+            if (!completed) {
+                ranges.abort();
+            }
+            // Соединения закрывает вызывающий, поэтому потоки должны отпустить их до выхода
+            awaitAll(workers);
+        }
+    }
+
+    private void readRanges(Connection conn, Ranges ranges) {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setFetchSize(fetchSize);
+            while (true) {
+                ranges.window.acquireUninterruptibly();
+                int index = ranges.next.getAndIncrement();
+                if (ranges.aborted || index >= ranges.count) {
+                    return;
+                }
+                ranges.results.get(index).complete(read(stmt, ranges.fromId(index), ranges.toId(index)));
+            }
+        } catch (SQLException | RuntimeException e) {
+            ranges.fail(e);
+        }
+    }
+
+    private RangeRows read(PreparedStatement stmt, int fromId, int toId) throws SQLException {
+        long start = System.nanoTime();
+        binder.bind(stmt, fromId, toId);
+        RangeRows rows = new RangeRows((int) Math.min(1024, (long) toId - fromId + 1));
+        DumpRow row = new DumpRow();
+        try (ResultSet rs = stmt.executeQuery()) {
+            QUERY_TIMER.recordSince(start);
+            while (rs.next()) {
+                reader.read(rs, row);
+                rows.add(row);
+            }
+        }
+        RANGE_TIMER.recordSince(start);
+        return rows;
+    }
+
+    private static void awaitAll(List<Future<?>> workers) {
+        boolean interrupted = false;
+        for (Future<?> worker : workers) {
+            while (true) {
+                try {
+                    worker.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    // Ошибка потока уже передана через Ranges.fail
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Общее состояние одного чтения: границы диапазонов, результаты и окно выдачи
+    private static final class Ranges {
+        final int minId;
+        final long span;
+        final int count;
+        final List<CompletableFuture<RangeRows>> results;
+        final CompletableFuture<Void> failure = new CompletableFuture<>();
+        final AtomicInteger next = new AtomicInteger();
+        final Semaphore window;
+        volatile boolean aborted = false;
+
+        Ranges(int minId, long span, int count, int window) {
+            this.minId = minId;
+            this.span = span;
+            this.count = count;
+            this.results = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                results.add(new CompletableFuture<>());
+            }
+            this.window = new Semaphore(window);
+        }
+
+        int fromId(int index) {
+            return (int) (minId + span * index / count);
+        }
+
+        int toId(int index) {
+            return (int) (minId + span * (index + 1) / count - 1);
+        }
+
+        // Ждет диапазон index или первую ошибку любого потока
+        RangeRows await(int index) throws SQLException {
+            try {
+                CompletableFuture.anyOf(results.get(index), failure).get();
+                RangeRows rows = results.get(index).getNow(null);
+                if (rows == null) {
+                    failure.join();
+                }
+                results.set(index, null);
+                return rows;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Параллельный дамп прерван", e);
+            } catch (ExecutionException | RuntimeException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof SQLException) {
+                    throw (SQLException) cause;
+                }
+                throw new SQLException("Ошибка чтения диапазона дампа", cause);
+            }
+        }
+
+        void fail(Exception e) {
+            aborted = true;
+            failure.completeExceptionally(e);
+            window.release(count);
+        }
+
+        void abort() {
+            aborted = true;
+            window.release(count);
+        }
+    }
+
+    // Строки одного диапазона по столбцам; телефон хранится строкой или кодом, как в DumpRow
+    private static final class RangeRows {
+        int size;
+        int[] ids;
+        String[] names;
+        String[] phones;
+        int[] phoneCodes;
+        String[] oldPhones;
+        int[] oldPhoneCodes;
+        Timestamp[] changeTimes;
+
+        RangeRows(int capacity) {
+            int length = Math.max(16, capacity);
+            ids = new int[length];
+            names = new String[length];
+            phones = new String[length];
+            phoneCodes = new int[length];
+            oldPhones = new String[length];
+            oldPhoneCodes = new int[length];
+            changeTimes = new Timestamp[length];
+        }
+
+        void add(DumpRow row) {
+            if (size == ids.length) {
+                int length = size * 2;
+                ids = Arrays.copyOf(ids, length);
+                names = Arrays.copyOf(names, length);
+                phones = Arrays.copyOf(phones, length);
+                phoneCodes = Arrays.copyOf(phoneCodes, length);
+                oldPhones = Arrays.copyOf(oldPhones, length);
+                oldPhoneCodes = Arrays.copyOf(oldPhoneCodes, length);
+                changeTimes = Arrays.copyOf(changeTimes, length);
+            }
+            ids[size] = row.getId();
+            names[size] = row.getName();
+            phoneCodes[size] = row.getPhoneCode();
+            phones[size] = row.getPhoneCode() == DumpRow.NO_CODE ? row.getPhone() : null;
+            oldPhoneCodes[size] = row.getOldPhoneCode();
+            oldPhones[size] = row.getOldPhoneCode() == DumpRow.NO_CODE ? row.getOldPhone() : null;
+            changeTimes[size] = row.getChangeTime();
+            size++;
+        }
+
+        void copyTo(int index, DumpRow row) {
+            row.set(ids[index], names[index], phones[index], phoneCodes[index],
+                    oldPhones[index], oldPhoneCodes[index], changeTimes[index]);
+        }
+    }
+}
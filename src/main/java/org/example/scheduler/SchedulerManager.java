@@ -1,38 +1,73 @@
 package org.example.scheduler;
 
 import org.example.config.AppConfig;
+import org.example.events.ChangeSubscribers;
+import org.example.metrics.MetricsRegistry;
 import org.example.service.ContactService;
+import org.example.util.DbConnection;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class SchedulerManager {
     private static final Logger LOGGER = Logger.getLogger(SchedulerManager.class.getName());
 
-    private final ScheduledExecutorService scheduler;
+    private final TaskEngine scheduler;
     private final ContactService contactService;
     private final AppConfig config;
     private volatile boolean isRunning = false;
+    // null в режиме одиночного PhoneUpdater (updater.lanes=0)
+    private ShardedPhoneUpdater shardedUpdater;
+    private DatabaseDumper databaseDumper;
+    // null, если темп обновлений не регулируется (updater.adaptive=false)
+    private UpdateRateController rateController;
+    private final CountDownLatch stopRequested = new CountDownLatch(1);
+    private volatile int exitStatus = 0;
 
     public SchedulerManager(ContactService contactService, AppConfig config) {
         this.contactService = contactService;
         this.config = config;
-        this.scheduler = Executors.newScheduledThreadPool(2);
+        this.scheduler = TaskEngine.create(config);
     }
 
     public void startAll() {
         isRunning = true;
+        startChangeSubscribers();
         startPhoneUpdater();
         startDatabaseDumper();
-        LOGGER.info("Все планировщики запущены");
+        startWalCheckpointer();
+        startLogPurger();
+        startLagReporter();
+        startMetricsReporter();
+        LOGGER.info("Все планировщики запущены, исполнение: " + scheduler.getDescription());
+    }
+
+    // Подписчики подключаются до первых обновлений, чтобы получить все изменения этого запуска
+    private void startChangeSubscribers() {
+        try {
+            ChangeSubscribers.subscribeAll(contactService.getContactDao().getChangeBus(), config);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Не удалось подключить подписчиков изменений", e);
+        }
     }
 
     private void startPhoneUpdater() {
+        if (config.isUpdaterAdaptive()) {
+            startRateController();
+        }
+        if (config.getUpdaterLanes() > 0) {
+            startShardedUpdater();
+            return;
+        }
         // Генерируем начальный интервал
-        int initialInterval = config.generateRandomPhoneUpdateInterval();
+        int initialInterval = rateController != null
+                ? rateController.getIntervalMs()
+                : config.generateRandomPhoneUpdateInterval();
 
         LOGGER.info(() -> String.format(
                 "PhoneUpdater запущен с начальным интервалом %d мс",
@@ -41,22 +76,41 @@ public class SchedulerManager {
 
         // Запускаем первый раз с динамическим планированием следующего выполнения
         scheduler.schedule(
-                new PhoneUpdater(contactService, config, scheduler),
+                new PhoneUpdater(contactService, config, scheduler, rateController),
                 initialInterval,
                 TimeUnit.MILLISECONDS
         );
     }
 
+    private void startShardedUpdater() {
+        shardedUpdater = new ShardedPhoneUpdater(contactService.getContactDao(), config, rateController);
+        try {
+            shardedUpdater.start(scheduler);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Не удалось запустить полосы обновления телефонов", e);
+        }
+    }
+
+    private void startRateController() {
+        rateController = new UpdateRateController(config, contactService.getContactDao().getWriteCoordinator(),
+                scheduler, config.getUpdaterLanes() > 0);
+        int window = Math.max(100, config.getUpdaterAdaptiveWindowMs());
+        scheduler.scheduleAtFixedRate(rateController, window, window, TimeUnit.MILLISECONDS);
+        LOGGER.info(String.format("Регулятор темпа обновлений запущен: цель p99 %d мс, окно %d мс, старт %.1f изменений/сек",
+                config.getUpdaterAdaptiveTargetP99Ms(), window, rateController.getRate()));
+    }
+
     private void startDatabaseDumper() {
 //        int initialDelay = config.getDbDumpMinInterval();
         int interval = config.getDbDumpInterval();
 
+        databaseDumper = new DatabaseDumper(
+                contactService.getContactDao(),
+                config,
+                this::onDumpFinished
+        );
         scheduler.scheduleAtFixedRate(
-                new DatabaseDumper(
-                        contactService.getContactDao(),
-                        config,
-                        this::shutdown
-                ),
+                databaseDumper,
                 interval,
                 interval,
                 TimeUnit.SECONDS
@@ -68,46 +122,184 @@ public class SchedulerManager {
         ));
     }
 
-//    public void stopAll() {
-//        scheduler.shutdown();
-//        try {
-//            if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
-//                scheduler.shutdownNow();
-//            }
-//        } catch (InterruptedException e) {
-//            scheduler.shutdownNow();
-//            Thread.currentThread().interrupt();
-//        }
-//        LOGGER.info("Все планировщики остановлены");
-//    }
-public void shutdown() {
-    if (isRunning) {
+    private void startLogPurger() {
+        // Кольцо истории в файле вытесняет старые записи само, таблица журнала не ведется
+        if (contactService.getContactDao().getHistoryStore() != null) {
+            return;
+        }
+        int interval = config.getLogPurgeIntervalSeconds();
+        if (interval <= 0) {
+            return;
+        }
+        // Дельта-дамп ищет изменения по log_id: записи после его watermark не удаляются,
+        // пока не выгружены (до первого полного снимка watermark = -1 и не удаляется ничего)
+        LongSupplier purgeBound = config.isDumpIncremental()
+                ? databaseDumper::getLogWatermark
+                : () -> Long.MAX_VALUE;
+
+        scheduler.scheduleWithFixedDelay(
+                new LogPurger(
+                        contactService.getContactDao(),
+                        config.getLogRetentionSeconds(),
+                        config.getLogPurgeBatchSize(),
+                        purgeBound
+                ),
+                interval,
+                interval,
+                TimeUnit.SECONDS
+        );
+
+        LOGGER.info(() -> String.format(
+                "Очистка журнала старше %d сек каждые %d сек",
+                config.getLogRetentionSeconds(), interval
+        ));
+    }
+
+    private void startWalCheckpointer() {
+        int interval = config.getCheckpointIntervalSeconds();
+        if (interval <= 0 || !DbConnection.getPool().isWal()) {
+            return;
+        }
+
+        scheduler.scheduleAtFixedRate(
+                new WalCheckpointer(config.getCheckpointMode()),
+                interval,
+                interval,
+                TimeUnit.SECONDS
+        );
+
+        LOGGER.info(() -> String.format(
+                "Контрольные точки WAL (%s) каждые %d сек",
+                config.getCheckpointMode(), interval
+        ));
+        if (!"PASSIVE".equalsIgnoreCase(config.getCheckpointMode())) {
+            LOGGER.warning("Режим контрольной точки " + config.getCheckpointMode()
+                    + " ждет писателя и блокирует обновления на время переноса WAL");
+        }
+    }
+
+    private void startLagReporter() {
+        int interval = config.getSchedulerLagReportSeconds();
+        if (interval <= 0) {
+            return;
+        }
+
+        scheduler.scheduleAtFixedRate(
+                () -> LOGGER.info(String.format(
+                        "Задержка запуска задач, мкс: %s; пропущено тиков: %d",
+                        scheduler.getSchedulingLag().summary(), scheduler.getOverruns()
+                )),
+                interval,
+                interval,
+                TimeUnit.SECONDS
+        );
+    }
+
+    private void startMetricsReporter() {
+        int interval = config.getMetricsReportSeconds();
+        if (interval <= 0) {
+            return;
+        }
+
+        scheduler.scheduleAtFixedRate(
+                () -> LOGGER.info("Метрики: " + MetricsRegistry.summary()),
+                interval,
+                interval,
+                TimeUnit.SECONDS
+        );
+    }
+
+    public TaskEngine getTaskEngine() {
+        return scheduler;
+    }
+
+    public DatabaseDumper getDatabaseDumper() {
+        return databaseDumper;
+    }
+
+    public boolean isRunning() {
+        return isRunning;
+    }
+
+    // Дамп по таймеру завершен: по run.max.dumps решается, продолжать ли работу
+    private void onDumpFinished(long attempt, boolean failed) {
+        if (failed) {
+            exitStatus = 1;
+        }
+        int maxDumps = config.getRunMaxDumps();
+        if (maxDumps > 0 && attempt >= maxDumps) {
+            requestStop("выполнено дампов: " + attempt);
+        }
+    }
+
+    /**
+     * Просит главный поток завершить работу. Сама остановка ждет задачи планировщика,
+     * поэтому из них не выполняется: задача лишь подает сигнал и завершается.
+     */
+    public void requestStop(String reason) {
+        if (stopRequested.getCount() > 0) {
+            LOGGER.info("Запрошена остановка: " + reason);
+            stopRequested.countDown();
+        }
+    }
+
+    // true — остановку запросили, false — истек таймаут (run.max.runtime.seconds)
+    public boolean awaitStopRequest(long timeout, TimeUnit unit) throws InterruptedException {
+        if (timeout <= 0) {
+            stopRequested.await();
+            return true;
+        }
+        return stopRequested.await(timeout, unit);
+    }
+
+    // 0 — все дампы по таймеру прошли успешно
+    public int getExitStatus() {
+        return exitStatus;
+    }
+
+    /**
+     * Корректная остановка: новые запуски отменяются, начатые задачи дорабатывают
+     * до run.shutdown.timeout.seconds, затем закрываются писатель БД и пул соединений.
+     * Повторный вызов (например, из обработчика SIGTERM) ждет первую остановку и ничего не делает.
+     */
+    public synchronized void shutdown() {
+        if (!isRunning) {
+            return;
+        }
         isRunning = false;
         try {
-            // 1. Остановка планировщиков
-            scheduler.shutdownNow();
-
-//            try {
-//            if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
-//                scheduler.shutdownNow();
-//                LOGGER.info("Получен сигнал завершения gjckt if");
-//
-//            }
-//            } catch (InterruptedException e) {
-//                scheduler.shutdownNow();
-//                Thread.currentThread().interrupt();
-//            }
+            // 1. Остановка планировщиков с ожиданием выполняющихся задач
+            scheduler.shutdown();
+            int timeout = config.getRunShutdownTimeoutSeconds();
+            if (!scheduler.awaitTermination(timeout, TimeUnit.SECONDS)) {
+                LOGGER.warning("Задачи планировщика не завершились за " + timeout + " с, прерываются");
+                scheduler.shutdownNow();
+            }
+            LOGGER.info("Итоговая задержка запуска задач, мкс: " + scheduler.getSchedulingLag().summary());
+            if (shardedUpdater != null) {
+                shardedUpdater.close();
+            }
 
             // 2. Очистка триггеров базы данных
             contactService.cleanupDatabase();
 
-            LOGGER.info("Все сервисы остановлены и база данных очищена");
-            System.exit(0);
+            // Датчики пула читают живой пул, поэтому сводка — до его закрытия
+            if (config.getMetricsReportSeconds() > 0) {
+                LOGGER.info("Итоговые метрики: " + MetricsRegistry.summary());
+            }
+
+            // 3. Закрытие пула соединений
+            DbConnection.shutdown();
 
+            LOGGER.info("Все сервисы остановлены и база данных очищена");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            scheduler.shutdownNow();
+            exitStatus = 1;
+            LOGGER.warning("Ожидание задач при остановке прервано");
         } catch (Exception e) {
+            exitStatus = 1;
             LOGGER.log(Level.SEVERE, "Ошибка при завершении работы", e);
-            System.exit(1);
         }
     }
 }
-}
\ No newline at end of file
@@ -0,0 +1,174 @@
+package org.example.scheduler;
+
+import org.example.config.AppConfig;
+import org.example.dao.ContactDao;
+import org.example.dao.WriteCoordinator;
+import org.example.util.PhoneNumbers;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Многополосный генератор обновлений телефонов.
+ * Диапазон ID делится на непересекающиеся шарды, каждая полоса по тику таймера выдает
+ * свою долю от updater.rate изменений в секунду одной командой в WriteCoordinator DAO,
+ * который сводит команды всех полос в общие транзакции.
+ * Полосы не блокируются: если очередь писателя полна, недоданные изменения переносятся
+ * на следующий тик (не более секунды задолженности). При updater.adaptive=true темп
+ * задает UpdateRateController, и каждая полоса берет свою долю его текущего значения.
+ * ID в шарде выбираются равномерно или по Ципфу (updater.key.distribution), от updater.seed.
+ */
+public class ShardedPhoneUpdater implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(ShardedPhoneUpdater.class.getName());
+
+    private final ContactDao contactDao;
+    private final int laneCount;
+    private final double rate;
+    private final int tickMs;
+    private final int reportSeconds;
+    private final boolean zipfian;
+    private final double zipfExponent;
+    private final Long seed;
+    private final WriteCoordinator writer;
+    // null — постоянный темп updater.rate
+    private final UpdateRateController rateController;
+    private volatile int activeLanes = 1;
+    private final LongAdder committedRows = new LongAdder();
+    private final LongAdder failedRows = new LongAdder();
+    private final LongAdder deferred = new LongAdder();
+    private final AtomicBoolean failureLogged = new AtomicBoolean();
+
+    private long reportedRows = 0;
+    private long reportedAt = System.nanoTime();
+
+    public ShardedPhoneUpdater(ContactDao contactDao, AppConfig config, UpdateRateController rateController) {
+        this.contactDao = contactDao;
+        this.laneCount = Math.max(1, config.getUpdaterLanes());
+        this.rate = Math.max(1, config.getUpdaterRate());
+        this.tickMs = Math.max(1, config.getUpdaterTickMs());
+        this.reportSeconds = config.getUpdaterReportSeconds();
+        String distribution = config.getUpdaterKeyDistribution();
+        if (!"uniform".equals(distribution) && !"zipfian".equals(distribution)) {
+            throw new IllegalArgumentException("Неизвестное распределение ключей обновлений: " + distribution);
+        }
+        this.zipfian = config.isUpdaterKeysZipfian();
+        this.zipfExponent = config.getUpdaterZipfExponent();
+        this.seed = config.getUpdaterSeed();
+        this.writer = contactDao.getWriteCoordinator();
+        this.rateController = rateController;
+    }
+
+    public void start(TaskEngine engine) throws SQLException {
+        int[] range = contactDao.getIdRange();
+        if (range[1] <= 0) {
+            LOGGER.warning("Таблица контактов пуста, полосы обновлений не запущены");
+            return;
+        }
+        long span = (long) range[1] - range[0] + 1;
+        int lanes = (int) Math.min(laneCount, span);
+        activeLanes = lanes;
+        SplittableRandom seeds = seed != null ? new SplittableRandom(seed) : new SplittableRandom();
+        for (int i = 0; i < lanes; i++) {
+            int from = (int) (range[0] + span * i / lanes);
+            int to = (int) (range[0] + span * (i + 1) / lanes - 1);
+            ZipfianIds keys = zipfian ? new ZipfianIds(to - from + 1, zipfExponent) : null;
+            engine.scheduleAtFixedRate(new Lane(from, to, keys, seeds.split()), tickMs, tickMs,
+                    TimeUnit.MILLISECONDS);
+        }
+        if (reportSeconds > 0) {
+            engine.scheduleAtFixedRate(this::report, reportSeconds, reportSeconds, TimeUnit.SECONDS);
+        }
+
+        LOGGER.info(String.format(
+                "Запущено полос обновления: %d по ID %d..%d, цель %.0f изменений/сек, тик %d мс, ключи %s",
+                lanes, range[0], range[1], rate, tickMs, zipfian ? "по Ципфу (s=" + zipfExponent + ")" : "равномерно"
+        ));
+    }
+
+    private synchronized void report() {
+        long now = System.nanoTime();
+        long rows = committedRows.sum();
+        double seconds = (now - reportedAt) / 1e9;
+        LOGGER.info(String.format(
+                "Обновления: %.0f строк/сек (цель %.0f), коммитов %d, отложено %d, ошибок %d, в очереди %d; " +
+                        "коммит, мкс: %s; строк в коммите: %s; команд в коммите: %s",
+                (rows - reportedRows) / seconds, targetRate(), writer.getCommits(), deferred.sum(), failedRows.sum(),
+                writer.getQueueSize(), writer.getCommitLatency().summary(), writer.getBatchRows().summary(),
+                writer.getBatchCommands().summary()
+        ));
+        reportedRows = rows;
+        reportedAt = now;
+    }
+
+    private double targetRate() {
+        return rateController != null ? rateController.getRate() : rate;
+    }
+
+    // Итоговая сводка; принятые команды дописывает WriteCoordinator при закрытии DAO
+    @Override
+    public void close() {
+        report();
+    }
+
+    // Полоса: задачи одной полосы не перекрываются, поэтому состояние без синхронизации
+    private final class Lane implements Runnable {
+        private final int fromId;
+        private final int span;
+        // null — равномерный выбор ID
+        private final ZipfianIds keys;
+        private final SplittableRandom random;
+        private double credit = 0;
+        // Строки текущего credit, уже учтенные в deferred: пока очередь полна, каждая считается один раз
+        private int deferredDue = 0;
+        private long last = System.nanoTime();
+
+        Lane(int fromId, int toId, ZipfianIds keys, SplittableRandom random) {
+            this.fromId = fromId;
+            this.span = toId - fromId + 1;
+            this.keys = keys;
+            this.random = random;
+        }
+
+        @Override
+        public void run() {
+            long now = System.nanoTime();
+            double laneRate = targetRate() / activeLanes;
+            credit = Math.min(Math.max(1, laneRate), credit + (now - last) * laneRate / 1e9);
+            last = now;
+            int due = (int) credit;
+            if (due == 0) {
+                return;
+            }
+            if (writer.getQueueSize() >= writer.getQueueCapacity()) {
+                deferred.add(Math.max(0, due - deferredDue));
+                deferredDue = due;
+                return;
+            }
+            // Повторы одного ID в пределах тика схлопываются — побеждает последнее значение
+            Map<Integer, String> changes = new LinkedHashMap<>();
+            for (int i = 0; i < due; i++) {
+                int id = fromId + (keys != null ? keys.next(random) : random.nextInt(span));
+                changes.put(id, PhoneNumbers.format(100 + random.nextInt(900), random.nextInt(100000)));
+            }
+            credit -= due;
+            deferredDue = 0;
+            contactDao.updateContactPhonesAsync(changes).whenComplete((updated, error) -> {
+                if (error == null) {
+                    committedRows.add(updated);
+                    return;
+                }
+                failedRows.add(changes.size());
+                if (failureLogged.compareAndSet(false, true)) {
+                    LOGGER.log(Level.SEVERE, "Ошибка фиксации обновлений телефонов", error);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package org.example.scheduler;
+
+import org.example.config.AppConfig;
+import org.example.metrics.LatencyHistogram;
+import org.example.metrics.MetricsRegistry;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Исполнение задач планировщика: один поток-таймер только отмеряет время
+ * и передает работу исполнителям — виртуальным потокам (Java 21+) или ограниченному пулу.
+ * Долгий дамп больше не задерживает обновление номеров, а задержка запуска
+ * (от запланированного момента до начала выполнения) копится в гистограмме.
+ */
+public final class TaskEngine {
+    private static final Logger LOGGER = Logger.getLogger(TaskEngine.class.getName());
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final ScheduledExecutorService timer;
+    private final ExecutorService workers;
+    private final String description;
+    private final LatencyHistogram schedulingLag = new LatencyHistogram();
+    private final AtomicLong overruns = new AtomicLong();
+    private volatile boolean shutdown = false;
+
+    private TaskEngine(ExecutorService workers, String description) {
+        this.timer = Executors.newSingleThreadScheduledExecutor(namedFactory("scheduler-timer"));
+        this.workers = workers;
+        this.description = description;
+        MetricsRegistry.register("scheduler.lag", schedulingLag);
+        MetricsRegistry.gauge("scheduler.overruns", overruns::get);
+    }
+
+    public static TaskEngine create(AppConfig config) {
+        if (config.isSchedulerVirtualThreads()) {
+            ExecutorService virtual = newVirtualThreadExecutor();
+            if (virtual != null) {
+                return new TaskEngine(virtual, "virtual threads");
+            }
+            LOGGER.warning("Виртуальные потоки недоступны (нужна Java 21+), используется пул потоков");
+        }
+        int threads = Math.max(1, config.getSchedulerWorkerThreads());
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), namedFactory("scheduler-worker"));
+        pool.allowCoreThreadTimeOut(true);
+        return new TaskEngine(pool, "pool of " + threads + " threads");
+    }
+
+    // Сборка идет под Java 17, поэтому фабрика виртуальных потоков берется через рефлексию
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory namedFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return task -> new Thread(task, prefix + "-" + counter.incrementAndGet());
+    }
+
+    public void schedule(Runnable task, long delay, TimeUnit unit) {
+        long planned = System.nanoTime() + unit.toNanos(delay);
+        try {
+            timer.schedule(() -> dispatch(task, planned, null), delay, unit);
+        } catch (RejectedExecutionException e) {
+            if (!shutdown) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Запуск с фиксированным периодом. Выполнения одной задачи не перекрываются:
+     * если к очередному тику предыдущее еще идет, пропущенные тики сливаются в один
+     * повторный запуск сразу после завершения (как у ScheduledExecutorService).
+     */
+    public void scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
+        FixedRateTask periodic = new FixedRateTask(task, System.nanoTime() + unit.toNanos(initialDelay),
+                unit.toNanos(period));
+        timer.scheduleAtFixedRate(periodic, initialDelay, period, unit);
+    }
+
+    public void scheduleWithFixedDelay(Runnable task, long initialDelay, long delay, TimeUnit unit) {
+        schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } finally {
+                    if (!shutdown) {
+                        schedule(this, delay, unit);
+                    }
+                }
+            }
+        }, initialDelay, unit);
+    }
+
+    private void dispatch(Runnable task, long planned, Runnable after) {
+        try {
+            workers.execute(() -> {
+                schedulingLag.record((System.nanoTime() - planned) / 1000);
+                try {
+                    task.run();
+                } catch (RuntimeException | Error e) {
+                    LOGGER.log(Level.SEVERE, "Необработанная ошибка задачи планировщика", e);
+                } finally {
+                    if (after != null) {
+                        after.run();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if (!shutdown) {
+                LOGGER.log(Level.SEVERE, "Задача отклонена исполнителем", e);
+            }
+        }
+    }
+
+    private final class FixedRateTask implements Runnable {
+        private final Runnable task;
+        private final long periodNanos;
+        private final AtomicBoolean running = new AtomicBoolean();
+        private final AtomicLong pendingPlanned = new AtomicLong(NONE);
+        private long nextPlanned;   // меняет только поток-таймер
+
+        FixedRateTask(Runnable task, long firstPlanned, long periodNanos) {
+            this.task = task;
+            this.nextPlanned = firstPlanned;
+            this.periodNanos = periodNanos;
+        }
+
+        // Тик таймера
+        @Override
+        public void run() {
+            long planned = nextPlanned;
+            nextPlanned += periodNanos;
+            if (running.compareAndSet(false, true)) {
+                dispatch(task, planned, this::finished);
+            } else {
+                overruns.incrementAndGet();
+                pendingPlanned.compareAndSet(NONE, planned);
+            }
+        }
+
+        private void finished() {
+            running.set(false);
+            long planned = pendingPlanned.getAndSet(NONE);
+            if (planned == NONE || shutdown) {
+                return;
+            }
+            if (running.compareAndSet(false, true)) {
+                dispatch(task, planned, this::finished);
+            } else {
+                // Тик успел запустить задачу сам — пропуск достанется его завершению
+                pendingPlanned.compareAndSet(NONE, planned);
+            }
+        }
+    }
+
+    /** Новые запуски отменяются, уже начатые задачи дорабатывают (см. awaitTermination). */
+    public void shutdown() {
+        shutdown = true;
+        timer.shutdownNow();
+        workers.shutdown();
+    }
+
+    public void shutdownNow() {
+        shutdown = true;
+        timer.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        return timer.awaitTermination(timeout, unit)
+                && workers.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    public boolean isShutdown() { return shutdown; }
+
+    // Задержка запуска задач, мкс
+    public LatencyHistogram getSchedulingLag() { return schedulingLag; }
+
+    // Сколько раз периодическая задача не успела к своему тику
+    public long getOverruns() { return overruns.get(); }
+
+    public String getDescription() { return description; }
+}
@@ -0,0 +1,128 @@
+package org.example.scheduler;
+
+import org.example.config.AppConfig;
+import org.example.dao.WriteCoordinator;
+import org.example.metrics.Counter;
+import org.example.metrics.LatencyHistogram;
+import org.example.metrics.MetricsRegistry;
+import org.example.util.ConnectionPool;
+import org.example.util.DbConnection;
+
+import java.util.logging.Logger;
+
+/**
+ * Регулятор темпа обновлений телефонов по здоровью БД (AIMD). Раз в окно updater.adaptive.window.ms
+ * с целью updater.adaptive.target.p99.ms сравниваются p99 фиксации групп писателя и p99 задержки
+ * запуска задач за окно, а также среднее ожидание соединения в пуле; очередь писателя, заполненная
+ * больше чем наполовину, тоже считается перегрузкой. При перегрузке темп делится пополам, без нее
+ * растет не больше чем на 1/20 диапазона за окно, пропорционально запасу до цели худшего из сигналов:
+ * у самой цели рост почти останавливается, и темп не раскачивается. Из темпа выводятся пачка
+ * и интервал PhoneUpdater, полосы ShardedPhoneUpdater делят темп между собой.
+ */
+public final class UpdateRateController implements Runnable {
+    private static final Logger LOGGER = Logger.getLogger(UpdateRateController.class.getName());
+    private static final int INCREASE_STEPS = 20;
+    private static final double DECREASE_FACTOR = 0.5;
+    private static final Counter INCREASES = MetricsRegistry.counter("updater.adaptive.increases");
+    private static final Counter DECREASES = MetricsRegistry.counter("updater.adaptive.decreases");
+
+    private final WriteCoordinator writer;
+    private final boolean sharded;
+    private final long targetMicros;
+    private final int minIntervalMs;
+    private final int maxIntervalMs;
+    private final int maxBatch;
+    private final double minRate;
+    private final double maxRate;
+    private final double increase;
+    private final LatencyHistogram.Interval commitWindow;
+    private final LatencyHistogram.Interval lagWindow;
+    private long lastWaitNanos;
+    private long lastBorrows;
+    // Изменений в секунду; читают потоки обновлений, пишет только задача регулятора
+    private volatile double rate;
+
+    /**
+     * sharded = true: темп от 1 до updater.rate, стартует с updater.rate.
+     * Иначе — от одного контакта за phone.update.max.interval до max.contacts.to.update
+     * за phone.update.min.interval, старт со среднего темпа случайного расписания.
+     */
+    public UpdateRateController(AppConfig config, WriteCoordinator writer, TaskEngine engine, boolean sharded) {
+        this.writer = writer;
+        this.sharded = sharded;
+        this.targetMicros = Math.max(1, config.getUpdaterAdaptiveTargetP99Ms()) * 1000L;
+        this.minIntervalMs = Math.max(1, config.getPhoneUpdateMinInterval());
+        this.maxIntervalMs = Math.max(minIntervalMs, config.getPhoneUpdateMaxInterval());
+        this.maxBatch = Math.max(1, config.getMaxContactsToUpdate());
+        if (sharded) {
+            this.minRate = 1;
+            this.maxRate = Math.max(1, config.getUpdaterRate());
+            this.rate = maxRate;
+        } else {
+            this.minRate = 1000.0 / maxIntervalMs;
+            this.maxRate = maxBatch * 1000.0 / minIntervalMs;
+            this.rate = (maxBatch + 1) / 2.0 * 1000.0 / ((minIntervalMs + maxIntervalMs) / 2.0);
+        }
+        this.increase = (maxRate - minRate) / INCREASE_STEPS;
+        this.commitWindow = writer.getCommitLatency().interval();
+        this.lagWindow = engine.getSchedulingLag().interval();
+        ConnectionPool pool = DbConnection.getPool();
+        this.lastWaitNanos = pool.getTotalWaitNanos();
+        this.lastBorrows = pool.getBorrowCount();
+
+        MetricsRegistry.gauge("updater.adaptive.rate", () -> Math.round(rate));
+        MetricsRegistry.gauge("updater.adaptive.batch", this::getBatchSize);
+        MetricsRegistry.gauge("updater.adaptive.intervalMs", this::getIntervalMs);
+    }
+
+    @Override
+    public void run() {
+        commitWindow.advance();
+        lagWindow.advance();
+        ConnectionPool pool = DbConnection.getPool();
+        long waitNanos = pool.getTotalWaitNanos();
+        long borrows = pool.getBorrowCount();
+        long poolWaitMicros = borrows > lastBorrows ? (waitNanos - lastWaitNanos) / 1000 / (borrows - lastBorrows) : 0;
+        lastWaitNanos = waitNanos;
+        lastBorrows = borrows;
+
+        long commitP99 = commitWindow.percentile(0.99);
+        long lagP99 = lagWindow.percentile(0.99);
+        long worst = Math.max(commitP99, Math.max(lagP99, poolWaitMicros));
+        boolean queueFull = writer.getQueueSize() > writer.getQueueCapacity() / 2;
+        double previous = rate;
+        if (worst > targetMicros || queueFull) {
+            rate = Math.max(minRate, previous * DECREASE_FACTOR);
+            DECREASES.increment();
+            LOGGER.info(String.format(
+                    "Перегрузка БД (p99 фиксации %d мкс, p99 задержки задач %d мкс, ожидание пула %d мкс, " +
+                            "очередь записи %d/%d): темп %.1f -> %.1f изменений/сек%s",
+                    commitP99, lagP99, poolWaitMicros, writer.getQueueSize(), writer.getQueueCapacity(),
+                    previous, rate, describeTick()));
+        } else if (previous < maxRate) {
+            double headroom = 1 - (double) worst / targetMicros;
+            rate = Math.min(maxRate, previous + increase * headroom);
+            INCREASES.increment();
+            LOGGER.fine(String.format("Темп обновлений %.1f -> %.1f изменений/сек%s (p99 фиксации %d мкс)",
+                    previous, rate, describeTick(), commitP99));
+        }
+    }
+
+    private String describeTick() {
+        return sharded ? "" : ", пачка " + getBatchSize() + ", интервал " + getIntervalMs() + " мс";
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    // Интервал PhoneUpdater: по одному контакту, пока темп ниже одной пачки за минимальный интервал
+    public int getIntervalMs() {
+        double current = rate;
+        return (int) Math.max(minIntervalMs, Math.min(maxIntervalMs, Math.round(1000 / current)));
+    }
+
+    public int getBatchSize() {
+        return (int) Math.max(1, Math.min(maxBatch, Math.round(rate * getIntervalMs() / 1000)));
+    }
+}
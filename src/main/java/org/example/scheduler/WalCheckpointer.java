@@ -0,0 +1,41 @@
+package org.example.scheduler;
+
+import org.example.util.DbConnection;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class WalCheckpointer implements Runnable {
+    private static final Logger LOGGER = Logger.getLogger(WalCheckpointer.class.getName());
+
+    private final String mode;
+
+    public WalCheckpointer(String mode) {
+        this.mode = mode;
+    }
+
+    @Override
+    public void run() {
+        String sql = "PRAGMA wal_checkpoint(" + mode + ")";
+
+        // Соединение для записи не нужно. PASSIVE переносит только то, что можно без ожидания,
+        // и не мешает обновлениям; FULL/RESTART/TRUNCATE ждут писателя и блокируют запись до конца переноса
+        try (Connection conn = DbConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            if (rs.next()) {
+                // busy, кадров в WAL, перенесено в БД
+                LOGGER.fine(String.format(
+                        "Контрольная точка WAL (%s): busy=%d, кадров=%d, перенесено=%d",
+                        mode, rs.getInt(1), rs.getInt(2), rs.getInt(3)
+                ));
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Ошибка контрольной точки WAL", e);
+        }
+    }
+}
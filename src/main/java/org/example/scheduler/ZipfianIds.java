@@ -0,0 +1,49 @@
+package org.example.scheduler;
+
+import java.util.SplittableRandom;
+
+/**
+ * Смещения 0..span-1 с распределением Ципфа: смещение k выпадает с вероятностью ~ 1/(k+1)^s.
+ * Приближение Грея и др. ("Quickly Generating Billion-Record Synthetic Databases"), как в YCSB:
+ * одна сумма дзета-функции при создании (O(span)), дальше O(1) на значение.
+ */
+final class ZipfianIds {
+    private final int span;
+    private final double alpha;
+    private final double zetaN;
+    private final double eta;
+    private final double secondThreshold;
+
+    ZipfianIds(int span, double exponent) {
+        if (!(exponent > 0 && exponent < 1)) {
+            throw new IllegalArgumentException("updater.zipf.exponent должен быть в интервале (0, 1): " + exponent);
+        }
+        this.span = span;
+        this.alpha = 1 / (1 - exponent);
+        this.zetaN = zeta(span, exponent);
+        double zeta2 = zeta(2, exponent);
+        this.eta = (1 - Math.pow(2.0 / span, 1 - exponent)) / (1 - zeta2 / zetaN);
+        this.secondThreshold = 1 + Math.pow(0.5, exponent);
+    }
+
+    private static double zeta(int n, double exponent) {
+        double sum = 0;
+        for (int i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, exponent);
+        }
+        return sum;
+    }
+
+    int next(SplittableRandom random) {
+        double u = random.nextDouble();
+        double uz = u * zetaN;
+        if (uz < 1 || span == 1) {
+            return 0;
+        }
+        if (uz < secondThreshold) {
+            return 1;
+        }
+        int offset = (int) (span * Math.pow(eta * u - eta + 1, alpha));
+        return Math.min(offset, span - 1);
+    }
+}
@@ -0,0 +1,242 @@
+package org.example.service;
+
+import org.example.config.AppConfig;
+import org.example.dao.ContactDao;
+import org.example.util.PhoneNumbers;
+import org.example.util.PragmaProfile;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Параллельная генерация контактов с конвейерной вставкой.
+ * Данные делятся на блоки по chunkSize строк; блок c генерирует поток c % threads
+ * генератором, засеянным от (seed, c), поэтому результат не зависит от числа потоков.
+ * Единственный писатель забирает блоки строго по порядку и вставляет их многострочными
+ * INSERT крупными транзакциями. У каждого потока ограниченный набор блоков, которые писатель
+ * возвращает после вставки, — генерация не убегает вперед записи.
+ */
+public class ContactGenerator {
+    private static final Logger LOGGER = Logger.getLogger(ContactGenerator.class.getName());
+    private static final int CHUNKS_PER_PRODUCER = 4;
+
+    private final ContactDao contactDao;
+    private final String[] names;
+    private final int threads;
+    private final int chunkSize;
+    private final int rowsPerInsert;
+    private final int commitRows;
+    private final Map<String, String> pragmas;
+    private final long seed;
+    private final boolean phonePacked;
+
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    public ContactGenerator(ContactDao contactDao, AppConfig config) {
+        this.contactDao = contactDao;
+        this.names = config.getNames();
+        this.threads = Math.max(1, config.getGeneratorThreads());
+        this.chunkSize = Math.max(1, config.getGeneratorChunkSize());
+        this.rowsPerInsert = Math.min(ContactDao.MAX_ROWS_PER_INSERT, Math.max(1, config.getGeneratorRowsPerInsert()));
+        if (rowsPerInsert < config.getGeneratorRowsPerInsert()) {
+            LOGGER.warning(String.format("generator.rows.per.insert=%d превышает предел параметров SQLite, используется %d",
+                    config.getGeneratorRowsPerInsert(), rowsPerInsert));
+        }
+        this.commitRows = Math.max(1, config.getGeneratorCommitRows());
+        this.pragmas = config.getGeneratorPragmas();
+        Long configuredSeed = config.getGeneratorSeed();
+        this.seed = configuredSeed != null ? configuredSeed : System.nanoTime();
+        this.phonePacked = contactDao.isPhonePacked();
+    }
+
+    // Фактический seed: из generator.seed или выбранный при создании генератора
+    public long getSeed() {
+        return seed;
+    }
+
+    public void generate(int numRecords) throws SQLException {
+        LOGGER.info(String.format(
+                "Начало генерации %d записей: потоков %d, блок %d, строк в INSERT %d, seed=%d",
+                numRecords, threads, chunkSize, rowsPerInsert, seed
+        ));
+        long startTime = System.nanoTime();
+
+        int chunkCount = (int) ((numRecords + (long) chunkSize - 1) / chunkSize);
+        Lane[] lanes = new Lane[Math.min(threads, Math.max(1, chunkCount))];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(i);
+        }
+
+        // Загрузка идет эксклюзивной командой писателя БД: свои транзакции и временные PRAGMA
+        try {
+            contactDao.getWriteCoordinator().executeExclusive(connection -> {
+                Map<String, String> previous = PragmaProfile.applyTemporary(connection, pragmas);
+                for (Lane lane : lanes) {
+                    lane.start(numRecords, chunkCount, lanes.length);
+                }
+                try {
+                    write(connection, lanes, numRecords, chunkCount);
+                } finally {
+                    for (Lane lane : lanes) {
+                        lane.stop();
+                    }
+                    contactDao.invalidateCaches();
+                    PragmaProfile.restore(connection, previous);
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Ошибка генерации данных", e);
+            throw e;
+        }
+
+        double duration = (System.nanoTime() - startTime) / 1e9;
+        LOGGER.info(String.format(
+                "Генерация завершена за %.2f сек (%.1f записей/сек)",
+                duration, numRecords / duration
+        ));
+    }
+
+    private void write(Connection connection, Lane[] lanes, int numRecords, int chunkCount) throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            long written = 0;
+            long uncommitted = 0;
+            for (int c = 0; c < chunkCount; c++) {
+                Lane lane = lanes[c % lanes.length];
+                Chunk chunk = lane.nextFilled();
+                if (phonePacked) {
+                    contactDao.insertContacts(connection, chunk.names, chunk.phoneCodes, chunk.size, rowsPerInsert);
+                } else {
+                    contactDao.insertContacts(connection, chunk.names, chunk.phones, chunk.size, rowsPerInsert);
+                }
+                written += chunk.size;
+                uncommitted += chunk.size;
+                lane.recycle(chunk);
+
+                if (uncommitted >= commitRows || written == numRecords) {
+                    connection.commit();
+                    uncommitted = 0;
+                    LOGGER.info(String.format(
+                            "Обработано: %d/%d (%.1f%%)",
+                            written, numRecords, (written * 100.0 / numRecords)
+                    ));
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            // PRAGMA synchronous нельзя вернуть внутри открытой транзакции
+            connection.setAutoCommit(true);
+        }
+    }
+
+    // Детерминированный генератор блока: SplitMix64-перемешивание пары (seed, номер блока)
+    private static long chunkSeed(long seed, long chunkIndex) {
+        long z = seed + (chunkIndex + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // Телефоны блока — строками или, при phone.encoding=packed, сразу упакованными числами
+    private static final class Chunk {
+        final String[] names;
+        final String[] phones;
+        final int[] phoneCodes;
+        int size;
+
+        Chunk(int capacity, boolean packed) {
+            names = new String[capacity];
+            phones = packed ? null : new String[capacity];
+            phoneCodes = packed ? new int[capacity] : null;
+        }
+    }
+
+    // Поток-производитель со своей парой очередей: свободные и заполненные блоки
+    private final class Lane {
+        private final int index;
+        private final BlockingQueue<Chunk> free = new ArrayBlockingQueue<>(CHUNKS_PER_PRODUCER);
+        private final BlockingQueue<Chunk> filled = new ArrayBlockingQueue<>(CHUNKS_PER_PRODUCER);
+        private Thread thread;
+
+        Lane(int index) {
+            this.index = index;
+        }
+
+        void start(int numRecords, int chunkCount, int laneCount) {
+            thread = new Thread(() -> produce(numRecords, chunkCount, laneCount), "contact-generator-" + index);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void produce(int numRecords, int chunkCount, int laneCount) {
+            try {
+                for (int i = 0; i < CHUNKS_PER_PRODUCER; i++) {
+                    free.add(new Chunk(chunkSize, phonePacked));
+                }
+                for (int c = index; c < chunkCount; c += laneCount) {
+                    Chunk chunk = free.take();
+                    fill(chunk, c, (int) Math.min(chunkSize, numRecords - (long) c * chunkSize));
+                    filled.put(chunk);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException | Error e) {
+                failure.compareAndSet(null, e);
+            }
+        }
+
+        private void fill(Chunk chunk, int chunkIndex, int rows) {
+            SplittableRandom random = new SplittableRandom(chunkSeed(seed, chunkIndex));
+            for (int i = 0; i < rows; i++) {
+                chunk.names[i] = names[random.nextInt(names.length)];
+                int prefix = 100 + random.nextInt(900);
+                int suffix = random.nextInt(100000);
+                if (phonePacked) {
+                    chunk.phoneCodes[i] = prefix * 100000 + suffix;
+                } else {
+                    chunk.phones[i] = PhoneNumbers.format(prefix, suffix);
+                }
+            }
+            chunk.size = rows;
+        }
+
+        Chunk nextFilled() throws SQLException {
+            try {
+                while (true) {
+                    Chunk chunk = filled.poll(100, TimeUnit.MILLISECONDS);
+                    if (chunk != null) {
+                        return chunk;
+                    }
+                    Throwable error = failure.get();
+                    if (error != null) {
+                        throw new SQLException("Сбой потока генерации", error);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Генерация прервана", e);
+            }
+        }
+
+        void recycle(Chunk chunk) {
+            free.add(chunk);
+        }
+
+        void stop() {
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+    }
+}
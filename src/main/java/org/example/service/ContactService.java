@@ -2,20 +2,31 @@ package org.example.service;
 
 import org.example.config.AppConfig;
 import org.example.dao.ContactDao;
-import org.example.model.Contact;
-import org.example.util.DbConnection;
-import java.sql.Connection;
+import org.example.metrics.Counter;
+import org.example.metrics.LatencyHistogram;
+import org.example.metrics.MetricsRegistry;
+import org.example.util.PhoneNumbers;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.SQLException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class ContactService {
     private static final Logger LOGGER = Logger.getLogger(ContactService.class.getName());
-    private static final int BATCH_SIZE = 1000;
+    private static final LatencyHistogram GENERATE_TIMER = MetricsRegistry.timer("service.generateData");
+    private static final Counter UPDATED_CONTACTS = MetricsRegistry.counter("updater.contacts");
+    private static final LatencyHistogram INITIALIZE_TIMER = MetricsRegistry.timer("startup.initializeDatabase");
+    private static final LatencyHistogram RESTORE_TIMER = MetricsRegistry.timer("startup.restoreTemplate");
 
+    private final AppConfig config;
     private final ContactDao contactDao;
     private final String[] names;
     private final int numRecords;
@@ -24,6 +35,7 @@ public class ContactService {
 
     public ContactService(AppConfig config) {
         LOGGER.info("Инициализация ContactService с конфигурацией...");
+        this.config = config;
         this.contactDao = new ContactDao(config.getTableName(), config);
         this.names = config.getNames();
         this.numRecords = config.getNumRecords();
@@ -32,99 +44,163 @@ public class ContactService {
 
     public void initializeDatabase() throws SQLException {
         LOGGER.info("Начало инициализации базы данных...");
-        int existingCount = contactDao.getCount();
-
-        if (existingCount > 0) {
-            LOGGER.info("Обнаружено существующих записей: " + existingCount);
-            if (shouldRegenerateData()) {
-                regenerateData();
-            }
+        long start = System.nanoTime();
+        DatasetFingerprint expected = DatasetFingerprint.expected(config);
+        Map<String, String> metadata = contactDao.readMetadata();
+        DatasetFingerprint stored = DatasetFingerprint.fromMetadata(metadata);
+        String mode = config.getDataRegenerate();
+
+        if (stored != null && stored.satisfies(expected) && !"yes".equals(mode)) {
+            // Отпечаток пишется только после полной генерации, поэтому COUNT(*) не нужен
+            LOGGER.info("Набор данных совпадает с конфигурацией (" + stored + "), генерация пропущена");
+        } else if ("auto".equals(mode) && !metadata.isEmpty()) {
+            // Метаданные пишет только генерация, поэтому данные созданы этим приложением и их можно заменить
+            LOGGER.info(stored == null
+                    ? "Генерация данных прошлого запуска не завершена, данные будут созданы заново"
+                    : "Набор данных (" + stored + ") не совпадает с конфигурацией (" + expected + ")");
+            regenerateData();
         } else {
-            generateData();
+            int existingCount = contactDao.getCount();
+            if (existingCount > 0) {
+                LOGGER.info("Обнаружено существующих записей: " + existingCount);
+                if (shouldRegenerateData()) {
+                    regenerateData();
+                }
+            } else {
+                generateData();
+            }
         }
 
         //  Инициализация системы логирования
         LOGGER.info("Инициализация системы логирования...");
         contactDao.createLoggingInfrastructure();
+        INITIALIZE_TIMER.recordSince(start);
+        LOGGER.info(String.format("База данных готова за %d мс",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
     }
 
+    // data.regenerate: no / yes без участия оператора, ask — вопрос в консоли (без ввода — оставить данные).
+    // auto попадает сюда только для данных без метаданных (БД прежних версий) и тоже спрашивает
     private boolean shouldRegenerateData() {
-        System.out.print("В таблице уже есть данные. Перегенерировать? (y/n): ");
-        return new Scanner(System.in).next().equalsIgnoreCase("y");
+        switch (config.getDataRegenerate()) {
+            case "yes":
+                return true;
+            case "ask":
+            case "auto":
+                System.out.print("В таблице уже есть данные. Перегенерировать? (y/n): ");
+                Scanner scanner = new Scanner(System.in);
+                return scanner.hasNext() && scanner.next().equalsIgnoreCase("y");
+            default:
+                LOGGER.info("Существующие данные сохранены (data.regenerate=" + config.getDataRegenerate() + ")");
+                return false;
+        }
     }
 
     public void regenerateData() throws SQLException {
         LOGGER.info("Перегенерация данных...");
+        if (restoreTemplate()) {
+            return;
+        }
         contactDao.deleteAll(contactDao.getTableName());
         generateData();
     }
 
     public void generateData() throws SQLException {
-        LOGGER.info(String.format(
-                "Начало генерации %d записей (пакетами по %d)...",
-                numRecords, BATCH_SIZE
-        ));
-
-        long startTime = System.currentTimeMillis();
-
-        try (Connection connection = DbConnection.getConnection()) {
-            connection.setAutoCommit(false);
-            contactDao.initBatch(connection);  // Инициализируем batch
-
-            for (int i = 1; i <= numRecords; i++) {
-                Contact contact = new Contact(
-                        names[random.nextInt(names.length)],
-                        generateRandomPhoneNumber()
-                );
-
-                contactDao.insertContactBatch(connection, contact);
-
-                if (i % BATCH_SIZE == 0 || i == numRecords) {
-                    contactDao.executeBatch(connection);   // Выполняем batch
-                    LOGGER.info(String.format(
-                            "Обработано: %d/%d (%.1f%%)",
-                            i, numRecords, (i * 100.0 / numRecords)
-                    ));
-
-                    // Очищаем batch для следующего использования
-                    contactDao.clearBatch();
-                }
-            }
+        // История прежних данных к новым контактам не относится
+        long start = System.nanoTime();
+        try {
+            contactDao.clearHistoryStore();
+            // Прерванная генерация не должна оставить совпадающий отпечаток; непустая отметка
+            // отличает ее при следующем старте от БД прежних версий без метаданных
+            contactDao.writeMetadata(Map.of("state", "generating"));
+            ContactGenerator generator = new ContactGenerator(contactDao, config);
+            generator.generate(numRecords);
+            contactDao.writeMetadata(DatasetFingerprint.generated(config, generator.getSeed()).toMetadata());
+        } finally {
+            GENERATE_TIMER.recordSince(start);
+        }
+        saveTemplate();
+    }
 
+    // Шаблон с подходящим отпечатком восстанавливается постранично вместо вставки строк
+    private boolean restoreTemplate() throws SQLException {
+        Path template = templateFile();
+        if (template == null || !Files.isRegularFile(template)) {
+            return false;
+        }
+        DatasetFingerprint expected = DatasetFingerprint.expected(config);
+        DatasetFingerprint fingerprint = DatasetFingerprint.fromMetadata(ContactDao.readMetadata(template));
+        if (fingerprint == null || !fingerprint.satisfies(expected)) {
+            LOGGER.info("Шаблон " + template + " не подходит (" + fingerprint + "), данные будут сгенерированы");
+            return false;
+        }
+        long start = System.nanoTime();
+        contactDao.clearHistoryStore();
+        contactDao.restoreFrom(template);
+        RESTORE_TIMER.recordSince(start);
+        LOGGER.info(String.format("БД восстановлена из шаблона %s за %d мс (%s)",
+                template, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), fingerprint));
+        return true;
+    }
 
+    // После генерации копия БД сохраняется шаблоном, если прежнего шаблона нет или он не подходит
+    private void saveTemplate() {
+        Path template = templateFile();
+        if (template == null) {
+            return;
+        }
+        try {
+            if (Files.isRegularFile(template)) {
+                DatasetFingerprint existing = DatasetFingerprint.fromMetadata(ContactDao.readMetadata(template));
+                if (existing != null && existing.satisfies(DatasetFingerprint.expected(config))) {
+                    return;
+                }
+            }
+            long start = System.nanoTime();
+            contactDao.backupTo(template);
+            LOGGER.info(String.format("Шаблон БД сохранен в %s за %d мс",
+                    template, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
         } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Ошибка генерации данных", e);
-            throw e;
+            // Без шаблона следующая перегенерация просто пойдет полной вставкой
+            LOGGER.log(Level.WARNING, "Не удалось сохранить шаблон БД " + template, e);
         }
-
-        double duration = (System.currentTimeMillis() - startTime) / 1000.0;
-        LOGGER.info(String.format(
-                "Генерация завершена за %.2f сек (%.1f записей/сек)",
-                duration, numRecords / duration
-        ));
     }
 
+    private Path templateFile() {
+        String file = config.getDataTemplateFile();
+        return file.isEmpty() ? null : Paths.get(file);
+    }
 
     public void updateRandomContactsPhones() throws SQLException {
-        int numToUpdate = 1 + random.nextInt(maxContactsToUpdate);
+        updateRandomContactsPhones(1 + random.nextInt(maxContactsToUpdate));
+    }
+
+    // Размер пачки задает вызывающий (регулятор темпа обновлений)
+    public void updateRandomContactsPhones(int numToUpdate) throws SQLException {
         LOGGER.info("Обновление номеров для " + numToUpdate + " контактов");
 
         List<Integer> contactIds = contactDao.getRandomContactIds(numToUpdate);
 
+        Map<Integer, String> newPhones = new LinkedHashMap<>();
         for (int id : contactIds) {
-            String newPhone = generateRandomPhoneNumber();
-            contactDao.updateContactPhone(id, newPhone);
-            LOGGER.fine("Обновлен контакт ID=" + id + ", новый телефон: " + newPhone);
+            newPhones.put(id, generateRandomPhoneNumber());
         }
+        contactDao.updateContactPhones(newPhones);
+        UPDATED_CONTACTS.add(newPhones.size());
+        LOGGER.fine(() -> "Обновлены контакты: " + newPhones);
     }
 
     private String generateRandomPhoneNumber() {
-        return String.format("%03d-%05d", random.nextInt(900) + 100, random.nextInt(100000));
+        return PhoneNumbers.format(random.nextInt(900) + 100, random.nextInt(100000));
     }
 
     public void cleanupDatabase() {
         try {
             contactDao.dropLogTrigger();
+            // Принятые писателем изменения фиксируются до закрытия хранилища истории
+            contactDao.closeWriteCoordinator();
+            contactDao.closeHistoryStore();
+            contactDao.closeChangeBus();
             LOGGER.info("Очистка базы данных выполнена");
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Ошибка при очистке базы данных", e);
@@ -0,0 +1,84 @@
+package org.example.service;
+
+import org.example.config.AppConfig;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Отпечаток набора данных: версия схемы, таблица, число записей, seed генератора и кодировка телефонов.
+ * Записывается в таблицу метаданных после генерации; совпадение с ожидаемым по конфигурации
+ * позволяет использовать данные при старте без COUNT(*) и без перегенерации.
+ */
+public final class DatasetFingerprint {
+    // Увеличивается при изменении схемы таблицы контактов или алгоритма генерации
+    public static final int SCHEMA_VERSION = 1;
+
+    private final int schemaVersion;
+    private final String tableName;
+    private final int records;
+    // null в ожидаемом отпечатке: generator.seed не задан, подходит любой набор
+    private final Long seed;
+    private final String phoneEncoding;
+
+    private DatasetFingerprint(int schemaVersion, String tableName, int records, Long seed, String phoneEncoding) {
+        this.schemaVersion = schemaVersion;
+        this.tableName = tableName;
+        this.records = records;
+        this.seed = seed;
+        this.phoneEncoding = phoneEncoding;
+    }
+
+    public static DatasetFingerprint expected(AppConfig config) {
+        return new DatasetFingerprint(SCHEMA_VERSION, config.getTableName(), config.getNumRecords(),
+                config.getGeneratorSeed(), config.getPhoneEncoding());
+    }
+
+    public static DatasetFingerprint generated(AppConfig config, long seed) {
+        return new DatasetFingerprint(SCHEMA_VERSION, config.getTableName(), config.getNumRecords(),
+                seed, config.getPhoneEncoding());
+    }
+
+    // null, если отпечатка нет или он неполный
+    public static DatasetFingerprint fromMetadata(Map<String, String> metadata) {
+        try {
+            String version = metadata.get("schema.version");
+            String table = metadata.get("table");
+            String records = metadata.get("records");
+            String seed = metadata.get("seed");
+            String encoding = metadata.get("phone.encoding");
+            if (version == null || table == null || records == null || seed == null || encoding == null) {
+                return null;
+            }
+            return new DatasetFingerprint(Integer.parseInt(version), table, Integer.parseInt(records),
+                    Long.parseLong(seed), encoding);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public Map<String, String> toMetadata() {
+        Map<String, String> metadata = new LinkedHashMap<>();
+        metadata.put("schema.version", String.valueOf(schemaVersion));
+        metadata.put("table", tableName);
+        metadata.put("records", String.valueOf(records));
+        metadata.put("seed", String.valueOf(seed));
+        metadata.put("phone.encoding", phoneEncoding);
+        return metadata;
+    }
+
+    // Этот (записанный) отпечаток подходит под ожидаемый по конфигурации
+    public boolean satisfies(DatasetFingerprint expected) {
+        return schemaVersion == expected.schemaVersion
+                && tableName.equals(expected.tableName)
+                && records == expected.records
+                && phoneEncoding.equals(expected.phoneEncoding)
+                && (expected.seed == null || expected.seed.equals(seed));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("схема v%d, %s: %d записей, seed=%s, телефоны %s",
+                schemaVersion, tableName, records, seed != null ? seed : "любой", phoneEncoding);
+    }
+}
@@ -0,0 +1,479 @@
+package org.example.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Ограниченный пул соединений SQLite: одно выделенное соединение для записи
+ * и до N соединений для чтения. Выданные соединения — прокси, у которых
+ * close() возвращает соединение в пул вместо закрытия файла БД.
+ */
+public final class ConnectionPool implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class.getName());
+    private static final int VALIDATION_TIMEOUT_SECONDS = 1;
+
+    private final String url;
+    private final int maxReaders;
+    private final long borrowTimeoutMs;
+    private final long idleTimeoutMs;
+    private final long validationIntervalMs;
+    private final PragmaProfile pragmaProfile;
+    private final int statementCacheSize;
+
+    private final Semaphore readerPermits;
+    private final LinkedBlockingDeque<PooledConnection> idleReaders = new LinkedBlockingDeque<>();
+    private final Semaphore writerPermit = new Semaphore(1, true);
+    private PooledConnection writer;
+
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed = false;
+
+    // Метрики пула
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder createdCount = new LongAdder();
+    private final LongAdder evictedCount = new LongAdder();
+    private final LongAdder statementHits = new LongAdder();
+    private final LongAdder statementMisses = new LongAdder();
+    private final AtomicInteger activeCount = new AtomicInteger();
+
+    public ConnectionPool(String url, int maxReaders, long borrowTimeoutMs,
+                          long idleTimeoutMs, long validationIntervalMs, PragmaProfile pragmaProfile,
+                          int statementCacheSize) {
+        this.url = url;
+        this.maxReaders = maxReaders;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.validationIntervalMs = validationIntervalMs;
+        this.pragmaProfile = pragmaProfile;
+        this.statementCacheSize = statementCacheSize;
+        this.readerPermits = new Semaphore(maxReaders, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "db-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, idleTimeoutMs / 2);
+        housekeeper.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public Connection borrowReader() throws SQLException {
+        long start = System.nanoTime();
+        acquire(readerPermits, "чтения");
+        waitNanos.add(System.nanoTime() - start);
+        try {
+            PooledConnection pooled;
+            while ((pooled = idleReaders.pollFirst()) != null) {
+                if (isHealthy(pooled)) {
+                    break;
+                }
+                discard(pooled);
+            }
+            if (pooled == null) {
+                pooled = create(false);
+            }
+            return lend(pooled);
+        } catch (SQLException | RuntimeException e) {
+            readerPermits.release();
+            throw e;
+        }
+    }
+
+    public Connection borrowWriter() throws SQLException {
+        long start = System.nanoTime();
+        acquire(writerPermit, "записи");
+        waitNanos.add(System.nanoTime() - start);
+        try {
+            if (writer != null && !isHealthy(writer)) {
+                discard(writer);
+                writer = null;
+            }
+            if (writer == null) {
+                writer = create(true);
+            }
+            return lend(writer);
+        } catch (SQLException | RuntimeException e) {
+            writerPermit.release();
+            throw e;
+        }
+    }
+
+    private void acquire(Semaphore permits, String kind) throws SQLException {
+        if (closed) {
+            throw new SQLException("Пул соединений закрыт");
+        }
+        // Свободное разрешение берется без ожидания, даже если поток уже прерван (например, при shutdownNow)
+        if (permits.tryAcquire()) {
+            return;
+        }
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Истекло время ожидания соединения для " + kind
+                        + " (" + borrowTimeoutMs + " мс)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Ожидание соединения прервано", e);
+        }
+    }
+
+    private Connection lend(PooledConnection pooled) {
+        borrowCount.increment();
+        activeCount.incrementAndGet();
+        return pooled.newHandle();
+    }
+
+    private void giveBack(PooledConnection pooled) {
+        activeCount.decrementAndGet();
+        boolean reusable = resetState(pooled);
+        pooled.lastUsedAt = System.currentTimeMillis();
+
+        if (pooled.writer) {
+            if (!reusable || closed) {
+                discard(pooled);
+                writer = null;
+            }
+            writerPermit.release();
+            // close() мог не получить разрешение, пока соединение было выдано
+            if (closed) {
+                discardWriter();
+            }
+        } else {
+            if (reusable && !closed) {
+                idleReaders.offerFirst(pooled);
+            } else {
+                discard(pooled);
+            }
+            readerPermits.release();
+        }
+    }
+
+    // Незавершенная транзакция откатывается, чтобы следующий заемщик получил чистое соединение
+    private boolean resetState(PooledConnection pooled) {
+        try {
+            pooled.releaseStatements();
+            if (!pooled.raw.getAutoCommit()) {
+                pooled.raw.rollback();
+                pooled.raw.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Не удалось сбросить состояние соединения", e);
+            return false;
+        }
+    }
+
+    private boolean isHealthy(PooledConnection pooled) {
+        if (System.currentTimeMillis() - pooled.lastUsedAt < validationIntervalMs) {
+            return true;
+        }
+        try {
+            return pooled.raw.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection create(boolean forWriting) throws SQLException {
+        Connection raw = DriverManager.getConnection(url);
+        try {
+            pragmaProfile.apply(raw, forWriting);
+        } catch (SQLException e) {
+            raw.close();
+            throw e;
+        }
+        createdCount.increment();
+        LOGGER.fine("Открыто соединение " + (forWriting ? "для записи" : "для чтения") + ": " + url);
+        return new PooledConnection(raw, forWriting);
+    }
+
+    private void discard(PooledConnection pooled) {
+        try {
+            pooled.closeStatements();
+            pooled.raw.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Ошибка закрытия соединения", e);
+        }
+    }
+
+    private void evictIdle() {
+        long threshold = System.currentTimeMillis() - idleTimeoutMs;
+        Iterator<PooledConnection> it = idleReaders.descendingIterator();
+        while (it.hasNext()) {
+            PooledConnection pooled = it.next();
+            if (pooled.lastUsedAt < threshold && idleReaders.remove(pooled)) {
+                discard(pooled);
+                evictedCount.increment();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idleReaders.pollFirst()) != null) {
+            discard(pooled);
+        }
+        // Выданное сейчас соединение для записи закроется при возврате (giveBack)
+        discardWriter();
+        LOGGER.info("Пул соединений закрыт. " + describeMetrics());
+    }
+
+    private void discardWriter() {
+        if (writerPermit.tryAcquire()) {
+            if (writer != null) {
+                discard(writer);
+                writer = null;
+            }
+            writerPermit.release();
+        }
+    }
+
+    public String describeMetrics() {
+        long borrows = borrowCount.sum();
+        double avgWaitUs = borrows == 0 ? 0 : waitNanos.sum() / 1000.0 / borrows;
+        return String.format("Выдано: %d, среднее ожидание: %.1f мкс, активных: %d, " +
+                        "простаивающих читателей: %d/%d, открыто: %d, вытеснено: %d, " +
+                        "кэш запросов: %d попаданий / %d промахов",
+                borrows, avgWaitUs, getActiveCount(), getIdleCount(), maxReaders,
+                createdCount.sum(), evictedCount.sum(), statementHits.sum(), statementMisses.sum());
+    }
+
+    public boolean isWal() {
+        return pragmaProfile.isWal();
+    }
+
+    // Метрики
+    public long getBorrowCount() { return borrowCount.sum(); }
+    public long getTotalWaitNanos() { return waitNanos.sum(); }
+    public int getActiveCount() { return activeCount.get(); }
+    public int getIdleCount() { return idleReaders.size(); }
+    public int getMaxReaders() { return maxReaders; }
+    public long getCreatedCount() { return createdCount.sum(); }
+    public long getEvictedCount() { return evictedCount.sum(); }
+    public long getStatementCacheHits() { return statementHits.sum(); }
+    public long getStatementCacheMisses() { return statementMisses.sum(); }
+
+    private final class PooledConnection {
+        private final Connection raw;
+        private final boolean writer;
+        private volatile long lastUsedAt = System.currentTimeMillis();
+
+        private PooledConnection(Connection raw, boolean writer) {
+            this.raw = raw;
+            this.writer = writer;
+        }
+
+        // LRU-кэш подготовленных запросов, живущий столько же, сколько физическое соединение.
+        // Открытые заемщиком запросы не вытесняются: кэш может временно превысить размер до trimStatements()
+        private final LinkedHashMap<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+        // owner — выданный заемщику дескриптор, его возвращает getConnection() запроса
+        private PreparedStatement prepare(String sql, Connection owner) throws SQLException {
+            if (statementCacheSize <= 0) {
+                return (PreparedStatement) ownedStatement(raw.prepareStatement(sql), owner);
+            }
+            CachedStatement cached = statements.get(sql);
+            if (cached != null && cached.inUse) {
+                // Тот же запрос уже открыт этим заемщиком — выдаем обычный, некэшируемый
+                return (PreparedStatement) ownedStatement(raw.prepareStatement(sql), owner);
+            }
+            if (cached == null || cached.statement.isClosed()) {
+                statementMisses.increment();
+                cached = new CachedStatement(raw.prepareStatement(sql));
+                statements.put(sql, cached);
+            } else {
+                statementHits.increment();
+            }
+            cached.inUse = true;
+            cached.owner = owner;
+            trimStatements();
+            return cached.proxy;
+        }
+
+        // Запросы, не закрытые заемщиком, освобождаются при возврате соединения
+        private void releaseStatements() throws SQLException {
+            for (CachedStatement cached : statements.values()) {
+                if (cached.inUse) {
+                    cached.proxy.close();
+                }
+            }
+            trimStatements();
+        }
+
+        // Вытесняет самые давние свободные запросы сверх размера кэша
+        private void trimStatements() {
+            Iterator<CachedStatement> it = statements.values().iterator();
+            while (statements.size() > statementCacheSize && it.hasNext()) {
+                CachedStatement cached = it.next();
+                if (!cached.inUse) {
+                    it.remove();
+                    cached.closeQuietly();
+                }
+            }
+        }
+
+        private void closeStatements() {
+            statements.values().forEach(CachedStatement::closeQuietly);
+            statements.clear();
+        }
+
+        private Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new Handle(this));
+        }
+    }
+
+    // Кэшированный запрос: close() только сбрасывает параметры и пакет, оставляя запрос подготовленным
+    private static final class CachedStatement implements InvocationHandler {
+        private final PreparedStatement statement;
+        private final PreparedStatement proxy;
+        private boolean inUse;
+        private Connection owner;
+
+        private CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (inUse) {
+                        inUse = false;
+                        statement.clearParameters();
+                        statement.clearBatch();
+                        owner = null;
+                    }
+                    return null;
+                case "getConnection":
+                    // Не физическое соединение: его close() закрыл бы соединение пула
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                LOGGER.log(Level.FINE, "Ошибка закрытия подготовленного запроса", e);
+            }
+        }
+    }
+
+    // Одноразовый дескриптор: после close() соединение возвращается в пул, а дескриптор становится недействительным
+    private final class Handle implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean released = false;
+
+        private Handle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        giveBack(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return released || pooled.raw.isClosed();
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(pooled.raw)) {
+                        return pooled.raw;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + pooled.raw + "]";
+                default:
+                    break;
+            }
+            if (released) {
+                throw new SQLException("Соединение уже возвращено в пул");
+            }
+            if ("prepareStatement".equals(method.getName()) && args.length == 1) {
+                return pooled.prepare((String) args[0], (Connection) proxy);
+            }
+            Object result;
+            try {
+                result = method.invoke(pooled.raw, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            return result instanceof Statement statement ? ownedStatement(statement, (Connection) proxy) : result;
+        }
+    }
+
+    // Некэшируемый запрос, у которого getConnection() возвращает дескриптор пула, а не физическое соединение
+    private static Statement ownedStatement(Statement statement, Connection owner) {
+        Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                : statement instanceof PreparedStatement ? PreparedStatement.class
+                : Statement.class;
+        return (Statement) Proxy.newProxyInstance(
+                type.getClassLoader(),
+                new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getConnection":
+                            return owner;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            break;
+                    }
+                    try {
+                        return method.invoke(statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
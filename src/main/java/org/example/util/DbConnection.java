@@ -1,26 +1,74 @@
 package org.example.util;
 
 import org.example.config.AppConfig;
+import org.example.metrics.MetricsRegistry;
+
+import java.io.File;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.logging.Logger;
 
 public class DbConnection {
     private static final Logger LOGGER = Logger.getLogger(DbConnection.class.getName());
     private static AppConfig config;
+    private static volatile ConnectionPool pool;
 
-    public static void initialize(AppConfig appConfig) {
+    public static synchronized void initialize(AppConfig appConfig) {
         config = appConfig;
+        if (pool != null) {
+            pool.close();
+        }
+        String url = "jdbc:sqlite:" + new File(config.getDbName()).getAbsolutePath();
+        LOGGER.info("Подключение к базе данных: " + url);
+        pool = new ConnectionPool(
+                url,
+                config.getPoolReaders(),
+                config.getPoolBorrowTimeoutMs(),
+                config.getPoolIdleTimeoutMs(),
+                config.getPoolValidationIntervalMs(),
+                new PragmaProfile(config.getPragmas()),
+                config.getStatementCacheSize()
+        );
+        registerPoolMetrics();
+    }
+
+    // Датчики читают текущий пул, поэтому переживают повторную инициализацию и остановку
+    private static void registerPoolMetrics() {
+        MetricsRegistry.gauge("db.pool.active", () -> pool != null ? pool.getActiveCount() : 0);
+        MetricsRegistry.gauge("db.pool.idle", () -> pool != null ? pool.getIdleCount() : 0);
+        MetricsRegistry.gauge("db.pool.borrows", () -> pool != null ? pool.getBorrowCount() : 0);
+        MetricsRegistry.gauge("db.pool.waitMicros", () -> pool != null ? pool.getTotalWaitNanos() / 1000 : 0);
+        MetricsRegistry.gauge("db.pool.statementHits", () -> pool != null ? pool.getStatementCacheHits() : 0);
+        MetricsRegistry.gauge("db.pool.statementMisses", () -> pool != null ? pool.getStatementCacheMisses() : 0);
+    }
+
+    // Соединение для чтения из пула; close() возвращает его в пул
+    public static Connection getConnection() throws SQLException {
+        return requirePool().borrowReader();
+    }
+
+    // Единственное соединение для записи; удерживается эксклюзивно до close()
+    public static Connection getWriteConnection() throws SQLException {
+        return requirePool().borrowWriter();
+    }
+
+    public static ConnectionPool getPool() {
+        return requirePool();
+    }
+
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
     }
 
-        public static Connection getConnection() throws SQLException {
-        if (config == null) {
+    private static ConnectionPool requirePool() {
+        ConnectionPool current = pool;
+        if (current == null) {
             throw new IllegalStateException("Конфигурация не инициализирована");
         }
-        String url = "jdbc:sqlite:" + System.getProperty("user.dir") + "\\" + config.getDbName();
-        LOGGER.fine("Подключение к базе данных: " + url);
-        return DriverManager.getConnection(url);
+        return current;
     }
 
     public static void testConnection() {
@@ -30,4 +78,4 @@ public class DbConnection {
             LOGGER.severe("Ошибка подключения к БД: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+}
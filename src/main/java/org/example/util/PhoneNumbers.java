@@ -0,0 +1,67 @@
+package org.example.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Форматирование телефонов вида "ddd-ddddd" без String.format:
+ * цифры пишутся прямо в массив из 9 байт, результат — одна строка Latin-1.
+ * Упакованная форма — число prefix * 100000 + suffix (8 цифр, помещается в int).
+ */
+public final class PhoneNumbers {
+    public static final int LENGTH = 9;
+    public static final int NOT_PACKED = -1;
+    private static final int SUFFIX_RANGE = 100000;
+
+    private PhoneNumbers() {
+    }
+
+    // prefix — 100..999, suffix — 0..99999 (дополняется нулями слева)
+    public static String format(int prefix, int suffix) {
+        byte[] digits = new byte[LENGTH];
+        digits[0] = (byte) ('0' + prefix / 100);
+        digits[1] = (byte) ('0' + prefix / 10 % 10);
+        digits[2] = (byte) ('0' + prefix % 10);
+        digits[3] = '-';
+        for (int i = LENGTH - 1; i > 3; i--) {
+            digits[i] = (byte) ('0' + suffix % 10);
+            suffix /= 10;
+        }
+        return new String(digits, StandardCharsets.ISO_8859_1);
+    }
+
+    public static String format(int packed) {
+        return format(packed / SUFFIX_RANGE, packed % SUFFIX_RANGE);
+    }
+
+    // Дописывает "ddd-ddddd" в буфер без создания строки
+    public static void appendTo(StringBuilder out, int packed) {
+        int prefix = packed / SUFFIX_RANGE;
+        int suffix = packed % SUFFIX_RANGE;
+        out.append((char) ('0' + prefix / 100))
+                .append((char) ('0' + prefix / 10 % 10))
+                .append((char) ('0' + prefix % 10))
+                .append('-');
+        for (int divisor = SUFFIX_RANGE / 10; divisor > 0; divisor /= 10) {
+            out.append((char) ('0' + suffix / divisor % 10));
+        }
+    }
+
+    // NOT_PACKED, если строка не в формате "ddd-ddddd" с первой цифрой 1-9
+    public static int pack(String phone) {
+        if (phone == null || phone.length() != LENGTH || phone.charAt(3) != '-' || phone.charAt(0) == '0') {
+            return NOT_PACKED;
+        }
+        int packed = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            if (i == 3) {
+                continue;
+            }
+            int digit = phone.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return NOT_PACKED;
+            }
+            packed = packed * 10 + digit;
+        }
+        return packed;
+    }
+}
@@ -0,0 +1,83 @@
+package org.example.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Набор PRAGMA, применяемых к каждому новому соединению пула.
+ * journal_mode хранится в самом файле БД, поэтому выставляется только соединением для записи.
+ */
+public final class PragmaProfile {
+    private static final Logger LOGGER = Logger.getLogger(PragmaProfile.class.getName());
+    private static final String JOURNAL_MODE = "journal_mode";
+
+    private final Map<String, String> pragmas;
+
+    public PragmaProfile(Map<String, String> pragmas) {
+        this.pragmas = new LinkedHashMap<>(pragmas);
+    }
+
+    public void apply(Connection connection, boolean writer) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            String journalMode = pragmas.get(JOURNAL_MODE);
+            if (writer && journalMode != null) {
+                try (ResultSet rs = stmt.executeQuery("PRAGMA " + JOURNAL_MODE + " = " + journalMode)) {
+                    String actual = rs.next() ? rs.getString(1) : "?";
+                    if (!actual.equalsIgnoreCase(journalMode)) {
+                        LOGGER.warning("Режим журнала " + journalMode + " не применен, текущий: " + actual);
+                    }
+                }
+            }
+            for (Map.Entry<String, String> pragma : pragmas.entrySet()) {
+                if (!JOURNAL_MODE.equals(pragma.getKey())) {
+                    stmt.execute("PRAGMA " + pragma.getKey() + " = " + pragma.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Временно меняет PRAGMA соединения (например, на время генерации данных).
+     * Возвращает прежние значения для {@link #restore}; journal_mode не меняется.
+     */
+    public static Map<String, String> applyTemporary(Connection connection, Map<String, String> pragmas)
+            throws SQLException {
+        Map<String, String> previous = new LinkedHashMap<>();
+        try (Statement stmt = connection.createStatement()) {
+            for (Map.Entry<String, String> pragma : pragmas.entrySet()) {
+                if (JOURNAL_MODE.equals(pragma.getKey())) {
+                    LOGGER.warning("journal_mode нельзя менять временно, пропущено");
+                    continue;
+                }
+                try (ResultSet rs = stmt.executeQuery("PRAGMA " + pragma.getKey())) {
+                    if (rs.next()) {
+                        previous.put(pragma.getKey(), rs.getString(1));
+                    }
+                }
+                stmt.execute("PRAGMA " + pragma.getKey() + " = " + pragma.getValue());
+            }
+        }
+        return previous;
+    }
+
+    public static void restore(Connection connection, Map<String, String> previous) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            for (Map.Entry<String, String> pragma : previous.entrySet()) {
+                stmt.execute("PRAGMA " + pragma.getKey() + " = " + pragma.getValue());
+            }
+        }
+    }
+
+    public boolean isWal() {
+        return "wal".equalsIgnoreCase(pragmas.get(JOURNAL_MODE));
+    }
+
+    public Map<String, String> getPragmas() {
+        return pragmas;
+    }
+}
@@ -0,0 +1,140 @@
+package org.example.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class IntIntHashMapTest {
+    // Начальная таблица IntIntHashMap(1): 16 ячеек, расширение на 8-м элементе
+    private static final int TABLE = 16;
+
+    @Test
+    public void putGetOverwrite() {
+        IntIntHashMap map = new IntIntHashMap(1);
+        map.put(5, 50);
+        map.put(-7, 70);
+        map.put(5, 51);
+
+        assertEquals(51, map.get(5));
+        assertEquals(70, map.get(-7));
+        assertEquals(IntIntHashMap.MISSING, map.get(6));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    public void keyZeroIsNeverFound() {
+        IntIntHashMap map = new IntIntHashMap(1);
+        assertEquals(IntIntHashMap.MISSING, map.get(0));
+        assertEquals(IntIntHashMap.MISSING, map.remove(0));
+
+        // Пустые ячейки хранят 0 в keys, значения в них могут остаться от удаленных ключей
+        map.put(1, 10);
+        map.remove(1);
+        assertEquals(IntIntHashMap.MISSING, map.get(0));
+        assertEquals(0, map.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void putRejectsKeyZero() {
+        new IntIntHashMap(1).put(0, 1);
+    }
+
+    @Test
+    public void collidingKeysAreAllReachable() {
+        List<Integer> keys = keysWithHome(3, 4);
+        IntIntHashMap map = new IntIntHashMap(1);
+        for (int key : keys) {
+            map.put(key, key * 2);
+        }
+        for (int key : keys) {
+            assertEquals(key * 2, map.get(key));
+        }
+    }
+
+    @Test
+    public void removeShiftsBackClusterAcrossTableEnd() {
+        // Кластер начинается в последней ячейке и продолжается с начала таблицы
+        List<Integer> keys = keysWithHome(TABLE - 1, 4);
+        int other = keysWithHome(0, 1).get(0);
+        IntIntHashMap map = new IntIntHashMap(1);
+        for (int key : keys) {
+            map.put(key, key + 1);
+        }
+        map.put(other, other + 1);
+
+        assertEquals(keys.get(0) + 1, map.remove(keys.get(0)));
+        assertEquals(keys.get(2) + 1, map.remove(keys.get(2)));
+
+        assertEquals(IntIntHashMap.MISSING, map.get(keys.get(0)));
+        assertEquals(IntIntHashMap.MISSING, map.get(keys.get(2)));
+        assertEquals(keys.get(1) + 1, map.get(keys.get(1)));
+        assertEquals(keys.get(3) + 1, map.get(keys.get(3)));
+        assertEquals(other + 1, map.get(other));
+        assertEquals(3, map.size());
+        assertEquals(IntIntHashMap.MISSING, map.remove(keys.get(0)));
+    }
+
+    @Test
+    public void resizeKeepsAllEntries() {
+        IntIntHashMap map = new IntIntHashMap(1);
+        for (int key = 1; key <= 10_000; key++) {
+            map.put(key, -key);
+        }
+        assertEquals(10_000, map.size());
+        for (int key = 1; key <= 10_000; key++) {
+            assertEquals(-key, map.get(key));
+        }
+        for (int key = 1; key <= 10_000; key += 2) {
+            assertEquals(-key, map.remove(key));
+        }
+        for (int key = 1; key <= 10_000; key++) {
+            assertEquals(key % 2 == 0 ? -key : IntIntHashMap.MISSING, map.get(key));
+        }
+    }
+
+    @Test
+    public void matchesHashMapUnderRandomOperations() {
+        Random random = new Random(42);
+        IntIntHashMap map = new IntIntHashMap(1);
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            // Узкий диапазон ключей: много коллизий и удалений внутри кластеров
+            int key = random.nextInt(200) - 100;
+            if (key == 0) {
+                continue;
+            }
+            if (random.nextInt(3) == 0) {
+                Integer removed = expected.remove(key);
+                assertEquals(removed == null ? IntIntHashMap.MISSING : removed, map.remove(key));
+            } else {
+                int value = random.nextInt(1000);
+                expected.put(key, value);
+                map.put(key, value);
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (int key = -100; key < 100; key++) {
+            assertEquals(expected.getOrDefault(key, IntIntHashMap.MISSING).intValue(), map.get(key));
+        }
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(IntIntHashMap.MISSING, map.get(1));
+    }
+
+    private static List<Integer> keysWithHome(int slot, int count) {
+        List<Integer> keys = new ArrayList<>();
+        for (int key = 1; keys.size() < count; key++) {
+            if ((IntIntHashMap.hash(key) & (TABLE - 1)) == slot) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,216 @@
+package org.example.dump;
+
+import org.example.util.PhoneNumbers;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.example.dump.BinarySnapshotFormat.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BinarySnapshotRoundTripTest {
+    private static final int BLOCK_ROWS = 64;
+    private static final long BASE_MILLIS = 1_700_000_000_000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTripWithoutCompression() throws IOException {
+        List<Object[]> rows = rows(150);
+        Path file = write(rows, false);
+        assertEquals(CODEC_NONE, firstBlockCodec(file));
+        assertRows(file, rows, 3);
+    }
+
+    @Test
+    public void roundTripWithDeflate() throws IOException {
+        List<Object[]> rows = rows(150);
+        Path file = write(rows, true);
+        assertEquals(CODEC_DEFLATE, firstBlockCodec(file));
+        assertRows(file, rows, 3);
+    }
+
+    @Test
+    public void emptyDump() throws IOException {
+        for (boolean compress : new boolean[] {false, true}) {
+            Path file = write(new ArrayList<>(), compress);
+            assertEquals(HEADER_SIZE + TRAILER_SIZE, Files.size(file));
+            try (BinarySnapshotReader reader = BinarySnapshotReader.open(file)) {
+                assertEquals(DumpKind.DELTA, reader.getKind());
+                assertEquals(0, reader.getTotal());
+                assertEquals(0, reader.getBlockCount());
+                assertFalse(reader.next());
+                assertFalse(reader.next());
+            }
+        }
+    }
+
+    @Test
+    public void nullPhoneWithoutHistoryStaysNull() throws IOException {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[] {7, null, null, null, null});
+        Path file = write(rows, true);
+        try (BinarySnapshotReader reader = BinarySnapshotReader.open(file)) {
+            assertTrue(reader.next());
+            assertNull(reader.getName());
+            assertNull(reader.getPhone());
+            assertEquals(DumpRow.NO_CODE, reader.getPhoneCode());
+            assertFalse(reader.hasHistory());
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void corruptedBlockFailsChecksum() throws IOException {
+        for (boolean compress : new boolean[] {false, true}) {
+            Path file = write(rows(10), compress);
+            flipByte(file, HEADER_SIZE + BLOCK_HEADER_SIZE + 2);
+            try (BinarySnapshotReader reader = BinarySnapshotReader.open(file)) {
+                reader.next();
+                fail("поврежденный блок прочитан");
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("Контрольная сумма"));
+            }
+        }
+    }
+
+    @Test
+    public void corruptedBlockHeaderIsRejected() throws IOException {
+        Path file = write(rows(10), false);
+        // Длина до сжатия не входит в CRC: без сжатия она обязана совпадать с сохраненной
+        flipByte(file, HEADER_SIZE + 5 + 3);
+        try (BinarySnapshotReader reader = BinarySnapshotReader.open(file)) {
+            reader.next();
+            fail("поврежденный заголовок блока прочитан");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("заголовок блока"));
+        }
+    }
+
+    @Test
+    public void truncatedTrailerIsRejected() throws IOException {
+        Path file = write(rows(10), true);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - 1);
+        }
+        try {
+            BinarySnapshotReader.open(file).close();
+            fail("оборванный снимок открыт");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("концевика"));
+        }
+    }
+
+    @Test
+    public void trailerBlockCountMismatchIsRejected() throws IOException {
+        Path file = write(rows(10), false);
+        // Число блоков в концевике: за ним только magic
+        flipByte(file, Files.size(file) - 2 * Integer.BYTES + 3);
+        try (BinarySnapshotReader reader = BinarySnapshotReader.open(file)) {
+            while (reader.next()) {
+                reader.getId();
+            }
+            fail("несовпадение числа блоков не обнаружено");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("блоков"));
+        }
+    }
+
+    // id, имя, телефон, старый телефон, время изменения (мс или null)
+    private static List<Object[]> rows(int count) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int id = 1 + i * 3;
+            String name = i % 17 == 0 ? null : "Name" + i % 5;
+            String phone = switch (i % 10) {
+                case 3 -> "+7 (999) 123-45-67";
+                case 6 -> null;
+                case 8 -> "";
+                default -> PhoneNumbers.format(100 + i, i * 7);
+            };
+            String oldPhone = switch (i % 4) {
+                case 0 -> null;
+                case 1 -> "тел. " + i;
+                default -> PhoneNumbers.format(200 + i, i);
+            };
+            Long millis = oldPhone != null || i % 8 == 0 ? BASE_MILLIS + (i % 3 == 0 ? -i : i) * 1000L : null;
+            rows.add(new Object[] {id, name, phone, oldPhone, millis});
+        }
+        return rows;
+    }
+
+    private Path write(List<Object[]> rows, boolean compress) throws IOException {
+        Path file = folder.newFile().toPath();
+        long withHistory = 0;
+        try (BinarySnapshotSink sink = new BinarySnapshotSink(file, DumpKind.DELTA, BLOCK_ROWS, compress)) {
+            sink.begin();
+            DumpRow row = new DumpRow();
+            for (int i = 0; i < rows.size(); i++) {
+                Object[] r = rows.get(i);
+                Timestamp changeTime = r[4] != null ? new Timestamp((Long) r[4]) : null;
+                // Половина строк приходит упакованными кодами, как при phone.encoding=packed
+                int phoneCode = i % 2 == 0 ? PhoneNumbers.pack((String) r[2]) : DumpRow.NO_CODE;
+                row.set((Integer) r[0], (String) r[1], (String) r[2], phoneCode, (String) r[3], DumpRow.NO_CODE, changeTime);
+                if (row.hasHistory()) {
+                    withHistory++;
+                }
+                sink.accept(row);
+            }
+            sink.end(rows.size(), withHistory);
+        }
+        return file;
+    }
+
+    private static void assertRows(Path file, List<Object[]> rows, int blocks) throws IOException {
+        try (BinarySnapshotReader reader = BinarySnapshotReader.open(file)) {
+            assertEquals(VERSION, reader.getFormatVersion());
+            assertEquals(DumpKind.DELTA, reader.getKind());
+            assertEquals(rows.size(), reader.getTotal());
+            assertEquals(rows.stream().filter(r -> r[3] != null).count(), reader.getWithHistory());
+            assertEquals(blocks, reader.getBlockCount());
+            for (Object[] r : rows) {
+                assertTrue(reader.next());
+                assertEquals(r[0], reader.getId());
+                assertEquals(r[1], reader.getName());
+                assertEquals(r[2], reader.getPhone());
+                assertEquals(PhoneNumbers.pack((String) r[2]), reader.getPhoneCode());
+                assertEquals(r[3] != null, reader.hasHistory());
+                assertEquals(r[3], reader.getOldPhone());
+                if (r[3] == null) {
+                    assertEquals(DumpRow.NO_CODE, reader.getOldPhoneCode());
+                }
+                assertEquals(r[4] != null, reader.hasChangeTime());
+                assertEquals(r[4] != null ? (long) (Long) r[4] : 0L, reader.getChangeMillis());
+            }
+            assertFalse(reader.next());
+        }
+    }
+
+    private static byte firstBlockCodec(Path file) throws IOException {
+        return Files.readAllBytes(file)[HEADER_SIZE + Integer.BYTES];
+    }
+
+    private static void flipByte(Path file, long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, position);
+            b.put(0, (byte) (b.get(0) ^ 0x5A)).rewind();
+            channel.write(b, position);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package org.example.events;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PhoneChangeBusTest {
+    // Кольцо из 4 ячеек и пачки по одному событию: номера пропусков считаются вручную
+    private static final int CAPACITY = 4;
+
+    @Test(timeout = 10_000)
+    public void dropSkipsOldestEventsOfLappedSubscriber() throws InterruptedException {
+        PhoneChangeBus bus = new PhoneChangeBus(CAPACITY);
+        SlowListener listener = new SlowListener();
+        PhoneChangeBus.Subscription subscription = bus.subscribe("test-drop", listener, 1, SlowConsumerPolicy.DROP);
+
+        publish(bus, 0, 1);
+        listener.entered.acquire();
+        // Подписчик держит событие 0, курсор на 1; публикация не ждет и обходит его на целое кольцо
+        publish(bus, 1, 10);
+        assertEquals(10, bus.getPublished());
+
+        // В кольце остались 6..9: пропущены 1..5, доставлено 6
+        listener.permits.release();
+        listener.entered.acquire();
+        assertEquals(List.of(5L), listener.droppedCounts);
+        assertEquals(5, subscription.getDropped());
+        assertEquals(List.of(0L, 6L), listener.sequences);
+
+        // Второй круг: курсор на 7, в кольце останутся 14..17
+        publish(bus, 10, 18);
+        listener.permits.release(1000);
+        bus.close();
+
+        assertEquals(List.of(5L, 7L), listener.droppedCounts);
+        assertEquals(List.of(0L, 6L, 14L, 15L, 16L, 17L), listener.sequences);
+        assertEquals(12, subscription.getDropped());
+        assertEquals(6, subscription.getDelivered());
+        assertEquals(bus.getPublished(), subscription.getDelivered() + subscription.getDropped());
+        assertEquals(0, subscription.getLag());
+        assertTrue(listener.closed);
+    }
+
+    @Test(timeout = 10_000)
+    public void blockMakesPublisherWaitForSlowSubscriber() throws InterruptedException {
+        PhoneChangeBus bus = new PhoneChangeBus(CAPACITY);
+        SlowListener listener = new SlowListener();
+        PhoneChangeBus.Subscription subscription = bus.subscribe("test-block", listener, 1, SlowConsumerPolicy.BLOCK);
+
+        publish(bus, 0, 1);
+        listener.entered.acquire();
+        // Курсор на 1: события 1..4 помещаются в кольцо, 5 заняло бы ячейку непрочитанного 1
+        publish(bus, 1, 5);
+        Thread publisher = new Thread(() -> publish(bus, 5, 6), "test-publisher");
+        publisher.start();
+        publisher.join(200);
+        assertTrue(publisher.isAlive());
+        assertEquals(List.of(0L), listener.sequences);
+
+        listener.permits.release(1000);
+        publisher.join();
+        bus.close();
+
+        assertEquals(List.of(0L, 1L, 2L, 3L, 4L, 5L), listener.sequences);
+        assertTrue(listener.droppedCounts.isEmpty());
+        assertEquals(0, subscription.getDropped());
+        assertEquals(6, subscription.getDelivered());
+        assertEquals(0, subscription.getFailed());
+    }
+
+    @Test(timeout = 10_000)
+    public void closeDeliversPublishedEventsAndIgnoresEarlierOnes() throws InterruptedException {
+        PhoneChangeBus bus = new PhoneChangeBus(3);
+        assertEquals(CAPACITY, bus.getCapacity());
+        SlowListener early = new SlowListener();
+        early.permits.release(1000);
+        bus.subscribe("test-early", early, 2, SlowConsumerPolicy.BLOCK);
+        publish(bus, 0, 2);
+
+        SlowListener late = new SlowListener();
+        late.permits.release(1000);
+        bus.subscribe("test-late", late, 2, SlowConsumerPolicy.BLOCK);
+        publish(bus, 2, 9);
+        bus.close();
+
+        assertEquals(List.of(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L), early.sequences);
+        assertEquals(List.of(2L, 3L, 4L, 5L, 6L, 7L, 8L), late.sequences);
+        assertFalse(bus.hasSubscribers());
+        // После закрытия публикация ничего не делает
+        publish(bus, 9, 10);
+        assertEquals(9, bus.getPublished());
+    }
+
+    private static void publish(PhoneChangeBus bus, int from, int to) {
+        for (int i = from; i < to; i++) {
+            bus.publish(i + 1, "old-" + i, "new-" + i, 1_000L * i);
+        }
+    }
+
+    // Каждая пачка сообщает о себе через entered и ждет разрешения в permits
+    private static final class SlowListener implements PhoneChangeListener {
+        final Semaphore entered = new Semaphore(0);
+        final Semaphore permits = new Semaphore(0);
+        final List<Long> sequences = Collections.synchronizedList(new ArrayList<>());
+        final List<Long> droppedCounts = Collections.synchronizedList(new ArrayList<>());
+        volatile boolean closed;
+
+        @Override
+        public void onChanges(List<PhoneChange> changes) {
+            for (PhoneChange change : changes) {
+                assertEquals(change.getSequence() + 1, change.getContactId());
+                sequences.add(change.getSequence());
+            }
+            entered.release();
+            permits.acquireUninterruptibly();
+        }
+
+        @Override
+        public void onDropped(long count) {
+            droppedCounts.add(count);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
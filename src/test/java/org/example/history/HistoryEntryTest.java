@@ -0,0 +1,42 @@
+package org.example.history;
+
+import org.example.util.PhoneNumbers;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class HistoryEntryTest {
+
+    @Test
+    public void packedPhoneKeepsItsCode() {
+        HistoryEntry entry = read("123-04567");
+        assertEquals(PhoneNumbers.pack("123-04567"), entry.getPhoneCode());
+        assertEquals("123-04567", entry.oldPhone());
+    }
+
+    @Test
+    public void otherAsciiPhonesRoundTrip() {
+        for (String phone : new String[] {"", "1", "+7 999", "12-345678", "abc-defgh", "~~~~~~~~~", "099-12345"}) {
+            HistoryEntry entry = read(phone);
+            assertEquals(phone, entry.oldPhone());
+            assertEquals(PhoneNumbers.NOT_PACKED, entry.getPhoneCode());
+        }
+    }
+
+    @Test
+    public void unrepresentablePhonesAreUnknownNotPlaceholder() {
+        for (String phone : new String[] {null, "+7 999 123-45-67", "тел", "a\u0000b", "\u007f"}) {
+            assertEquals(HistoryEntry.UNKNOWN, HistoryEntry.encode(phone));
+            HistoryEntry entry = read(phone);
+            assertNull(entry.oldPhone());
+            assertEquals(PhoneNumbers.NOT_PACKED, entry.getPhoneCode());
+        }
+    }
+
+    private static HistoryEntry read(String phone) {
+        HistoryEntry entry = new HistoryEntry();
+        entry.set(1, HistoryEntry.encode(phone), 0);
+        return entry;
+    }
+}